@@ -4,6 +4,7 @@ import com.google.auth.oauth2.GoogleCredentials;
 import com.google.firebase.FirebaseApp;
 import com.google.firebase.FirebaseOptions;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Configuration;
 
 import javax.annotation.PostConstruct;
@@ -12,6 +13,7 @@ import java.io.IOException;
 import java.util.Base64;
 
 @Configuration
+@ConditionalOnProperty(name = "QR_STORE", havingValue = "firebase", matchIfMissing = true)
 public class FirebaseConfig {
 
 //    @Value("${FIREBASE_SERVICE_ACCOUNT_PATH}")
@@ -0,0 +1,72 @@
+package com.company.config;
+
+import com.company.render.BilevelPngWriter;
+import com.company.render.RenderLimiter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Configuration
+public class RenderConfig {
+
+    // 0-9, lower is faster and larger. QR rasters are mostly long runs, so 6 is close to 9 in size.
+    @Value("${QR_PNG_COMPRESSION_LEVEL:6}")
+    private int pngCompressionLevel;
+
+    // 0 uses one thread per available core
+    @Value("${QR_RENDER_THREADS:0}")
+    private int renderThreads;
+
+    // Maximum renders running at once, 0 uses one per available core
+    @Value("${QR_RENDER_CONCURRENCY:0}")
+    private int renderConcurrency;
+
+    // Threads searching the tiles of large uploads, 0 uses one per available core
+    @Value("${QR_DECODE_THREADS:0}")
+    private int decodeThreads;
+
+    // Spring Boot's switch that also moves Tomcat and the MVC async executor to virtual threads
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreads;
+
+    @Bean
+    public BilevelPngWriter bilevelPngWriter() {
+        return new BilevelPngWriter(pngCompressionLevel);
+    }
+
+    @Bean
+    public RenderLimiter renderLimiter() {
+        return new RenderLimiter(renderConcurrency > 0 ? renderConcurrency : Runtime.getRuntime().availableProcessors());
+    }
+
+    // Batch rendering pool: bounded platform threads, or one virtual thread per task capped by the render limiter
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService renderExecutor() {
+        if (virtualThreads) {
+            return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("qr-render-", 1).factory());
+        }
+        return fixedDaemonPool(renderThreads, "qr-render-");
+    }
+
+    // Tile decoding is CPU-bound, so it always gets a bounded pool
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService decodeExecutor() {
+        return fixedDaemonPool(decodeThreads, "qr-decode-");
+    }
+
+    private static ExecutorService fixedDaemonPool(int configuredThreads, String namePrefix) {
+        int threads = configuredThreads > 0 ? configuredThreads : Runtime.getRuntime().availableProcessors();
+        AtomicInteger counter = new AtomicInteger();
+        ThreadFactory threadFactory = runnable -> {
+            Thread thread = new Thread(runnable, namePrefix + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        return Executors.newFixedThreadPool(threads, threadFactory);
+    }
+}
@@ -4,5 +4,7 @@ public class Constants {
 
     public class DBKeys{
         public static final String QRS = "QR";
+        public static final String IMAGES = "QRImages";
+        public static final String COUNTERS = "QRCounters";
     }
 }
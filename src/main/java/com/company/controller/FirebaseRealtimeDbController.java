@@ -1,31 +1,56 @@
 package com.company.controller;
 
-import com.company.interfaces.DatabaseCallback;
+import com.company.interfaces.QrRepository;
 import com.company.model.ApiResponse;
+import com.company.model.ClientCacheStats;
+import com.company.model.QrPage;
 import com.company.model.ServiceResult;
+import com.company.service.ClientMirrorService;
 import com.company.service.QRService;
-import com.company.service.FirebaseRealtimeDbService;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.extern.log4j.Log4j2;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Collectors;
 
 @Log4j2
 @RestController
 @RequestMapping("/api/firebase")
 public class FirebaseRealtimeDbController {
+    private static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    private static final String NDJSON = "application/x-ndjson";
+    private static final int STREAM_PAGE_SIZE = 500;
+
+    @Autowired
+    private QrRepository qrRepository;
+
     @Autowired
-    private FirebaseRealtimeDbService firebaseRealtimeDbService;
+    private ObjectMapper objectMapper;
+
+    // Absent with the local store
+    @Autowired(required = false)
+    private ClientMirrorService clientMirrorService;
 
 
     @GetMapping("/getAllData")
     public CompletableFuture<ResponseEntity<ApiResponse<Map<String, Object>>>> getAllData() {
-        return firebaseRealtimeDbService.getAllData().thenApply(data -> {
+        return qrRepository.getAllData().thenApply(data -> {
             ServiceResult serviceResult = ServiceResult.builder()
                     .returnCode("0")
                     .returnMessage("Data retrieved successfully")
@@ -42,14 +67,33 @@ public class FirebaseRealtimeDbController {
 
     @GetMapping("/getDataByClient")
     public CompletableFuture<ResponseEntity<ApiResponse<Map<String, Object>>>> getDataByClient(
-            @RequestHeader("x-api-key") String apiKey) {
-        return firebaseRealtimeDbService.getDataByClient(apiKey).thenApply(data -> {
+            @RequestHeader("x-api-key") String apiKey,
+            @RequestParam(required = false) String fields,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) String cursor) {
+        Set<String> projection = parseFields(fields);
+        // Cursors are record ids, checked here so every store answers a bad one alike
+        Integer fromId = cursor != null ? parseRecordId(cursor) : null;
+        if (cursor != null && (limit == null || fromId == null)) {
+            String message = limit == null ? "A cursor requires a limit" : "Invalid cursor: " + cursor;
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest()
+                    .body(new ApiResponse<>(new ServiceResult("99", message), null)));
+        }
+        // Without a limit the whole client list is returned, as before; with one, the next cursor goes in a header
+        CompletableFuture<QrPage> futurePage = limit == null
+                ? qrRepository.getDataByClient(apiKey, projection).thenApply(data -> new QrPage(data, null))
+                : qrRepository.getDataByClientPage(apiKey, projection, fromId != null ? String.valueOf(fromId) : null, limit);
+        return futurePage.thenApply(page -> {
             ServiceResult serviceResult = ServiceResult.builder()
                     .returnCode("0")
                     .returnMessage("Data retrieved successfully")
                     .build();
-            ApiResponse<Map<String, Object>> response = new ApiResponse<>(serviceResult, data);
-            return ResponseEntity.ok(response);
+            ApiResponse<Map<String, Object>> response = new ApiResponse<>(serviceResult, page.getRecords());
+            ResponseEntity.BodyBuilder builder = ResponseEntity.ok();
+            if (page.getNextCursor() != null) {
+                builder.header(NEXT_CURSOR_HEADER, page.getNextCursor());
+            }
+            return builder.body(response);
         }).exceptionally(e -> {
             log.error("Error retrieving data for client", e);
             ServiceResult serviceResult = new ServiceResult("99", "Error retrieving data for client:" + e.getMessage());
@@ -58,69 +102,167 @@ public class FirebaseRealtimeDbController {
         });
     }
 
-    @DeleteMapping("/deleteQrById")
-    public ResponseEntity deleteData(@RequestParam Integer id,
-                                     @RequestHeader("x-api-key") String apiKey) {
-        try {
-            // Create a latch with 1 count to wait for callback
-            log.info("check if the id is already exist");
-            CountDownLatch latch = new CountDownLatch(1);
-            final ResponseEntity<ServiceResult>[] response = new ResponseEntity[1];
-            firebaseRealtimeDbService.deleteData(apiKey, id, new DatabaseCallback() {
-                @Override
-                public void onSuccess() {
-                    // Return a success response
-                    response[0] = ResponseEntity.status(HttpStatus.OK).body(ServiceResult.builder()
-                            .returnCode("0")
-                            .returnMessage("The QR deleted successfully")
-                            .build());
-                    latch.countDown();
+    /**
+     * Stream every record of the client as newline-delimited JSON, one {"id": ..., fields...} object per line.
+     * Records are read page by page, so at most one page is held in memory. The first page is read before
+     * the response starts, so a failed read is answered with an error status rather than an empty stream.
+     */
+    @GetMapping(value = "/streamDataByClient", produces = NDJSON)
+    public CompletableFuture<ResponseEntity<?>> streamDataByClient(
+            @RequestHeader("x-api-key") String apiKey,
+            @RequestParam(required = false) String fields) {
+        Set<String> projection = parseFields(fields);
+        return qrRepository.getDataByClientPage(apiKey, projection, null, STREAM_PAGE_SIZE).<ResponseEntity<?>>thenApply(first ->
+                ResponseEntity.ok().contentType(MediaType.parseMediaType(NDJSON)).body(streamFrom(apiKey, projection, first))
+        ).exceptionally(e -> {
+            Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+            if (cause instanceof NoSuchElementException) {
+                // A client without data streams nothing
+                StreamingResponseBody empty = outputStream -> {
+                };
+                return ResponseEntity.ok().contentType(MediaType.parseMediaType(NDJSON)).body(empty);
+            }
+            log.error("Error streaming data for client", cause);
+            if (cause instanceof TimeoutException) {
+                return ResponseEntity.status(HttpStatus.GATEWAY_TIMEOUT).contentType(MediaType.APPLICATION_JSON)
+                        .body(ServiceResult.builder()
+                                .returnCode("98")
+                                .returnMessage("Timed out waiting for the database")
+                                .build());
+            }
+            HttpStatus status = cause instanceof RejectedExecutionException
+                    ? HttpStatus.SERVICE_UNAVAILABLE
+                    : HttpStatus.INTERNAL_SERVER_ERROR;
+            return ResponseEntity.status(status).contentType(MediaType.APPLICATION_JSON)
+                    .body(new ServiceResult("99", "Error streaming data for client: " + cause.getMessage()));
+        });
+    }
+
+    // Writes the first page, then reads and writes the rest; page reads are bounded by the repository timeout
+    private StreamingResponseBody streamFrom(String apiKey, Set<String> projection, QrPage first) {
+        return outputStream -> {
+            QrPage page = first;
+            try {
+                while (true) {
+                    for (Map.Entry<String, Object> record : page.getRecords().entrySet()) {
+                        Map<String, Object> line = new LinkedHashMap<>();
+                        line.put("id", record.getKey());
+                        if (record.getValue() instanceof Map<?, ?> recordFields) {
+                            recordFields.forEach((key, value) -> line.put(String.valueOf(key), value));
+                        }
+                        outputStream.write(objectMapper.writeValueAsBytes(line));
+                        outputStream.write('\n');
+                    }
+                    outputStream.flush();
+                    if (page.getNextCursor() == null) {
+                        return;
+                    }
+                    page = qrRepository.getDataByClientPage(apiKey, projection, page.getNextCursor(), STREAM_PAGE_SIZE).get();
                 }
+            } catch (ExecutionException e) {
+                throw new IOException("Error streaming data for client: " + e.getCause().getMessage(), e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Streaming interrupted", e);
+            }
+        };
+    }
 
-                @Override
-                public void onFailure(Exception e) {
-                    // Return an error response
+    // A non-negative integer id, or null
+    private static Integer parseRecordId(String cursor) {
+        try {
+            int id = Integer.parseInt(cursor);
+            return id >= 0 ? id : null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
 
-                    response[0] = ResponseEntity.status(HttpStatus.NOT_FOUND).body(ServiceResult.builder().
-                            returnCode("99").
-                            returnMessage(e.getMessage())
-                            .build());
-                    latch.countDown();
-                }
-            });
-            // Wait for the callback to complete (either success or failure)
-            latch.await();
-            // If no response is set, return internal server error
-            if (response[0] == null) {
-                return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(ServiceResult.builder()
+    // Comma-separated record fields; images are only returned when base64Image is listed
+    private static Set<String> parseFields(String fields) {
+        return fields == null ? null : Arrays.stream(fields.split(","))
+                .map(String::trim)
+                .filter(field -> !field.isEmpty())
+                .collect(Collectors.toSet());
+    }
+
+    @PostMapping("/migrateImages")
+    public CompletableFuture<ResponseEntity<ServiceResult>> migrateImages() {
+        return qrRepository.migrateInlineImages().thenApply(count ->
+                ResponseEntity.ok(ServiceResult.builder()
+                        .returnCode("0")
+                        .returnMessage("Migrated " + count + " QR images")
+                        .build())
+        ).exceptionally(e -> {
+            log.error("Error migrating QR images", e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(ServiceResult.builder()
+                    .returnCode("99")
+                    .returnMessage("Error migrating QR images: " + e.getMessage())
+                    .build());
+        });
+    }
+
+    @DeleteMapping("/deleteQrById")
+    public CompletableFuture<ResponseEntity<ServiceResult>> deleteData(@RequestParam Integer id,
+                                                                      @RequestHeader("x-api-key") String apiKey) {
+        log.info("check if the id is already exist");
+        // The servlet thread is released; the response is written when the database answers
+        return qrRepository.deleteData(apiKey, id).thenApply(ignored ->
+                ResponseEntity.status(HttpStatus.OK).body(ServiceResult.builder()
+                        .returnCode("0")
+                        .returnMessage("The QR deleted successfully")
+                        .build())
+        ).exceptionally(e -> {
+            Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+            if (cause instanceof TimeoutException) {
+                return ResponseEntity.status(HttpStatus.GATEWAY_TIMEOUT).body(ServiceResult.builder()
                         .returnCode("98")
-                        .returnMessage("An unexpected error occurred.")
+                        .returnMessage("Timed out waiting for the database")
                         .build());
             }
-            return response[0];
-        } catch (Exception e) {
-            log.error("Error deleting QR data", e);
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(ServiceResult.builder()
-                    .returnCode("97")
-                    .returnMessage("Failed to delete QR data: " + e.getMessage())
+            if (cause instanceof RejectedExecutionException) {
+                return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(ServiceResult.builder()
+                        .returnCode("96")
+                        .returnMessage(cause.getMessage())
+                        .build());
+            }
+            // Return an error response
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(ServiceResult.builder().
+                    returnCode("99").
+                    returnMessage(cause.getMessage())
                     .build());
-        }
+        });
+    }
+
+    @GetMapping("/clientCacheStats")
+    public ResponseEntity<ApiResponse<ClientCacheStats>> getClientCacheStats() {
+        ClientCacheStats stats = clientMirrorService != null
+                ? clientMirrorService.getStats()
+                : ClientCacheStats.builder().enabled(false).build();
+        return ResponseEntity.ok(new ApiResponse<>(ServiceResult.builder()
+                .returnCode("0")
+                .returnMessage("Cache statistics retrieved successfully")
+                .build(), stats));
     }
 
     @DeleteMapping("/deleteAll")
-    public ResponseEntity<ServiceResult> deleteAllData(@RequestHeader("x-api-key") String apiKey) {
-        try {
-            firebaseRealtimeDbService.deleteAllData(apiKey);
-            return ResponseEntity.ok(ServiceResult.builder()
-                    .returnCode("0")
-                    .returnMessage("All QR Data deleted successfully")
-                    .build());
-        } catch (Exception e) {
-            log.error("Error deleting all QR data", e);
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(ServiceResult.builder()
+    public CompletableFuture<ResponseEntity<ServiceResult>> deleteAllData(@RequestHeader("x-api-key") String apiKey) {
+        // Answer once the removal is acknowledged, so a failed delete is reported
+        return qrRepository.deleteAllData(apiKey).thenApply(ignored ->
+                ResponseEntity.ok(ServiceResult.builder()
+                        .returnCode("0")
+                        .returnMessage("All QR Data deleted successfully")
+                        .build())
+        ).exceptionally(e -> {
+            Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+            log.error("Error deleting all QR data", cause);
+            HttpStatus status = cause instanceof RejectedExecutionException
+                    ? HttpStatus.SERVICE_UNAVAILABLE
+                    : HttpStatus.INTERNAL_SERVER_ERROR;
+            return ResponseEntity.status(status).body(ServiceResult.builder()
                     .returnCode("99")
-                    .returnMessage("Failed to delete all QR data: " + e.getMessage())
+                    .returnMessage("Failed to delete all QR data: " + cause.getMessage())
                     .build());
-        }
+        });
     }
 }
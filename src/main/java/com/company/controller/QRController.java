@@ -1,11 +1,19 @@
 package com.company.controller;
 
 
-import com.company.interfaces.DatabaseCallback;
 import com.company.model.ApiResponse;
+import com.company.model.DecodeStats;
+import com.company.model.GeneratedQr;
 import com.company.model.ParsedUrl;
+import com.company.model.QrSpec;
+import com.company.model.ScanStats;
 import com.company.model.ServiceResult;
+import com.company.model.ImageCacheStats;
+import com.company.render.ImageFormat;
+import com.company.service.QRDecodeService;
+import com.company.service.QRImageCacheService;
 import com.company.service.QRService;
+import com.company.service.ScanAggregationService;
 import lombok.extern.log4j.Log4j2;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpHeaders;
@@ -13,10 +21,17 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import javax.imageio.ImageIO;
-import java.awt.image.BufferedImage;
-import java.util.concurrent.CountDownLatch;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeoutException;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 
 @Log4j2
 @RestController
@@ -26,36 +41,106 @@ public class QRController {
     @Autowired
     private QRService qrService;
 
-    // Generate QR Code
+    @Autowired
+    private QRImageCacheService qrImageCacheService;
+
+    @Autowired
+    private QRDecodeService qrDecodeService;
+
+    @Autowired
+    private ScanAggregationService scanAggregationService;
+
+    // Generate QR Code, or a barcode of another format
     @PostMapping("/generateQRCode")
-    public ResponseEntity<byte[]> generateQRCode(@RequestParam String url,
-                                                 @RequestParam Integer type,
-                                                 @RequestParam(required = false) Integer size,
-                                                 @RequestParam(required = false) String errorCorrection,
-                                                 @RequestParam(required = false, defaultValue = "false") boolean isScanned,
-                                                 @RequestParam(required = false) String startDate,
-                                                 @RequestParam(required = false) String endDate,
-                                                 @RequestHeader("x-api-key") String apiKey) {
+    public ResponseEntity<?> generateQRCode(@RequestParam String url,
+                                            @RequestParam Integer type,
+                                            @RequestParam(required = false) Integer size,
+                                            @RequestParam(required = false) String errorCorrection,
+                                            @RequestParam(required = false, defaultValue = "false") boolean isScanned,
+                                            @RequestParam(required = false) String startDate,
+                                            @RequestParam(required = false) String endDate,
+                                            @RequestParam(required = false) String format,
+                                            @RequestParam(required = false) String imageFormat,
+                                            @RequestParam(required = false, defaultValue = "false") boolean durable,
+                                            @RequestHeader("x-api-key") String apiKey) {
         try {
             byte[] qrCodeImage = qrService.generateQRCodeAndWriteToDB(apiKey, url, size,
-                    errorCorrection, isScanned, startDate, endDate, type);
+                    errorCorrection, isScanned, startDate, endDate, type, format, imageFormat, durable);
             HttpHeaders headers = new HttpHeaders();
-            headers.set("Content-Type", "image/png");
+            headers.set("Content-Type", ImageFormat.parse(imageFormat).getContentType());
+            headers.setContentLength(qrCodeImage.length);
             return new ResponseEntity<>(qrCodeImage, headers, HttpStatus.OK);
+        } catch (IllegalArgumentException e) {
+            // Unknown format or image format, or content the format can't carry
+            return ResponseEntity.badRequest().body(ServiceResult.builder()
+                    .returnCode("99")
+                    .returnMessage(e.getMessage())
+                    .build());
+        } catch (RejectedExecutionException e) {
+            // The write queue is full, the client should back off
+            return new ResponseEntity<>(HttpStatus.SERVICE_UNAVAILABLE);
+        } catch (TimeoutException e) {
+            return new ResponseEntity<>(HttpStatus.GATEWAY_TIMEOUT);
         } catch (Exception e) {
             return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
         }
     }
 
+    // Generate a batch of QR Codes, returned as a ZIP of <id>.png (or .svg) entries
+    @PostMapping("/generateBatch")
+    public ResponseEntity<?> generateBatch(@RequestBody List<QrSpec> specs,
+                                           @RequestHeader("x-api-key") String apiKey) {
+        try {
+            List<GeneratedQr> generated = qrService.generateBatch(apiKey, specs);
+            StreamingResponseBody body = outputStream -> {
+                ZipOutputStream zip = new ZipOutputStream(outputStream);
+                // PNG data is already deflated and SVG paths are short
+                zip.setLevel(Deflater.NO_COMPRESSION);
+                for (GeneratedQr generatedQr : generated) {
+                    String extension = ImageFormat.parse(generatedQr.getQrData().getImageFormat()).getExtension();
+                    zip.putNextEntry(new ZipEntry(generatedQr.getId() + "." + extension));
+                    zip.write(generatedQr.getImage());
+                    zip.closeEntry();
+                }
+                zip.finish();
+            };
+            HttpHeaders headers = new HttpHeaders();
+            headers.set("Content-Type", "application/zip");
+            headers.set(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"qr-batch.zip\"");
+            return new ResponseEntity<>(body, headers, HttpStatus.OK);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(ServiceResult.builder()
+                    .returnCode("99")
+                    .returnMessage(e.getMessage())
+                    .build());
+        } catch (RejectedExecutionException e) {
+            // The write queue is full, the client should back off
+            return new ResponseEntity<>(HttpStatus.SERVICE_UNAVAILABLE);
+        } catch (TimeoutException e) {
+            return new ResponseEntity<>(HttpStatus.GATEWAY_TIMEOUT);
+        } catch (Exception e) {
+            log.error("Error generating QR batch", e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(ServiceResult.builder()
+                    .returnCode("97")
+                    .returnMessage("Failed to generate QR batch: " + e.getMessage())
+                    .build());
+        }
+    }
+
     @PostMapping("/qrcode/check")
-    public ResponseEntity<ServiceResult> qrCodeCheck(@RequestParam MultipartFile file) {
+    public ResponseEntity<ServiceResult> qrCodeCheck(@RequestParam MultipartFile file,
+                                                     @RequestParam(required = false) String formats) {
         try {
-            BufferedImage image = ImageIO.read(file.getInputStream());
-            qrService.isQRCodeReadable(image);
+            qrService.isReadable(file.getInputStream(), QRDecodeService.parseFormats(formats));
             return ResponseEntity.ok(ServiceResult.builder()
                     .returnCode("0")
                     .returnMessage("Valid QR code")
                     .build());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(ServiceResult.builder()
+                    .returnCode("99")
+                    .returnMessage(e.getMessage())
+                    .build());
         } catch (Exception e) {
             return ResponseEntity.badRequest().body(ServiceResult.builder()
                     .returnCode("99")
@@ -65,72 +150,82 @@ public class QRController {
     }
 
     @PutMapping("/updateQrById")
-    public ResponseEntity updateData(@RequestParam Integer id,
-                                     @RequestParam Integer type,
-                                     @RequestParam String url,
-                                     @RequestParam(required = false) Integer size,
-                                     @RequestParam(required = false) String errorCorrection,
-                                     @RequestParam(required = false) boolean isScanned,
-                                     @RequestParam(required = false) String startDate,
-                                     @RequestParam(required = false) String endDate,
-                                     @RequestHeader("x-api-key") String apiKey) {
+    public CompletableFuture<ResponseEntity<ServiceResult>> updateData(@RequestParam Integer id,
+                                                                      @RequestParam Integer type,
+                                                                      @RequestParam String url,
+                                                                      @RequestParam(required = false) Integer size,
+                                                                      @RequestParam(required = false) String errorCorrection,
+                                                                      @RequestParam(required = false) boolean isScanned,
+                                                                      @RequestParam(required = false) String startDate,
+                                                                      @RequestParam(required = false) String endDate,
+                                                                      @RequestParam(required = false) String format,
+                                                                      @RequestParam(required = false) String imageFormat,
+                                                                      @RequestHeader("x-api-key") String apiKey) {
+        CompletableFuture<Void> futureUpdate;
         try {
-            // Create a latch with 1 count to wait for callback
-            CountDownLatch latch = new CountDownLatch(1);
-            final ResponseEntity<ServiceResult>[] response = new ResponseEntity[1];
-            qrService.generateQRCodeAndUpdateDatabase(apiKey, url, size, errorCorrection,
-                    id, isScanned, startDate, endDate, type, new DatabaseCallback() {
-                        @Override
-                        public void onSuccess() {
-                            // Return a success response
-                            response[0] = ResponseEntity.status(HttpStatus.OK).body(ServiceResult.builder()
-                                    .returnCode("0")
-                                    .returnMessage("QR Data updated successfully")
-                                    .build());
-                            latch.countDown();
-                        }
-
-                        @Override
-                        public void onFailure(Exception e) {
-                            // Return an error response
-                            response[0] = ResponseEntity.status(HttpStatus.NOT_FOUND).body(ServiceResult.builder().
-                                    returnCode("99").
-                                    returnMessage(e.getMessage())
-                                    .build());
-                            latch.countDown();
-                        }
-                    });
-            // Wait for the callback to complete (either success or failure)
-            latch.await();
-            // If no response is set, return internal server error
-            if (response[0] == null) {
-                return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(ServiceResult.builder()
+            futureUpdate = qrService.generateQRCodeAndUpdateDatabase(apiKey, url, size, errorCorrection,
+                    id, isScanned, startDate, endDate, type, format, imageFormat);
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest().body(ServiceResult.builder()
+                    .returnCode("99")
+                    .returnMessage(e.getMessage())
+                    .build()));
+        } catch (Exception e) {
+            // Return an internal server error response
+            log.error("Error updating QR data", e);
+            return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(ServiceResult.builder()
+                    .returnCode("97")
+                    .returnMessage("An error occurred: " + e.getMessage())
+                    .build()));
+        }
+        // The servlet thread is released; the response is written when the database answers
+        return futureUpdate.thenApply(ignored -> ResponseEntity.status(HttpStatus.OK).body(ServiceResult.builder()
+                .returnCode("0")
+                .returnMessage("QR Data updated successfully")
+                .build())
+        ).exceptionally(e -> {
+            Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+            if (cause instanceof TimeoutException) {
+                return ResponseEntity.status(HttpStatus.GATEWAY_TIMEOUT).body(ServiceResult.builder()
                         .returnCode("98")
-                        .returnMessage("An unexpected error occurred.")
+                        .returnMessage("Timed out waiting for the database")
                         .build());
             }
-
-            return response[0];
-        } catch (Exception e) {
-            // Return an internal server error response
-            log.error("Error deleting QR data", e);
+            if (cause instanceof RejectedExecutionException) {
+                return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(ServiceResult.builder()
+                        .returnCode("96")
+                        .returnMessage(cause.getMessage())
+                        .build());
+            }
+            if (cause instanceof NoSuchElementException) {
+                return ResponseEntity.status(HttpStatus.NOT_FOUND).body(ServiceResult.builder().
+                        returnCode("99").
+                        returnMessage(cause.getMessage())
+                        .build());
+            }
+            // Rendering or the database failed after the record was found
+            log.error("Error updating QR data", cause);
+            Throwable error = cause instanceof CompletionException && cause.getCause() != null ? cause.getCause() : cause;
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(ServiceResult.builder()
                     .returnCode("97")
-                    .returnMessage("An error occurred: " + e.getMessage())
+                    .returnMessage("An error occurred: " + error.getMessage())
                     .build());
-        }
+        });
     }
 
     @PostMapping("/read")
-    public ResponseEntity<?> readQRCode(@RequestParam("file") MultipartFile file) {
+    public ResponseEntity<?> readQRCode(@RequestParam("file") MultipartFile file,
+                                        @RequestParam(required = false) String formats,
+                                        @RequestParam(required = false) boolean multiple) {
         try {
-            ParsedUrl parsedUrl = qrService.readAndParseQRCode(file);
+            List<ParsedUrl> parsedUrls = qrService.readAndParseQRCodes(file, QRDecodeService.parseFormats(formats), multiple);
             return ResponseEntity.ok(ApiResponse.builder()
                     .serviceResult(ServiceResult.builder()
                             .returnCode("0")
                             .returnMessage("success")
                             .build())
-                    .data(parsedUrl)
+                    // A single code keeps the original response shape
+                    .data(multiple ? parsedUrls : parsedUrls.get(0))
                     .build());
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.BAD_REQUEST)
@@ -142,4 +237,51 @@ public class QRController {
                             .build());
         }
     }
+
+    // Count a scan of a code; scans are tallied in memory and written in periodic batches
+    @PostMapping("/scan")
+    public ResponseEntity<ServiceResult> recordScan(@RequestParam Integer id,
+                                                    @RequestHeader("x-api-key") String apiKey) {
+        try {
+            scanAggregationService.recordScan(apiKey, id, System.currentTimeMillis());
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(ServiceResult.builder()
+                    .returnCode("0")
+                    .returnMessage("Scan recorded")
+                    .build());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(ServiceResult.builder()
+                    .returnCode("99")
+                    .returnMessage(e.getMessage())
+                    .build());
+        } catch (RejectedExecutionException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(ServiceResult.builder()
+                    .returnCode("96")
+                    .returnMessage(e.getMessage())
+                    .build());
+        }
+    }
+
+    @GetMapping("/scanStats")
+    public ResponseEntity<ApiResponse<ScanStats>> getScanStats() {
+        return ResponseEntity.ok(new ApiResponse<>(ServiceResult.builder()
+                .returnCode("0")
+                .returnMessage("Scan statistics retrieved successfully")
+                .build(), scanAggregationService.getStats()));
+    }
+
+    @GetMapping("/imageCacheStats")
+    public ResponseEntity<ApiResponse<ImageCacheStats>> getImageCacheStats() {
+        return ResponseEntity.ok(new ApiResponse<>(ServiceResult.builder()
+                .returnCode("0")
+                .returnMessage("Cache statistics retrieved successfully")
+                .build(), qrImageCacheService.getStats()));
+    }
+
+    @GetMapping("/decodeStats")
+    public ResponseEntity<ApiResponse<DecodeStats>> getDecodeStats() {
+        return ResponseEntity.ok(new ApiResponse<>(ServiceResult.builder()
+                .returnCode("0")
+                .returnMessage("Decode statistics retrieved successfully")
+                .build(), qrDecodeService.getStats()));
+    }
 }
@@ -0,0 +1,70 @@
+package com.company.decode;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+
+/**
+ * Byte arrays reused across image reads, so uploads and luminance planes of similar size don't each
+ * allocate tens of megabytes. At most {@code maxBytes} are retained; the oldest arrays go first.
+ * Luminance planes are requested at an exact length, which repeated uploads from the same camera hit.
+ */
+public class BufferPool {
+
+    private final long maxBytes;
+    private final Deque<byte[]> buffers = new ArrayDeque<>();
+    private long retainedBytes;
+
+    public BufferPool(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * An array of exactly {@code length} bytes, with undefined content.
+     */
+    public synchronized byte[] acquire(int length) {
+        return take(length, true);
+    }
+
+    /**
+     * An array of at least {@code length} bytes, with undefined content.
+     */
+    public synchronized byte[] acquireAtLeast(int length) {
+        return take(length, false);
+    }
+
+    public synchronized void release(byte[] buffer) {
+        if (buffer == null || buffer.length > maxBytes) {
+            return;
+        }
+        buffers.addLast(buffer);
+        retainedBytes += buffer.length;
+        while (retainedBytes > maxBytes) {
+            retainedBytes -= buffers.removeFirst().length;
+        }
+    }
+
+    public void release(GrayLuminanceSource source) {
+        if (source.isPooled()) {
+            release(source.getData());
+        }
+    }
+
+    public synchronized long getRetainedBytes() {
+        return retainedBytes;
+    }
+
+    private byte[] take(int length, boolean exact) {
+        // Newest first, it is the most likely to still be in cache
+        Iterator<byte[]> iterator = buffers.descendingIterator();
+        while (iterator.hasNext()) {
+            byte[] buffer = iterator.next();
+            if (exact ? buffer.length == length : buffer.length >= length) {
+                iterator.remove();
+                retainedBytes -= buffer.length;
+                return buffer;
+            }
+        }
+        return new byte[length];
+    }
+}
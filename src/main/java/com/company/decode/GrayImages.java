@@ -0,0 +1,186 @@
+package com.company.decode;
+
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+import javax.imageio.IIOException;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.metadata.IIOMetadataFormatImpl;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.image.BufferedImage;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.IndexColorModel;
+import java.awt.image.MultiPixelPackedSampleModel;
+import java.awt.image.Raster;
+import java.io.IOException;
+import java.util.Iterator;
+
+/**
+ * Turns uploaded image bytes into a {@link GrayLuminanceSource} with as few full-size copies as the
+ * format allows. Color JPEGs are read as raw YCbCr, whose Y band is the luminance, skipping the color
+ * conversion; PNGs are inflated row by row into the plane by {@link GrayPngReader}; other images are
+ * decoded by ImageIO and converted once, straight from their raster.
+ * The weights and the white backing of transparent pixels match zxing's BufferedImageLuminanceSource.
+ * Image dimensions are checked against a pixel limit from the header, before the image is decoded.
+ */
+public final class GrayImages {
+
+    private GrayImages() {
+    }
+
+    /**
+     * @param maxPixels the largest width times height accepted
+     * @throws IIOException when the bytes are not a readable image or the image is larger than {@code maxPixels}
+     */
+    public static GrayLuminanceSource read(byte[] data, int length, BufferPool pool, long maxPixels) throws IOException {
+        if (GrayPngReader.isPng(data, length)) {
+            GrayLuminanceSource source = GrayPngReader.read(data, length, pool, maxPixels);
+            if (source != null) {
+                return source;
+            }
+        }
+        try (ImageInputStream input = new ByteArrayImageInputStream(data, length)) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) {
+                throw new IIOException("The file is not a supported image");
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                checkPixels(reader.getWidth(0), reader.getHeight(0), maxPixels);
+                if ("jpeg".equalsIgnoreCase(reader.getFormatName()) && reader.canReadRaster()
+                        && hasLuminanceBand(reader.getImageMetadata(0))) {
+                    return luminanceBand(reader.readRaster(0, null), true);
+                }
+                return toGray(reader.read(0), pool);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * A gray plane of the image. 8-bit gray images are wrapped without a copy; everything else is
+     * converted into an array from {@code pool}.
+     */
+    public static GrayLuminanceSource toGray(BufferedImage image, BufferPool pool) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        Raster raster = image.getRaster();
+        boolean plain = raster.getParent() == null && raster.getSampleModelTranslateX() == 0
+                && raster.getSampleModelTranslateY() == 0 && !image.isAlphaPremultiplied();
+
+        if (plain && image.getType() == BufferedImage.TYPE_BYTE_GRAY) {
+            // zxing reads gray rasters as-is too, without the linear gray to sRGB conversion
+            return luminanceBand(raster, false);
+        }
+
+        byte[] gray = pool != null ? pool.acquire(width * height) : new byte[width * height];
+        if (plain && (image.getType() == BufferedImage.TYPE_INT_RGB || image.getType() == BufferedImage.TYPE_INT_ARGB)) {
+            int[] pixels = ((DataBufferInt) raster.getDataBuffer()).getData();
+            boolean alpha = image.getType() == BufferedImage.TYPE_INT_ARGB;
+            for (int i = 0; i < width * height; i++) {
+                gray[i] = luminance(pixels[i], alpha);
+            }
+        } else if (plain && isByteRgb(image)) {
+            ComponentSampleModel model = (ComponentSampleModel) raster.getSampleModel();
+            byte[] samples = ((DataBufferByte) raster.getDataBuffer()).getData();
+            int[] bands = model.getBandOffsets();
+            int pixelStride = model.getPixelStride();
+            int base = raster.getDataBuffer().getOffset();
+            int alphaBand = bands.length == 4 ? bands[3] : -1;
+            for (int y = 0; y < height; y++) {
+                int i = base + y * model.getScanlineStride();
+                for (int x = 0; x < width; x++, i += pixelStride) {
+                    gray[y * width + x] = alphaBand >= 0 && samples[i + alphaBand] == 0
+                            ? (byte) 0xFF
+                            : luminance(samples[i + bands[0]] & 0xFF, samples[i + bands[1]] & 0xFF, samples[i + bands[2]] & 0xFF);
+                }
+            }
+        } else if (plain && isBilevel(image)) {
+            // 1-bit images, such as the PNGs this service generates: look each bit up in the two-color palette
+            MultiPixelPackedSampleModel model = (MultiPixelPackedSampleModel) raster.getSampleModel();
+            byte[] packed = ((DataBufferByte) raster.getDataBuffer()).getData();
+            IndexColorModel palette = (IndexColorModel) image.getColorModel();
+            byte zero = luminance(palette.getRGB(0), true);
+            byte one = luminance(palette.getRGB(1), true);
+            int base = raster.getDataBuffer().getOffset() * 8 + model.getDataBitOffset();
+            for (int y = 0; y < height; y++) {
+                int bit = base + y * model.getScanlineStride() * 8;
+                for (int x = 0; x < width; x++, bit++) {
+                    gray[y * width + x] = (packed[bit >> 3] & (0x80 >> (bit & 7))) != 0 ? one : zero;
+                }
+            }
+        } else {
+            int[] row = new int[width];
+            for (int y = 0; y < height; y++) {
+                image.getRGB(0, y, width, 1, row, 0, width);
+                for (int x = 0; x < width; x++) {
+                    gray[y * width + x] = luminance(row[x], true);
+                }
+            }
+        }
+        return new GrayLuminanceSource(gray, width, height, pool != null);
+    }
+
+    static void checkPixels(int width, int height, long maxPixels) throws IIOException {
+        if ((long) width * height > Math.min(maxPixels, Integer.MAX_VALUE)) {
+            throw new IIOException("Image of " + width + "x" + height + " pixels exceeds the limit of " + maxPixels);
+        }
+    }
+
+    // JPEGs in YCbCr or gray carry luminance as their first band; RGB, CMYK and YCCK ones don't
+    private static boolean hasLuminanceBand(IIOMetadata metadata) {
+        if (metadata == null || !metadata.isStandardMetadataFormatSupported()) {
+            return false;
+        }
+        Element tree = (Element) metadata.getAsTree(IIOMetadataFormatImpl.standardMetadataFormatName);
+        NodeList colorSpace = tree.getElementsByTagName("ColorSpaceType");
+        if (colorSpace.getLength() == 0) {
+            return false;
+        }
+        String name = ((Element) colorSpace.item(0)).getAttribute("name");
+        return "YCbCr".equals(name) || "GRAY".equals(name);
+    }
+
+    // The first band of an interleaved byte raster, viewed in place
+    private static GrayLuminanceSource luminanceBand(Raster raster, boolean pooled) {
+        ComponentSampleModel model = (ComponentSampleModel) raster.getSampleModel();
+        DataBufferByte buffer = (DataBufferByte) raster.getDataBuffer();
+        return new GrayLuminanceSource(buffer.getData(), buffer.getOffset() + model.getBandOffsets()[0],
+                model.getScanlineStride(), model.getPixelStride(), raster.getWidth(), raster.getHeight(), pooled);
+    }
+
+    private static boolean isBilevel(BufferedImage image) {
+        return image.getRaster().getSampleModel() instanceof MultiPixelPackedSampleModel model
+                && model.getPixelBitStride() == 1
+                && image.getRaster().getDataBuffer() instanceof DataBufferByte
+                && image.getColorModel() instanceof IndexColorModel palette
+                && palette.getMapSize() == 2;
+    }
+
+    private static boolean isByteRgb(BufferedImage image) {
+        Raster raster = image.getRaster();
+        int bands = raster.getNumBands();
+        return raster.getSampleModel() instanceof ComponentSampleModel
+                && raster.getDataBuffer() instanceof DataBufferByte
+                && image.getColorModel().getColorSpace().isCS_sRGB()
+                && image.getColorModel().getComponentSize(0) == 8
+                && (bands == 3 || bands == 4 && image.getColorModel().hasAlpha());
+    }
+
+    private static byte luminance(int argb, boolean alpha) {
+        if (alpha && (argb & 0xFF000000) == 0) {
+            return (byte) 0xFF;
+        }
+        return luminance((argb >> 16) & 0xFF, (argb >> 8) & 0xFF, argb & 0xFF);
+    }
+
+    static byte luminance(int red, int green, int blue) {
+        return (byte) ((306 * red + 601 * green + 117 * blue + 0x200) >> 10);
+    }
+}
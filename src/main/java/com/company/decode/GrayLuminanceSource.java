@@ -0,0 +1,156 @@
+package com.company.decode;
+
+import com.google.zxing.LuminanceSource;
+
+import java.util.Arrays;
+
+/**
+ * Luminance source over an 8-bit gray plane held in a byte array, such as the Y samples of a JPEG or a
+ * plane converted once from a decoded image. Crops share the array, and a plane that covers its whole
+ * array is handed to the binarizer without a copy.
+ */
+public class GrayLuminanceSource extends LuminanceSource {
+
+    private final byte[] data;
+    private final int offset;
+    private final int rowStride;
+    private final int pixelStride;
+    private final boolean pooled;
+
+    public GrayLuminanceSource(byte[] data, int width, int height, boolean pooled) {
+        this(data, 0, width, 1, width, height, pooled);
+    }
+
+    /**
+     * @param pixelStride bytes from one sample to the next in a row, e.g. 3 for the Y band of raw YCbCr
+     * @param pooled      the array belongs to the reader and may go back to a {@link BufferPool}
+     */
+    public GrayLuminanceSource(byte[] data, int offset, int rowStride, int pixelStride, int width, int height, boolean pooled) {
+        super(width, height);
+        this.data = data;
+        this.offset = offset;
+        this.rowStride = rowStride;
+        this.pixelStride = pixelStride;
+        this.pooled = pooled;
+    }
+
+    public byte[] getData() {
+        return data;
+    }
+
+    public boolean isPooled() {
+        return pooled;
+    }
+
+    @Override
+    public byte[] getRow(int y, byte[] row) {
+        int width = getWidth();
+        if (row == null || row.length < width) {
+            row = new byte[width];
+        }
+        int start = offset + y * rowStride;
+        if (pixelStride == 1) {
+            System.arraycopy(data, start, row, 0, width);
+        } else {
+            for (int x = 0, i = start; x < width; x++, i += pixelStride) {
+                row[x] = data[i];
+            }
+        }
+        return row;
+    }
+
+    @Override
+    public byte[] getMatrix() {
+        int width = getWidth();
+        int height = getHeight();
+        if (offset == 0 && pixelStride == 1 && rowStride == width && data.length == width * height) {
+            return data;
+        }
+        byte[] matrix = new byte[width * height];
+        for (int y = 0; y < height; y++) {
+            int start = offset + y * rowStride;
+            if (pixelStride == 1) {
+                System.arraycopy(data, start, matrix, y * width, width);
+            } else {
+                for (int x = 0, i = start; x < width; x++, i += pixelStride) {
+                    matrix[y * width + x] = data[i];
+                }
+            }
+        }
+        return matrix;
+    }
+
+    @Override
+    public boolean isCropSupported() {
+        return true;
+    }
+
+    // Crops never own the shared array
+    @Override
+    public LuminanceSource crop(int left, int top, int width, int height) {
+        return new GrayLuminanceSource(data, offset + top * rowStride + left * pixelStride, rowStride, pixelStride,
+                width, height, false);
+    }
+
+    @Override
+    public boolean isRotateSupported() {
+        return true;
+    }
+
+    @Override
+    public LuminanceSource rotateCounterClockwise() {
+        return rotateCounterClockwise(null);
+    }
+
+    /**
+     * The plane turned 90 degrees counter-clockwise, in an array from {@code pool} when given.
+     */
+    public GrayLuminanceSource rotateCounterClockwise(BufferPool pool) {
+        int width = getWidth();
+        int height = getHeight();
+        byte[] rotated = pool != null ? pool.acquire(width * height) : new byte[width * height];
+        for (int y = 0; y < height; y++) {
+            int start = offset + y * rowStride;
+            for (int x = 0; x < width; x++) {
+                rotated[(width - 1 - x) * height + y] = data[start + x * pixelStride];
+            }
+        }
+        return new GrayLuminanceSource(rotated, height, width, pool != null);
+    }
+
+    /**
+     * A plane whose long side is at most {@code longSide}, each pixel averaging a square block of this
+     * one, or this plane when it already fits.
+     */
+    public GrayLuminanceSource downscale(int longSide, BufferPool pool) {
+        int width = getWidth();
+        int height = getHeight();
+        int factor = (Math.max(width, height) + longSide - 1) / longSide;
+        if (factor <= 1) {
+            return this;
+        }
+        int scaledWidth = width / factor;
+        int scaledHeight = height / factor;
+        byte[] scaled = pool != null ? pool.acquire(scaledWidth * scaledHeight) : new byte[scaledWidth * scaledHeight];
+        int[] sums = new int[scaledWidth];
+        int area = factor * factor;
+        for (int scaledY = 0; scaledY < scaledHeight; scaledY++) {
+            Arrays.fill(sums, 0);
+            for (int y = scaledY * factor, end = y + factor; y < end; y++) {
+                int i = offset + y * rowStride;
+                for (int scaledX = 0; scaledX < scaledWidth; scaledX++) {
+                    int sum = 0;
+                    for (int k = 0; k < factor; k++, i += pixelStride) {
+                        sum += data[i] & 0xFF;
+                    }
+                    sums[scaledX] += sum;
+                }
+            }
+            int row = scaledY * scaledWidth;
+            for (int scaledX = 0; scaledX < scaledWidth; scaledX++) {
+                scaled[row + scaledX] = (byte) (sums[scaledX] / area);
+            }
+        }
+        return new GrayLuminanceSource(scaled, scaledWidth, scaledHeight, pool != null);
+    }
+}
@@ -0,0 +1,271 @@
+package com.company.decode;
+
+import javax.imageio.IIOException;
+import java.io.IOException;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Purpose-built PNG decoder producing an 8-bit gray plane. The IDAT chunks are inflated in place from
+ * the upload buffer one row at a time, unfiltered against the previous row and converted to luminance
+ * straight into the plane, so only two rows are allocated besides the plane itself.
+ * <p>
+ * Handles non-interlaced images of up to 8 bits per sample in every color type. Interlaced and 16-bit
+ * images, and transparency given as a key color, are left to ImageIO. The header is checked against
+ * the pixel limit before any buffer is allocated for the image.
+ */
+final class GrayPngReader {
+
+    private static final byte[] SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+    private static final int IHDR = 0x49484452;
+    private static final int IHDR_LENGTH = 13;
+    private static final int PLTE = 0x504C5445;
+    private static final int TRNS = 0x74524E53;
+    private static final int IDAT = 0x49444154;
+    private static final int IEND = 0x49454E44;
+
+    private static final int GRAY = 0;
+    private static final int RGB = 2;
+    private static final int PALETTE = 3;
+    private static final int GRAY_ALPHA = 4;
+    private static final int RGB_ALPHA = 6;
+
+    private GrayPngReader() {
+    }
+
+    static boolean isPng(byte[] data, int length) {
+        if (length < SIGNATURE.length) {
+            return false;
+        }
+        for (int i = 0; i < SIGNATURE.length; i++) {
+            if (data[i] != SIGNATURE[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param maxPixels the largest width times height accepted
+     * @return the gray plane, or null when the image uses a feature left to ImageIO
+     * @throws IIOException when the PNG is malformed or larger than {@code maxPixels}
+     */
+    static GrayLuminanceSource read(byte[] data, int length, BufferPool pool, long maxPixels) throws IOException {
+        int position = SIGNATURE.length;
+        int width = 0;
+        int height = 0;
+        int bitDepth = 0;
+        int colorType = 0;
+        // Palette entries as luminance, with fully transparent entries read as white
+        byte[] paletteGray = null;
+
+        Inflater inflater = null;
+        byte[] plane = null;
+        try {
+            int rowBytes = 0;
+            int bytesPerPixel = 0;
+            byte[] row = null;
+            byte[] previous = null;
+            int rowFilled = 0;
+            int y = 0;
+
+            while (position + 8 <= length) {
+                int chunkLength = getInt(data, position);
+                int type = getInt(data, position + 4);
+                int start = position + 8;
+                if (chunkLength < 0 || (long) start + chunkLength + 4 > length) {
+                    throw new IIOException("Truncated PNG chunk");
+                }
+                position = start + chunkLength + 4;
+
+                if (type == IHDR) {
+                    if (chunkLength != IHDR_LENGTH || rowBytes != 0) {
+                        throw new IIOException("Malformed PNG header");
+                    }
+                    width = getInt(data, start);
+                    height = getInt(data, start + 4);
+                    bitDepth = data[start + 8];
+                    colorType = data[start + 9];
+                    boolean interlaced = data[start + 12] != 0;
+                    if (width <= 0 || height <= 0) {
+                        throw new IIOException("Malformed PNG header");
+                    }
+                    GrayImages.checkPixels(width, height, maxPixels);
+                    boolean knownColorType = colorType == GRAY || colorType == RGB || colorType == PALETTE
+                            || colorType == GRAY_ALPHA || colorType == RGB_ALPHA;
+                    if (!knownColorType || interlaced || bitDepth <= 0 || bitDepth > 8
+                            || bitDepth != 8 && colorType != GRAY && colorType != PALETTE) {
+                        return null;
+                    }
+                    int channels = switch (colorType) {
+                        case RGB -> 3;
+                        case GRAY_ALPHA -> 2;
+                        case RGB_ALPHA -> 4;
+                        default -> 1;
+                    };
+                    long rowBits = (long) width * channels * bitDepth;
+                    if (rowBits + 7 >= 8L * Integer.MAX_VALUE) {
+                        throw new IIOException("PNG rows too long");
+                    }
+                    rowBytes = (int) ((rowBits + 7) / 8);
+                    bytesPerPixel = Math.max(1, channels * bitDepth / 8);
+                } else if (type == PLTE) {
+                    int entries = chunkLength / 3;
+                    paletteGray = new byte[entries];
+                    for (int i = 0; i < entries; i++) {
+                        int offset = start + i * 3;
+                        paletteGray[i] = GrayImages.luminance(data[offset] & 0xFF, data[offset + 1] & 0xFF, data[offset + 2] & 0xFF);
+                    }
+                } else if (type == TRNS) {
+                    if (colorType != PALETTE || paletteGray == null) {
+                        return null;
+                    }
+                    for (int i = 0; i < Math.min(chunkLength, paletteGray.length); i++) {
+                        if (data[start + i] == 0) {
+                            paletteGray[i] = (byte) 0xFF;
+                        }
+                    }
+                } else if (type == IDAT) {
+                    if (rowBytes == 0 || colorType == PALETTE && paletteGray == null) {
+                        throw new IIOException("PNG image data before its header");
+                    }
+                    if (inflater == null) {
+                        inflater = new Inflater();
+                        plane = pool != null ? pool.acquire(width * height) : new byte[width * height];
+                        row = new byte[rowBytes + 1];
+                        previous = new byte[rowBytes + 1];
+                    }
+                    inflater.setInput(data, start, chunkLength);
+                    while (y < height && !inflater.needsInput() && !inflater.finished()) {
+                        int inflated = inflater.inflate(row, rowFilled, row.length - rowFilled);
+                        if (inflated == 0 && inflater.needsDictionary()) {
+                            throw new IIOException("Corrupt PNG image data");
+                        }
+                        rowFilled += inflated;
+                        if (rowFilled == row.length) {
+                            unfilter(row, previous, bytesPerPixel);
+                            toGray(row, plane, y * width, width, colorType, bitDepth, paletteGray);
+                            byte[] swap = previous;
+                            previous = row;
+                            row = swap;
+                            rowFilled = 0;
+                            y++;
+                        }
+                    }
+                } else if (type == IEND) {
+                    break;
+                }
+            }
+            if (y < height) {
+                throw new IIOException("Truncated PNG image data");
+            }
+            GrayLuminanceSource source = new GrayLuminanceSource(plane, width, height, pool != null);
+            plane = null;
+            return source;
+        } catch (DataFormatException e) {
+            throw new IIOException("Corrupt PNG image data", e);
+        } finally {
+            if (inflater != null) {
+                inflater.end();
+            }
+            if (plane != null && pool != null) {
+                pool.release(plane);
+            }
+        }
+    }
+
+    // Filters of the PNG specification, section 9; byte 0 of each row is the filter type
+    private static void unfilter(byte[] row, byte[] previous, int bytesPerPixel) throws IIOException {
+        int filter = row[0];
+        int length = row.length;
+        switch (filter) {
+            case 0:
+                break;
+            case 1:
+                for (int i = 1 + bytesPerPixel; i < length; i++) {
+                    row[i] += row[i - bytesPerPixel];
+                }
+                break;
+            case 2:
+                for (int i = 1; i < length; i++) {
+                    row[i] += previous[i];
+                }
+                break;
+            case 3:
+                for (int i = 1; i < length; i++) {
+                    int left = i > bytesPerPixel ? row[i - bytesPerPixel] & 0xFF : 0;
+                    row[i] += (byte) ((left + (previous[i] & 0xFF)) >> 1);
+                }
+                break;
+            case 4:
+                for (int i = 1; i < length; i++) {
+                    int left = i > bytesPerPixel ? row[i - bytesPerPixel] & 0xFF : 0;
+                    int up = previous[i] & 0xFF;
+                    int upLeft = i > bytesPerPixel ? previous[i - bytesPerPixel] & 0xFF : 0;
+                    row[i] += (byte) paeth(left, up, upLeft);
+                }
+                break;
+            default:
+                throw new IIOException("Unknown PNG filter type " + filter);
+        }
+    }
+
+    private static int paeth(int left, int up, int upLeft) {
+        int estimate = left + up - upLeft;
+        int distanceLeft = Math.abs(estimate - left);
+        int distanceUp = Math.abs(estimate - up);
+        int distanceUpLeft = Math.abs(estimate - upLeft);
+        if (distanceLeft <= distanceUp && distanceLeft <= distanceUpLeft) {
+            return left;
+        }
+        return distanceUp <= distanceUpLeft ? up : upLeft;
+    }
+
+    private static void toGray(byte[] row, byte[] plane, int offset, int width, int colorType, int bitDepth, byte[] paletteGray) {
+        switch (colorType) {
+            case GRAY:
+                if (bitDepth == 8) {
+                    System.arraycopy(row, 1, plane, offset, width);
+                } else {
+                    int maxSample = (1 << bitDepth) - 1;
+                    for (int x = 0; x < width; x++) {
+                        plane[offset + x] = (byte) (sample(row, x, bitDepth) * 255 / maxSample);
+                    }
+                }
+                break;
+            case PALETTE:
+                for (int x = 0; x < width; x++) {
+                    int index = sample(row, x, bitDepth);
+                    plane[offset + x] = index < paletteGray.length ? paletteGray[index] : 0;
+                }
+                break;
+            case RGB:
+                for (int x = 0, i = 1; x < width; x++, i += 3) {
+                    plane[offset + x] = GrayImages.luminance(row[i] & 0xFF, row[i + 1] & 0xFF, row[i + 2] & 0xFF);
+                }
+                break;
+            case GRAY_ALPHA:
+                for (int x = 0, i = 1; x < width; x++, i += 2) {
+                    plane[offset + x] = row[i + 1] == 0 ? (byte) 0xFF : row[i];
+                }
+                break;
+            default:
+                for (int x = 0, i = 1; x < width; x++, i += 4) {
+                    plane[offset + x] = row[i + 3] == 0
+                            ? (byte) 0xFF
+                            : GrayImages.luminance(row[i] & 0xFF, row[i + 1] & 0xFF, row[i + 2] & 0xFF);
+                }
+        }
+    }
+
+    // Samples below 8 bits are packed from the high bit down
+    private static int sample(byte[] row, int x, int bitDepth) {
+        int bit = x * bitDepth;
+        int shift = 8 - bitDepth - (bit & 7);
+        return (row[1 + (bit >> 3)] >> shift) & ((1 << bitDepth) - 1);
+    }
+
+    private static int getInt(byte[] data, int offset) {
+        return (data[offset] & 0xFF) << 24 | (data[offset + 1] & 0xFF) << 16 | (data[offset + 2] & 0xFF) << 8 | data[offset + 3] & 0xFF;
+    }
+}
@@ -0,0 +1,240 @@
+package com.company.decode;
+
+import com.company.model.ParsedUrl;
+import com.company.model.SelfManagedParams;
+
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Single-pass parser for the text of a scanned code, replacing {@code java.net.URL} and regex splits.
+ * Components are located by index and only the returned strings are allocated. Protocol, host and
+ * path match {@code URL}: the protocol is lower-cased, the host drops user info and port, the path
+ * and query stay encoded. Query keys and values are percent-decoded as UTF-8, keeping {@code +} and
+ * malformed escapes literally; a pair without {@code =} has an empty value and the last of repeated
+ * keys wins.
+ * <p>
+ * The parameters of self-managed codes are recognized without building their key strings and are
+ * also returned typed, see {@link SelfManagedParams}.
+ */
+public final class UrlParser {
+
+    private static final String API_KEY = "apiKey";
+    private static final String ID = "id";
+    private static final String IS_SCANNED = "isScanned";
+    private static final String START_DATE = "startDate";
+    private static final String END_DATE = "endDate";
+
+    private UrlParser() {
+    }
+
+    /**
+     * @throws IllegalArgumentException when the text does not start with a scheme
+     */
+    public static ParsedUrl parse(String text) {
+        int start = 0;
+        int end = text.length();
+        // Surrounding whitespace and control characters are ignored, as URL does
+        while (start < end && text.charAt(start) <= ' ') {
+            start++;
+        }
+        while (end > start && text.charAt(end - 1) <= ' ') {
+            end--;
+        }
+
+        int colon = schemeEnd(text, start, end);
+        if (colon < 0) {
+            throw new IllegalArgumentException("Not a URL: " + text);
+        }
+        int fragment = indexOf(text, '#', colon + 1, end);
+        int query = indexOf(text, '?', colon + 1, fragment);
+
+        String host = "";
+        int pathStart = colon + 1;
+        if (text.startsWith("//", pathStart) && pathStart + 2 <= query) {
+            int authority = pathStart + 2;
+            int authorityEnd = authority;
+            while (authorityEnd < query && text.charAt(authorityEnd) != '/') {
+                authorityEnd++;
+            }
+            host = host(text, authority, authorityEnd);
+            pathStart = authorityEnd;
+        }
+
+        Map<String, String> queryParams = new LinkedHashMap<>();
+        SelfManagedParams.SelfManagedParamsBuilder selfManaged = null;
+        boolean hasApiKey = false;
+        boolean hasId = false;
+        if (query < fragment) {
+            int pair = query + 1;
+            while (pair <= fragment) {
+                int pairEnd = indexOf(text, '&', pair, fragment);
+                if (pairEnd > pair) {
+                    int equals = indexOf(text, '=', pair, pairEnd);
+                    String key = knownKey(text, pair, equals);
+                    if (key == null) {
+                        key = decode(text, pair, equals);
+                        // An escaped spelling of one of our keys
+                        String known = knownKey(key, 0, key.length());
+                        key = known != null ? known : key;
+                    }
+                    String value = equals < pairEnd ? decode(text, equals + 1, pairEnd) : "";
+                    queryParams.put(key, value);
+
+                    // Typed copies of our own parameters; keys are the constants, so == is enough
+                    if (key == API_KEY || key == ID || key == IS_SCANNED || key == START_DATE || key == END_DATE) {
+                        if (selfManaged == null) {
+                            selfManaged = SelfManagedParams.builder();
+                        }
+                        if (key == API_KEY) {
+                            selfManaged.apiKey(value);
+                            hasApiKey = true;
+                        } else if (key == ID) {
+                            hasId = parseId(value, selfManaged);
+                        } else if (key == IS_SCANNED) {
+                            selfManaged.isScanned(Boolean.parseBoolean(value));
+                        } else if (key == START_DATE) {
+                            selfManaged.startDate(dateOrNull(value));
+                        } else {
+                            selfManaged.endDate(dateOrNull(value));
+                        }
+                    }
+                }
+                pair = pairEnd + 1;
+            }
+        }
+
+        return ParsedUrl.builder()
+                .fullUrl(text)
+                .protocol(text.substring(start, colon).toLowerCase(Locale.ROOT))
+                .host(host)
+                .path(text.substring(pathStart, query))
+                .queryParams(queryParams)
+                .selfManaged(hasApiKey && hasId ? selfManaged.build() : null)
+                .build();
+    }
+
+    // scheme = ALPHA *( ALPHA / DIGIT / "+" / "-" / "." ), followed by ':'
+    private static int schemeEnd(String text, int start, int end) {
+        if (start == end || !isAsciiLetter(text.charAt(start))) {
+            return -1;
+        }
+        for (int i = start + 1; i < end; i++) {
+            char c = text.charAt(i);
+            if (c == ':') {
+                return i;
+            }
+            if (!isAsciiLetter(c) && !(c >= '0' && c <= '9') && c != '+' && c != '-' && c != '.') {
+                return -1;
+            }
+        }
+        return -1;
+    }
+
+    // The authority without user info and port; IPv6 literals keep their brackets
+    private static String host(String text, int from, int to) {
+        int at = text.lastIndexOf('@', to - 1);
+        if (at >= from) {
+            from = at + 1;
+        }
+        if (from < to && text.charAt(from) == '[') {
+            int close = indexOf(text, ']', from, to);
+            return text.substring(from, close < to ? close + 1 : to);
+        }
+        return text.substring(from, indexOf(text, ':', from, to));
+    }
+
+    private static String knownKey(String text, int from, int to) {
+        switch (to - from) {
+            case 2:
+                return text.startsWith(ID, from) ? ID : null;
+            case 6:
+                return text.startsWith(API_KEY, from) ? API_KEY : null;
+            case 7:
+                return text.startsWith(END_DATE, from) ? END_DATE : null;
+            case 9:
+                return text.startsWith(IS_SCANNED, from) ? IS_SCANNED
+                        : text.startsWith(START_DATE, from) ? START_DATE : null;
+            default:
+                return null;
+        }
+    }
+
+    private static boolean parseId(String value, SelfManagedParams.SelfManagedParamsBuilder selfManaged) {
+        try {
+            selfManaged.id(Integer.parseInt(value));
+            return true;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    // Codes generated without a date carry the literal "null"
+    private static String dateOrNull(String value) {
+        return value.isEmpty() || value.equals("null") ? null : value;
+    }
+
+    /**
+     * Percent-decode {@code text[from, to)} as UTF-8. Text without escapes is returned as a substring.
+     */
+    static String decode(String text, int from, int to) {
+        int percent = indexOf(text, '%', from, to);
+        if (percent == to) {
+            return text.substring(from, to);
+        }
+        StringBuilder decoded = new StringBuilder(to - from);
+        decoded.append(text, from, percent);
+        byte[] bytes = null;
+        int i = percent;
+        while (i < to) {
+            if (!hasEscape(text, i, to)) {
+                decoded.append(text.charAt(i));
+                i++;
+                continue;
+            }
+            // A run of escapes is one UTF-8 byte sequence
+            if (bytes == null) {
+                bytes = new byte[(to - i) / 3];
+            }
+            int count = 0;
+            while (hasEscape(text, i, to)) {
+                bytes[count++] = (byte) ((hexValue(text.charAt(i + 1)) << 4) | hexValue(text.charAt(i + 2)));
+                i += 3;
+            }
+            decoded.append(new String(bytes, 0, count, StandardCharsets.UTF_8));
+        }
+        return decoded.toString();
+    }
+
+    private static boolean hasEscape(String text, int i, int to) {
+        return i + 2 < to && text.charAt(i) == '%' && hexValue(text.charAt(i + 1)) >= 0 && hexValue(text.charAt(i + 2)) >= 0;
+    }
+
+    private static int hexValue(char c) {
+        if (c >= '0' && c <= '9') {
+            return c - '0';
+        }
+        if (c >= 'a' && c <= 'f') {
+            return c - 'a' + 10;
+        }
+        if (c >= 'A' && c <= 'F') {
+            return c - 'A' + 10;
+        }
+        return -1;
+    }
+
+    private static boolean isAsciiLetter(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+
+    private static int indexOf(String text, char c, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (text.charAt(i) == c) {
+                return i;
+            }
+        }
+        return to;
+    }
+}
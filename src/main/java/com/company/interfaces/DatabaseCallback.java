@@ -1,5 +0,0 @@
-package com.company.interfaces;
-public interface DatabaseCallback {
-    void onSuccess();
-    void onFailure(Exception e);
-}
@@ -0,0 +1,121 @@
+package com.company.interfaces;
+
+import com.company.model.QrData;
+import com.company.model.QrPage;
+import com.company.model.ScanTally;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Persistence of QR records, their images and the per-client id counters. Records are returned as
+ * maps keyed by id, holding the metadata fields plus {@code base64Image} when requested. The store is
+ * selected with {@code QR_STORE}: {@code firebase} (default) or {@code local}.
+ */
+public interface QrRepository {
+
+    String IMAGE_FIELD = "base64Image";
+    // Record fields owned by scan ingestion, see recordScans
+    Set<String> SCAN_FIELDS = Set.of("scanCount", "firstScanAt", "lastScanAt");
+    int MAX_PAGE_SIZE = 1000;
+
+    /**
+     * The whole database, keyed by top-level node.
+     */
+    CompletableFuture<Map<String, Object>> getAllData();
+
+    default CompletableFuture<Map<String, Object>> getDataByClient(String apiKey) {
+        return getDataByClient(apiKey, null);
+    }
+
+    /**
+     * Retrieve the QR records of one client keyed by id.
+     *
+     * @param fields the record fields to return, or null for every metadata field. Images are only
+     *               returned when {@code base64Image} is requested.
+     * @return A CompletableFuture that fails with a {@link java.util.NoSuchElementException} when the
+     * client has no records.
+     */
+    CompletableFuture<Map<String, Object>> getDataByClient(String apiKey, Set<String> fields);
+
+    /**
+     * Retrieve one page of a client's QR records in id order.
+     *
+     * @param cursor the first id of the page, as returned in {@link QrPage#getNextCursor()}, or null to start
+     * @param limit  the page size, capped at {@value #MAX_PAGE_SIZE}
+     * @return A CompletableFuture that fails with a {@link java.util.NoSuchElementException} when the
+     * first page is requested and the client has no records.
+     */
+    CompletableFuture<QrPage> getDataByClientPage(String apiKey, Set<String> fields, String cursor, int limit);
+
+    /**
+     * The metadata of one record, without its image.
+     *
+     * @return A CompletableFuture that fails with a {@link java.util.NoSuchElementException} when the
+     * record does not exist.
+     */
+    CompletableFuture<QrData> getRecord(String apiKey, Integer id);
+
+    /**
+     * Write a new record under an id reserved with {@link #reserveIds(String, int)}.
+     *
+     * @return A CompletableFuture that completes once the write is durable. Callers that don't need
+     * the acknowledgement may ignore it; failures are logged by the store.
+     */
+    CompletableFuture<Void> InsertData(String apiKey, Integer id, QrData data);
+
+    /**
+     * Write several records of one client at once.
+     *
+     * @param dataById the records keyed by their reserved id
+     */
+    CompletableFuture<Void> insertBatch(String apiKey, Map<Integer, QrData> dataById);
+
+    /**
+     * Replace an existing record, keeping its scan tallies.
+     *
+     * @return A CompletableFuture that completes once the write is durable, or fails when the record
+     * does not exist.
+     */
+    CompletableFuture<Void> updateData(String apiKey, Integer id, QrData qrData);
+
+    /**
+     * Set only the given fields of a record read with {@link #getRecord(String, Integer)}; a null value
+     * clears the field and {@value #IMAGE_FIELD} replaces the image.
+     *
+     * @param changes new values keyed by stored field name, e.g. {@code scanned} for {@link QrData#isScanned()}
+     */
+    CompletableFuture<Void> patchData(String apiKey, Integer id, Map<String, Object> changes);
+
+    CompletableFuture<Void> deleteData(String apiKey, Integer id);
+
+    /**
+     * Add aggregated scans to existing records: marks them scanned, adds to {@code scanCount} and widens
+     * {@code firstScanAt}/{@code lastScanAt}. Each record is merged atomically, so concurrent flushes
+     * don't lose counts. Ids without a record are ignored.
+     *
+     * @param talliesById the scans of each code since the last flush, keyed by id
+     */
+    CompletableFuture<Void> recordScans(String apiKey, Map<Integer, ScanTally> talliesById);
+
+    /**
+     * Remove every record and image of the client. The id counter is kept, so ids already leased
+     * in blocks are never handed out again.
+     */
+    CompletableFuture<Void> deleteAllData(String apiKey);
+
+    /**
+     * Reserve {@code count} consecutive ids for the client atomically.
+     *
+     * @return A CompletableFuture containing the first reserved id.
+     */
+    CompletableFuture<Integer> reserveIds(String apiKey, int count);
+
+    /**
+     * Move images stored inline in the metadata records to the image store.
+     *
+     * @return A CompletableFuture containing the number of migrated images.
+     */
+    CompletableFuture<Integer> migrateInlineImages();
+}
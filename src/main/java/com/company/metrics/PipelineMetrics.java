@@ -0,0 +1,211 @@
+package com.company.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Micrometer meters of the QR pipeline and the database calls, registered once so recording is a
+ * lookup in an {@link EnumMap}:
+ * <ul>
+ *     <li>{@code qr.stage} timers, tagged {@code stage}, and {@code qr.stage.failures} counters</li>
+ *     <li>{@code qr.db.operation} timers from the call until the returned future completes, tagged
+ *     {@code operation} with the repository method, and {@code qr.db.failures} counters</li>
+ *     <li>{@code qr.db.listener.cancellations} counters, tagged {@code listener}</li>
+ *     <li>{@code qr.payload.text} (characters encoded) and {@code qr.payload.image} (bytes generated,
+ *     tagged {@code imageFormat}) distributions</li>
+ * </ul>
+ * Timers and distributions publish histogram buckets, so percentiles can be aggregated across instances.
+ */
+public class PipelineMetrics {
+
+    public enum Stage {
+        ENCODE,
+        RENDER,
+        PNG,
+        SVG,
+        BASE64,
+        VERIFY,
+        DECODE
+    }
+
+    public enum DbOperation {
+        GET_ALL_DATA("getAllData"),
+        GET_DATA_BY_CLIENT("getDataByClient"),
+        GET_DATA_BY_CLIENT_PAGE("getDataByClientPage"),
+        GET_RECORD("getRecord"),
+        INSERT_DATA("InsertData"),
+        INSERT_BATCH("insertBatch"),
+        UPDATE_DATA("updateData"),
+        PATCH_DATA("patchData"),
+        DELETE_DATA("deleteData"),
+        DELETE_ALL_DATA("deleteAllData"),
+        RECORD_SCANS("recordScans"),
+        RESERVE_IDS("reserveIds"),
+        GET_COUNTER_LIST_SIZE("getCounterListSize"),
+        MIGRATE_INLINE_IMAGES("migrateInlineImages");
+
+        private final String tag;
+
+        DbOperation(String tag) {
+            this.tag = tag;
+        }
+    }
+
+    public enum Listener {
+        // Single reads of the database
+        READ,
+        // Client mirror subscriptions
+        MIRROR,
+        CONNECTION
+    }
+
+    private final Map<Stage, Timer> stageTimers = new EnumMap<>(Stage.class);
+    private final Map<Stage, Counter> stageFailures = new EnumMap<>(Stage.class);
+    private final Map<DbOperation, Timer> dbTimers = new EnumMap<>(DbOperation.class);
+    private final Map<DbOperation, Counter> dbFailures = new EnumMap<>(DbOperation.class);
+    private final Map<Listener, Counter> cancellations = new EnumMap<>(Listener.class);
+    private final DistributionSummary textSizes;
+    private final DistributionSummary pngSizes;
+    private final DistributionSummary svgSizes;
+
+    public PipelineMetrics(MeterRegistry registry) {
+        for (Stage stage : Stage.values()) {
+            String tag = stage.name().toLowerCase(Locale.ROOT);
+            stageTimers.put(stage, Timer.builder("qr.stage")
+                    .description("Time spent in a stage of QR generation or reading")
+                    .tag("stage", tag)
+                    .publishPercentileHistogram()
+                    .minimumExpectedValue(Duration.ofNanos(10_000))
+                    .maximumExpectedValue(Duration.ofSeconds(10))
+                    .register(registry));
+            stageFailures.put(stage, Counter.builder("qr.stage.failures")
+                    .description("Stage runs that failed, including codes that did not verify")
+                    .tag("stage", tag)
+                    .register(registry));
+        }
+        for (DbOperation operation : DbOperation.values()) {
+            dbTimers.put(operation, Timer.builder("qr.db.operation")
+                    .description("Time until a database operation completed, successfully or not")
+                    .tag("operation", operation.tag)
+                    .publishPercentileHistogram()
+                    .minimumExpectedValue(Duration.ofMillis(1))
+                    .maximumExpectedValue(Duration.ofSeconds(30))
+                    .register(registry));
+            dbFailures.put(operation, Counter.builder("qr.db.failures")
+                    .description("Database operations that completed exceptionally")
+                    .tag("operation", operation.tag)
+                    .register(registry));
+        }
+        for (Listener listener : Listener.values()) {
+            cancellations.put(listener, Counter.builder("qr.db.listener.cancellations")
+                    .description("Database listeners cancelled by the server")
+                    .tag("listener", listener.name().toLowerCase(Locale.ROOT))
+                    .register(registry));
+        }
+        textSizes = DistributionSummary.builder("qr.payload.text")
+                .description("Characters of the text encoded in a generated code")
+                .baseUnit("characters")
+                .publishPercentileHistogram()
+                .minimumExpectedValue(1.0)
+                .maximumExpectedValue(8192.0)
+                .register(registry);
+        pngSizes = imageSizes(registry, "png");
+        svgSizes = imageSizes(registry, "svg");
+    }
+
+    private static DistributionSummary imageSizes(MeterRegistry registry, String imageFormat) {
+        return DistributionSummary.builder("qr.payload.image")
+                .description("Bytes of a generated image")
+                .baseUnit("bytes")
+                .tag("imageFormat", imageFormat)
+                .publishPercentileHistogram()
+                .minimumExpectedValue(64.0)
+                .maximumExpectedValue(16.0 * 1024 * 1024)
+                .register(registry);
+    }
+
+    @FunctionalInterface
+    public interface StageCall<T, E extends Exception> {
+        T call() throws E;
+    }
+
+    /**
+     * Time a stage, counting a failure when it throws.
+     */
+    public <T, E extends Exception> T time(Stage stage, StageCall<T, E> call) throws E {
+        long start = System.nanoTime();
+        boolean succeeded = false;
+        try {
+            T result = call.call();
+            succeeded = true;
+            return result;
+        } finally {
+            record(stage, start, succeeded);
+        }
+    }
+
+    /**
+     * Record a stage timed by the caller, for calls that throw more than one checked exception.
+     *
+     * @param start the {@link System#nanoTime()} at which the stage started
+     */
+    public void record(Stage stage, long start, boolean succeeded) {
+        stageTimers.get(stage).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        if (!succeeded) {
+            stageFailures.get(stage).increment();
+        }
+    }
+
+    /**
+     * Count a stage that completed without throwing but did not succeed, like a code that does not verify.
+     */
+    public void failed(Stage stage) {
+        stageFailures.get(stage).increment();
+    }
+
+    /**
+     * Time a database operation until its future completes. An operation that throws instead of
+     * returning a future is recorded as failed and rethrown.
+     */
+    public <T> CompletableFuture<T> time(DbOperation operation, Supplier<CompletableFuture<T>> call) {
+        long start = System.nanoTime();
+        CompletableFuture<T> future;
+        try {
+            future = call.get();
+        } catch (RuntimeException e) {
+            recordDb(operation, start, e);
+            throw e;
+        }
+        future.whenComplete((result, e) -> recordDb(operation, start, e));
+        return future;
+    }
+
+    private void recordDb(DbOperation operation, long start, Throwable failure) {
+        dbTimers.get(operation).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        if (failure != null) {
+            dbFailures.get(operation).increment();
+        }
+    }
+
+    public void cancelled(Listener listener) {
+        cancellations.get(listener).increment();
+    }
+
+    public void recordText(String text) {
+        textSizes.record(text.length());
+    }
+
+    public void recordImage(boolean svg, byte[] image) {
+        (svg ? svgSizes : pngSizes).record(image.length);
+    }
+}
@@ -0,0 +1,27 @@
+package com.company.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ClientCacheStats {
+    private boolean enabled;
+    private boolean connected;
+    private int clients;
+    private long records;
+    private long sizeBytes;
+    private long maxBytes;
+    private long hitCount;
+    private long missCount;
+    private double hitRate;
+    // Reads served while the listeners were disconnected from Firebase, so possibly stale
+    private long staleHitCount;
+    private long disconnectedMillis;
+    private long eventCount;
+    private long evictionCount;
+}
@@ -0,0 +1,17 @@
+package com.company.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class DecodeStageStats {
+    private long attempts;
+    private long hits;
+    private double hitRate;
+    private double averageMillis;
+}
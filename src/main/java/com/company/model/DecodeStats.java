@@ -0,0 +1,20 @@
+package com.company.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Map;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class DecodeStats {
+    private long decodes;
+    private long misses;
+    private double hitRate;
+    // Keyed by stage name, cheapest first
+    private Map<String, DecodeStageStats> stages;
+}
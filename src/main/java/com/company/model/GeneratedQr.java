@@ -0,0 +1,16 @@
+package com.company.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class GeneratedQr {
+    private Integer id;
+    private QrData qrData;
+    private byte[] image;
+}
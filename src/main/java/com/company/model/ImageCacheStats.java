@@ -0,0 +1,28 @@
+package com.company.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ImageCacheStats {
+    private boolean enabled;
+    private long entries;
+    private long sizeBytes;
+    private long maxBytes;
+    private long hitCount;
+    private long missCount;
+    private double hitRate;
+    private long evictionCount;
+    private long evictionBytes;
+    // Encoded QR symbols shared by every size and encoding of a text
+    private long symbolEntries;
+    private long symbolSizeBytes;
+    private long symbolHitCount;
+    private long symbolMissCount;
+    private double symbolHitRate;
+}
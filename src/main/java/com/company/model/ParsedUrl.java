@@ -1,5 +1,6 @@
 package com.company.model;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -17,5 +18,7 @@ public class ParsedUrl {
     private String host;
     private String path;
     private Map<String, String> queryParams;
-
+    // Only present for codes generated as type 2/4
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private SelfManagedParams selfManaged;
 }
\ No newline at end of file
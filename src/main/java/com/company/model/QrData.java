@@ -8,7 +8,7 @@ import lombok.NoArgsConstructor;
 import java.sql.Date;
 
 @Data
-@Builder
+@Builder(toBuilder = true)
 @NoArgsConstructor
 @AllArgsConstructor
 public class QrData {
@@ -20,4 +20,12 @@ public class QrData {
     private String endDate;
     private boolean isScanned;
     private Integer type;
+    // Barcode format of non-QR codes, see Symbology
+    private String format;
+    // Encoding of base64Image when it is not a PNG, e.g. svg
+    private String imageFormat;
+    // Scan tallies, written only by scan ingestion and kept when the record is updated
+    private Long scanCount;
+    private Long firstScanAt;
+    private Long lastScanAt;
 }
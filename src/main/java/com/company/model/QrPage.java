@@ -0,0 +1,19 @@
+package com.company.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Map;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class QrPage {
+    // Records keyed by id, in id order
+    private Map<String, Object> records;
+    // Id to pass as cursor for the next page, null on the last page
+    private String nextCursor;
+}
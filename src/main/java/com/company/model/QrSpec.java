@@ -0,0 +1,22 @@
+package com.company.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class QrSpec {
+    private String url;
+    private Integer type;
+    private Integer size;
+    private String errorCorrection;
+    private Boolean isScanned;
+    private String startDate;
+    private String endDate;
+    private String format;
+    private String imageFormat;
+}
@@ -0,0 +1,21 @@
+package com.company.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ScanStats {
+    private long received;
+    private long rejected;
+    // Codes with scans waiting for the next flush
+    private long pendingCodes;
+    private long flushes;
+    private long codesWritten;
+    private long codesFailed;
+    private long flushMillis;
+}
@@ -0,0 +1,19 @@
+package com.company.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Scans of one code aggregated since the last flush. Timestamps are epoch milliseconds.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ScanTally {
+    private long count;
+    private long firstScanAt;
+    private long lastScanAt;
+}
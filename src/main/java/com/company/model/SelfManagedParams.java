@@ -0,0 +1,22 @@
+package com.company.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * The identity a type 2/4 code carries in its url query, typed. Dates the code was generated
+ * without are null.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class SelfManagedParams {
+    private String apiKey;
+    private int id;
+    private boolean isScanned;
+    private String startDate;
+    private String endDate;
+}
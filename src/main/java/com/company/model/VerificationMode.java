@@ -0,0 +1,13 @@
+package com.company.model;
+
+public enum VerificationMode {
+    // Decode every generated PNG again with TRY_HARDER
+    FULL,
+    // Check the encoded symbol and its scaling without rasterizing or decoding; other formats
+    // decode their raster in memory with their own reader
+    STRUCTURAL,
+    // Structural check for every request, full decode for one request in N
+    SAMPLED,
+    // Trust the encoder
+    NONE
+}
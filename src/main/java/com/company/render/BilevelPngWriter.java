@@ -0,0 +1,130 @@
+package com.company.render;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Purpose-built PNG encoder for bilevel images. Writes a 1-bit grayscale PNG straight from a
+ * {@link PackedBitRaster}: each packed row is fed to a pooled {@link Deflater} and the compressed
+ * output is emitted as IDAT chunks into the target stream, so the image is never copied in full.
+ */
+public class BilevelPngWriter {
+
+    private static final byte[] SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+    private static final byte[] IHDR = "IHDR".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] IDAT = "IDAT".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] IEND = "IEND".getBytes(StandardCharsets.US_ASCII);
+    private static final byte FILTER_NONE = 0;
+    private static final int CHUNK_SIZE = 16 * 1024;
+    private static final int MAX_POOLED_DEFLATERS = 64;
+
+    private final int compressionLevel;
+    private final ConcurrentLinkedQueue<Deflater> deflaters = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pooled = new AtomicInteger();
+
+    public BilevelPngWriter(int compressionLevel) {
+        if (compressionLevel < Deflater.DEFAULT_COMPRESSION || compressionLevel > Deflater.BEST_COMPRESSION) {
+            throw new IllegalArgumentException("Invalid PNG compression level: " + compressionLevel);
+        }
+        this.compressionLevel = compressionLevel;
+    }
+
+    public int getCompressionLevel() {
+        return compressionLevel;
+    }
+
+    public void write(PackedBitRaster raster, OutputStream out) throws IOException {
+        CRC32 crc = new CRC32();
+        out.write(SIGNATURE);
+
+        byte[] header = new byte[13];
+        putInt(header, 0, raster.getWidth());
+        putInt(header, 4, raster.getHeight());
+        header[8] = 1; // bit depth
+        header[9] = 0; // color type: grayscale, 0 = black and 1 = white
+        writeChunk(out, IHDR, header, header.length, crc);
+
+        Deflater deflater = acquire();
+        try {
+            byte[] chunk = new byte[CHUNK_SIZE];
+            byte[] row = new byte[raster.getStride() + 1];
+            row[0] = FILTER_NONE;
+            byte[] data = raster.getData();
+            int position = 0;
+            for (int y = 0; y < raster.getHeight(); y++) {
+                System.arraycopy(data, y * raster.getStride(), row, 1, raster.getStride());
+                deflater.setInput(row);
+                while (!deflater.needsInput()) {
+                    position = deflate(deflater, out, chunk, position, crc);
+                }
+            }
+            deflater.finish();
+            while (!deflater.finished()) {
+                position = deflate(deflater, out, chunk, position, crc);
+            }
+            if (position > 0) {
+                writeChunk(out, IDAT, chunk, position, crc);
+            }
+        } finally {
+            release(deflater);
+        }
+
+        writeChunk(out, IEND, new byte[0], 0, crc);
+    }
+
+    // Deflate into the pending IDAT chunk, flushing it to the stream once it is full
+    private int deflate(Deflater deflater, OutputStream out, byte[] chunk, int position, CRC32 crc) throws IOException {
+        position += deflater.deflate(chunk, position, chunk.length - position);
+        if (position == chunk.length) {
+            writeChunk(out, IDAT, chunk, position, crc);
+            return 0;
+        }
+        return position;
+    }
+
+    private static void writeChunk(OutputStream out, byte[] type, byte[] data, int length, CRC32 crc) throws IOException {
+        byte[] lengthBytes = new byte[4];
+        putInt(lengthBytes, 0, length);
+        out.write(lengthBytes);
+        out.write(type);
+        out.write(data, 0, length);
+
+        crc.reset();
+        crc.update(type);
+        crc.update(data, 0, length);
+        byte[] crcBytes = new byte[4];
+        putInt(crcBytes, 0, (int) crc.getValue());
+        out.write(crcBytes);
+    }
+
+    private static void putInt(byte[] target, int offset, int value) {
+        target[offset] = (byte) (value >>> 24);
+        target[offset + 1] = (byte) (value >>> 16);
+        target[offset + 2] = (byte) (value >>> 8);
+        target[offset + 3] = (byte) value;
+    }
+
+    private Deflater acquire() {
+        Deflater deflater = deflaters.poll();
+        if (deflater == null) {
+            return new Deflater(compressionLevel);
+        }
+        pooled.decrementAndGet();
+        return deflater;
+    }
+
+    private void release(Deflater deflater) {
+        deflater.reset();
+        if (pooled.incrementAndGet() <= MAX_POOLED_DEFLATERS) {
+            deflaters.offer(deflater);
+        } else {
+            pooled.decrementAndGet();
+            deflater.end();
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.company.render;
+
+import java.util.Locale;
+
+/**
+ * Output encodings of a generated code: a 1-bit PNG raster, or an SVG path drawn from the module
+ * matrix without rasterizing.
+ */
+public enum ImageFormat {
+    PNG("image/png", "png"),
+    SVG("image/svg+xml", "svg");
+
+    private final String contentType;
+    private final String extension;
+
+    ImageFormat(String contentType, String extension) {
+        this.contentType = contentType;
+        this.extension = extension;
+    }
+
+    /**
+     * @param name {@code png} or {@code svg}, in any case; null or blank is PNG
+     * @throws IllegalArgumentException for other formats
+     */
+    public static ImageFormat parse(String name) {
+        if (name == null || name.isBlank()) {
+            return PNG;
+        }
+        try {
+            return valueOf(name.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unsupported image format: " + name);
+        }
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+}
@@ -0,0 +1,69 @@
+package com.company.render;
+
+import com.google.zxing.Binarizer;
+import com.google.zxing.LuminanceSource;
+import com.google.zxing.common.BitArray;
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.common.HybridBinarizer;
+
+/**
+ * A rendered raster is already black and white, so its zxing bit matrix is the packed raster with
+ * each 32-pixel word bit-reversed and inverted; no luminance is computed or thresholded.
+ */
+public final class PackedBitBinarizer extends Binarizer {
+
+    private final PackedBitRaster raster;
+
+    public PackedBitBinarizer(PackedBitRaster raster) {
+        super(new PackedBitLuminanceSource(raster));
+        this.raster = raster;
+    }
+
+    @Override
+    public BitArray getBlackRow(int y, BitArray row) {
+        if (row == null || row.getSize() < raster.getWidth()) {
+            row = new BitArray(raster.getWidth());
+        } else {
+            row.clear();
+        }
+        fillRow(y, row);
+        return row;
+    }
+
+    @Override
+    public BitMatrix getBlackMatrix() {
+        BitMatrix matrix = new BitMatrix(raster.getWidth(), raster.getHeight());
+        BitArray row = new BitArray(raster.getWidth());
+        for (int y = 0; y < raster.getHeight(); y++) {
+            row.clear();
+            fillRow(y, row);
+            matrix.setRow(y, row);
+        }
+        return matrix;
+    }
+
+    // Crops and rotations of the source are thresholded normally
+    @Override
+    public Binarizer createBinarizer(LuminanceSource source) {
+        return new HybridBinarizer(source);
+    }
+
+    private void fillRow(int y, BitArray row) {
+        byte[] data = raster.getData();
+        int width = raster.getWidth();
+        int offset = y * raster.getStride();
+        for (int x = 0; x < width; x += 32) {
+            int word = 0;
+            for (int i = 0; i < 4; i++) {
+                int index = (x >>> 3) + i;
+                // Pixels past the row end read as white
+                word = (word << 8) | (index < raster.getStride() ? data[offset + index] & 0xFF : 0xFF);
+            }
+            int black = ~Integer.reverse(word);
+            if (width - x < 32) {
+                black &= (1 << (width - x)) - 1;
+            }
+            row.setBulk(x, black);
+        }
+    }
+}
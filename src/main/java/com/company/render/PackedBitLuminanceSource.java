@@ -0,0 +1,43 @@
+package com.company.render;
+
+import com.google.zxing.LuminanceSource;
+
+/**
+ * Presents a packed 1-bit raster to zxing readers as black (0) and white (255) luminance, so a
+ * freshly rendered symbol can be decoded without encoding and reading back its PNG.
+ */
+public final class PackedBitLuminanceSource extends LuminanceSource {
+
+    private final PackedBitRaster raster;
+
+    public PackedBitLuminanceSource(PackedBitRaster raster) {
+        super(raster.getWidth(), raster.getHeight());
+        this.raster = raster;
+    }
+
+    @Override
+    public byte[] getRow(int y, byte[] row) {
+        int width = getWidth();
+        if (row == null || row.length < width) {
+            row = new byte[width];
+        }
+        byte[] data = raster.getData();
+        int offset = y * raster.getStride();
+        for (int x = 0; x < width; x++) {
+            // Move the pixel's bit to the sign bit; a set (white) bit sign-extends to 0xFF
+            row[x] = (byte) ((byte) (data[offset + (x >>> 3)] << (x & 7)) >> 7);
+        }
+        return row;
+    }
+
+    @Override
+    public byte[] getMatrix() {
+        int width = getWidth();
+        byte[] matrix = new byte[width * getHeight()];
+        byte[] row = new byte[width];
+        for (int y = 0; y < getHeight(); y++) {
+            System.arraycopy(getRow(y, row), 0, matrix, y * width, width);
+        }
+        return matrix;
+    }
+}
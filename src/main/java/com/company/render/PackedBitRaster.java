@@ -0,0 +1,22 @@
+package com.company.render;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * A 1-bit-per-pixel image packed MSB-first into rows of {@code stride} bytes.
+ * A set bit is a white (light) pixel and a cleared bit is a black (dark) module pixel,
+ * which matches both {@code TYPE_BYTE_BINARY} and 1-bit grayscale PNG scanlines.
+ */
+@Getter
+@AllArgsConstructor
+public class PackedBitRaster {
+    private final int width;
+    private final int height;
+    private final int stride;
+    private final byte[] data;
+
+    public boolean isBlack(int x, int y) {
+        return (data[y * stride + (x >>> 3)] & (0x80 >>> (x & 7))) == 0;
+    }
+}
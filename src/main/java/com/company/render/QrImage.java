@@ -0,0 +1,19 @@
+package com.company.render;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * A verified, encoded QR image as returned to clients and stored in the database.
+ */
+@Getter
+@AllArgsConstructor
+public class QrImage {
+    private final byte[] bytes;
+    private final String base64;
+
+    // Approximate heap footprint, used to bound the image cache by bytes
+    public int weight() {
+        return bytes.length + base64.length() + 64;
+    }
+}
@@ -0,0 +1,183 @@
+package com.company.render;
+
+import com.google.zxing.common.BitArray;
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.qrcode.encoder.ByteMatrix;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.IndexColorModel;
+import java.awt.image.MultiPixelPackedSampleModel;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+import java.util.Arrays;
+
+/**
+ * Renders a {@link BitMatrix} or a QR module matrix into a packed 1-bit raster without touching
+ * individual pixels. Dark runs of a row are cleared as byte ranges and rows identical to the previous
+ * one (every module row repeats {@code scale} times) are copied with a single arraycopy.
+ */
+public final class QrRasterRenderer {
+
+    private static final IndexColorModel BLACK_WHITE = new IndexColorModel(1, 2,
+            new byte[]{0, (byte) 0xFF}, new byte[]{0, (byte) 0xFF}, new byte[]{0, (byte) 0xFF});
+
+    private QrRasterRenderer() {
+    }
+
+    // Pack the matrix rows straight into a 1-bit raster
+    public static PackedBitRaster pack(BitMatrix matrix) {
+        int width = matrix.getWidth();
+        int height = matrix.getHeight();
+        int stride = (width + 7) >>> 3;
+        byte[] data = new byte[stride * height];
+
+        BitArray row = new BitArray(width);
+        BitArray previous = new BitArray(width);
+        for (int y = 0; y < height; y++) {
+            row = matrix.getRow(y, row);
+            int offset = y * stride;
+            if (y > 0 && row.equals(previous)) {
+                System.arraycopy(data, offset - stride, data, offset, stride);
+            } else {
+                packRow(row, width, data, offset, stride);
+            }
+            BitArray swap = previous;
+            previous = row;
+            row = swap;
+        }
+        return new PackedBitRaster(width, height, stride, data);
+    }
+
+    /**
+     * Scale a QR module matrix to a packed raster of at least {@code width x height} pixels.
+     * Uses the same integer scale and centering as zxing's QRCodeWriter, so the output is
+     * pixel-identical to {@code MultiFormatWriter.encode(...)} with the same margin.
+     */
+    public static PackedBitRaster pack(ByteMatrix modules, int width, int height, int quietZone) {
+        int inputWidth = modules.getWidth();
+        int inputHeight = modules.getHeight();
+        int outputWidth = Math.max(width, inputWidth + (quietZone * 2));
+        int outputHeight = Math.max(height, inputHeight + (quietZone * 2));
+        int scale = moduleScale(modules, width, height, quietZone);
+        int leftPadding = (outputWidth - (inputWidth * scale)) / 2;
+        int topPadding = (outputHeight - (inputHeight * scale)) / 2;
+
+        int stride = (outputWidth + 7) >>> 3;
+        byte[] data = new byte[stride * outputHeight];
+        Arrays.fill(data, (byte) 0xFF);
+
+        byte[][] cells = modules.getArray();
+        for (int inputY = 0; inputY < inputHeight; inputY++) {
+            int offset = (topPadding + inputY * scale) * stride;
+            byte[] cellRow = cells[inputY];
+            int inputX = 0;
+            while (inputX < inputWidth) {
+                if (cellRow[inputX] != 1) {
+                    inputX++;
+                    continue;
+                }
+                int runStart = inputX;
+                while (inputX < inputWidth && cellRow[inputX] == 1) {
+                    inputX++;
+                }
+                clearRun(data, offset, leftPadding + runStart * scale, leftPadding + inputX * scale);
+            }
+            for (int copy = 1; copy < scale; copy++) {
+                System.arraycopy(data, offset, data, offset + copy * stride, stride);
+            }
+        }
+        return new PackedBitRaster(outputWidth, outputHeight, stride, data);
+    }
+
+    /**
+     * Scale a module matrix of any format to a packed raster of at least {@code width x height} pixels,
+     * centered with the same integer scale rule as the QR matrix. Linear (1D) symbols keep only the
+     * horizontal quiet zone and their single row of bars runs over the whole height.
+     */
+    public static PackedBitRaster pack(BitMatrix modules, int width, int height, int quietZone, boolean linear) {
+        int inputWidth = modules.getWidth();
+        int inputHeight = linear ? 1 : modules.getHeight();
+        int outputWidth = Math.max(width, inputWidth + (quietZone * 2));
+        int outputHeight = linear ? Math.max(height, 1) : Math.max(height, inputHeight + (quietZone * 2));
+        int scale = moduleScale(modules, width, height, quietZone, linear);
+        int rowScale = linear ? outputHeight : scale;
+        int leftPadding = (outputWidth - (inputWidth * scale)) / 2;
+        int topPadding = linear ? 0 : (outputHeight - (inputHeight * scale)) / 2;
+
+        int stride = (outputWidth + 7) >>> 3;
+        byte[] data = new byte[stride * outputHeight];
+        Arrays.fill(data, (byte) 0xFF);
+
+        BitArray row = new BitArray(inputWidth);
+        for (int inputY = 0; inputY < inputHeight; inputY++) {
+            row = modules.getRow(inputY, row);
+            int offset = (topPadding + inputY * rowScale) * stride;
+            int start = row.getNextSet(0);
+            while (start < inputWidth) {
+                int end = row.getNextUnset(start);
+                clearRun(data, offset, leftPadding + start * scale, leftPadding + end * scale);
+                start = end < inputWidth ? row.getNextSet(end) : inputWidth;
+            }
+            for (int copy = 1; copy < rowScale; copy++) {
+                System.arraycopy(data, offset, data, offset + copy * stride, stride);
+            }
+        }
+        return new PackedBitRaster(outputWidth, outputHeight, stride, data);
+    }
+
+    public static int moduleScale(BitMatrix modules, int width, int height, int quietZone, boolean linear) {
+        int fullWidth = modules.getWidth() + (quietZone * 2);
+        if (linear) {
+            return Math.max(width, fullWidth) / fullWidth;
+        }
+        int fullHeight = modules.getHeight() + (quietZone * 2);
+        return Math.min(Math.max(width, fullWidth) / fullWidth, Math.max(height, fullHeight) / fullHeight);
+    }
+
+    // Number of pixels per module when scaling the matrix into the requested size
+    public static int moduleScale(ByteMatrix modules, int width, int height, int quietZone) {
+        int qrWidth = modules.getWidth() + (quietZone * 2);
+        int qrHeight = modules.getHeight() + (quietZone * 2);
+        return Math.min(Math.max(width, qrWidth) / qrWidth, Math.max(height, qrHeight) / qrHeight);
+    }
+
+    // Wrap a packed raster in a TYPE_BYTE_BINARY image sharing the same backing array
+    public static BufferedImage toBufferedImage(PackedBitRaster raster) {
+        MultiPixelPackedSampleModel sampleModel = new MultiPixelPackedSampleModel(
+                DataBuffer.TYPE_BYTE, raster.getWidth(), raster.getHeight(), 1, raster.getStride(), 0);
+        DataBufferByte buffer = new DataBufferByte(raster.getData(), raster.getData().length);
+        WritableRaster writableRaster = Raster.createWritableRaster(sampleModel, buffer, null);
+        return new BufferedImage(BLACK_WHITE, writableRaster, false, null);
+    }
+
+    public static BufferedImage toBufferedImage(BitMatrix matrix) {
+        return toBufferedImage(pack(matrix));
+    }
+
+    private static void packRow(BitArray row, int width, byte[] data, int offset, int stride) {
+        Arrays.fill(data, offset, offset + stride, (byte) 0xFF);
+        int start = row.getNextSet(0);
+        while (start < width) {
+            int end = row.getNextUnset(start);
+            clearRun(data, offset, start, end);
+            start = end < width ? row.getNextSet(end) : width;
+        }
+    }
+
+    // Clear the bits [from, to) of a row, i.e. paint them black
+    static void clearRun(byte[] data, int offset, int from, int to) {
+        int firstByte = from >>> 3;
+        int lastByte = (to - 1) >>> 3;
+        int headMask = 0xFF >>> (from & 7);
+        int tailMask = (0xFF << (7 - ((to - 1) & 7))) & 0xFF;
+        if (firstByte == lastByte) {
+            data[offset + firstByte] &= (byte) ~(headMask & tailMask);
+            return;
+        }
+        data[offset + firstByte] &= (byte) ~headMask;
+        Arrays.fill(data, offset + firstByte + 1, offset + lastByte, (byte) 0);
+        data[offset + lastByte] &= (byte) ~tailMask;
+    }
+}
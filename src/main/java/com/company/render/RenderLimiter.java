@@ -0,0 +1,40 @@
+package com.company.render;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Caps how many CPU-bound renders run at once. Request threads are cheap when running on virtual
+ * threads, so without a cap thousands of them would render concurrently and oversubscribe the cores;
+ * waiting callers park on the semaphore instead.
+ */
+public class RenderLimiter {
+
+    private final Semaphore permits;
+    private final int maxConcurrency;
+
+    public RenderLimiter(int maxConcurrency) {
+        if (maxConcurrency < 1) {
+            throw new IllegalArgumentException("Render concurrency must be positive: " + maxConcurrency);
+        }
+        this.maxConcurrency = maxConcurrency;
+        this.permits = new Semaphore(maxConcurrency, true);
+    }
+
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    public int getQueueLength() {
+        return permits.getQueueLength();
+    }
+
+    public <T> T call(Callable<T> render) throws Exception {
+        permits.acquire();
+        try {
+            return render.call();
+        } finally {
+            permits.release();
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package com.company.render;
+
+import com.google.zxing.common.BitMatrix;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Everything produced while generating one image of a non-QR format: the module matrix, the
+ * packed raster it was scaled into and the final PNG bytes. {@code text} is the validated payload
+ * the symbol decodes to.
+ */
+@Getter
+@AllArgsConstructor
+public class RenderedBarcode {
+    private final Symbology symbology;
+    private final String text;
+    private final BitMatrix modules;
+    private final int moduleScale;
+    private final PackedBitRaster raster;
+    private final byte[] png;
+}
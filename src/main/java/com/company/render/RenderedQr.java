@@ -0,0 +1,19 @@
+package com.company.render;
+
+import com.google.zxing.qrcode.encoder.QRCode;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Everything produced while generating one QR image: the encoded symbol, the packed raster
+ * it was scaled into and the final PNG bytes.
+ */
+@Getter
+@AllArgsConstructor
+public class RenderedQr {
+    private final String text;
+    private final QRCode code;
+    private final int quietZone;
+    private final PackedBitRaster raster;
+    private final byte[] png;
+}
@@ -0,0 +1,103 @@
+package com.company.render;
+
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.qrcode.encoder.ByteMatrix;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes a module matrix as a resolution-independent SVG with a single path. Dark modules are merged
+ * into rectangles, a horizontal run extended down over the rows that repeat it, and each rectangle is
+ * one {@code m dx dy h w v h h -w z} subpath in module units, moving relative to the start of the
+ * previous one so coordinates stay short. The quiet zone is part of the view box and
+ * {@code width}/{@code height} only set the default display size, so nothing is rasterized.
+ */
+public final class SvgWriter {
+
+    private SvgWriter() {
+    }
+
+    public static void write(ByteMatrix modules, int quietZone, int width, int height, OutputStream out) throws IOException {
+        BitMatrix bits = new BitMatrix(modules.getWidth(), modules.getHeight());
+        for (int y = 0; y < modules.getHeight(); y++) {
+            for (int x = 0; x < modules.getWidth(); x++) {
+                if (modules.get(x, y) == 1) {
+                    bits.set(x, y);
+                }
+            }
+        }
+        write(bits, quietZone, false, width, height, out);
+    }
+
+    /**
+     * @param linear draw the single row of a 1D symbol as bars stretched over the whole height
+     */
+    public static void write(BitMatrix modules, int quietZone, boolean linear, int width, int height, OutputStream out) throws IOException {
+        int viewWidth = modules.getWidth() + (quietZone * 2);
+        int viewHeight = linear ? 1 : modules.getHeight() + (quietZone * 2);
+        int offsetY = linear ? 0 : quietZone;
+
+        StringBuilder svg = new StringBuilder(256 + modules.getWidth() * (linear ? 8 : modules.getHeight()));
+        svg.append("<svg xmlns=\"http://www.w3.org/2000/svg\" width=\"").append(width)
+                .append("\" height=\"").append(height)
+                .append("\" viewBox=\"0 0 ").append(viewWidth).append(' ').append(viewHeight)
+                // Bars stretch vertically; 2D symbols keep square modules
+                .append(linear ? "\" preserveAspectRatio=\"none" : "")
+                .append("\" shape-rendering=\"crispEdges\"><rect width=\"100%\" height=\"100%\" fill=\"#fff\"/><path d=\"");
+        appendPath(svg, modules, linear ? 1 : modules.getHeight(), quietZone, offsetY);
+        svg.append("\"/></svg>");
+        out.write(svg.toString().getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private static void appendPath(StringBuilder path, BitMatrix modules, int rows, int offsetX, int offsetY) {
+        int columns = modules.getWidth();
+        BitMatrix covered = new BitMatrix(columns, rows);
+        // After z the current point is back at the start of the subpath, the origin of the next m
+        int previousX = -offsetX;
+        int previousY = -offsetY;
+        for (int y = 0; y < rows; y++) {
+            int x = 0;
+            while (x < columns) {
+                if (!modules.get(x, y) || covered.get(x, y)) {
+                    x++;
+                    continue;
+                }
+                int runStart = x;
+                while (x < columns && modules.get(x, y) && !covered.get(x, y)) {
+                    x++;
+                }
+                int runWidth = x - runStart;
+                int runHeight = 1;
+                while (y + runHeight < rows && isUncoveredRun(modules, covered, runStart, x, y + runHeight)) {
+                    runHeight++;
+                }
+                covered.setRegion(runStart, y, runWidth, runHeight);
+                int dy = y - previousY;
+                path.append('m').append(runStart - previousX);
+                // A minus sign separates the numbers on its own
+                if (dy >= 0) {
+                    path.append(' ');
+                }
+                path.append(dy).append('h').append(runWidth).append('v').append(runHeight)
+                        .append('h').append(-runWidth).append('z');
+                previousX = runStart;
+                previousY = y;
+            }
+        }
+    }
+
+    // The same run, bounded by light modules or the edge on both sides so rectangles don't split wider runs
+    private static boolean isUncoveredRun(BitMatrix modules, BitMatrix covered, int from, int to, int y) {
+        if ((from > 0 && modules.get(from - 1, y)) || (to < modules.getWidth() && modules.get(to, y))) {
+            return false;
+        }
+        for (int x = from; x < to; x++) {
+            if (!modules.get(x, y) || covered.get(x, y)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
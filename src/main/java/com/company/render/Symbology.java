@@ -0,0 +1,186 @@
+package com.company.render;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.EncodeHintType;
+import com.google.zxing.Writer;
+import com.google.zxing.WriterException;
+import com.google.zxing.aztec.AztecWriter;
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.datamatrix.DataMatrixWriter;
+import com.google.zxing.datamatrix.encoder.SymbolShapeHint;
+import com.google.zxing.oned.Code128Writer;
+import com.google.zxing.oned.EAN13Writer;
+import com.google.zxing.pdf417.PDF417Writer;
+import com.google.zxing.qrcode.QRCodeWriter;
+import com.google.zxing.qrcode.decoder.ErrorCorrectionLevel;
+
+import java.nio.charset.StandardCharsets;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * The barcode formats the service can generate. Each one validates its payload, carries its own
+ * encoder hints and quiet zone, and encodes to a module matrix of one cell per module and no margin;
+ * scaling, quiet zone and PNG encoding are shared by all formats, see
+ * {@link QrRasterRenderer#pack(BitMatrix, int, int, int, boolean)}.
+ */
+public enum Symbology {
+    // Kept at no quiet zone, as QR images always were
+    QR_CODE(BarcodeFormat.QR_CODE, new QRCodeWriter(), 0, false),
+    CODE_128(BarcodeFormat.CODE_128, new Code128Writer(), 10, true),
+    // The left quiet zone of EAN-13 is 11 modules, the right one 7
+    EAN_13(BarcodeFormat.EAN_13, new EAN13Writer(), 11, true),
+    DATA_MATRIX(BarcodeFormat.DATA_MATRIX, new DataMatrixWriter(), 1, false),
+    PDF_417(BarcodeFormat.PDF_417, new PDF417Writer(), 2, false),
+    AZTEC(BarcodeFormat.AZTEC, new AztecWriter(), 1, false);
+
+    private static final int CODE_128_MAX_LENGTH = 80;
+
+    private final BarcodeFormat format;
+    // zxing writers keep no state between calls
+    private final Writer writer;
+    private final int quietZone;
+    private final boolean linear;
+
+    Symbology(BarcodeFormat format, Writer writer, int quietZone, boolean linear) {
+        this.format = format;
+        this.writer = writer;
+        this.quietZone = quietZone;
+        this.linear = linear;
+    }
+
+    /**
+     * @param name a format name such as {@code CODE_128} or {@code code128}; null or blank is QR
+     * @throws IllegalArgumentException for formats that can't be generated
+     */
+    public static Symbology parse(String name) {
+        if (name == null || name.isBlank()) {
+            return QR_CODE;
+        }
+        String normalized = name.trim().toUpperCase(Locale.ROOT).replace("-", "").replace("_", "");
+        for (Symbology symbology : values()) {
+            if (symbology.name().replace("_", "").equals(normalized)) {
+                return symbology;
+            }
+        }
+        throw new IllegalArgumentException("Unsupported barcode format: " + name);
+    }
+
+    public BarcodeFormat getFormat() {
+        return format;
+    }
+
+    // Quiet zone on each side, in modules; linear formats have it on the left and right only
+    public int getQuietZone() {
+        return quietZone;
+    }
+
+    // 1D formats: one row of bars stretched over the whole image height
+    public boolean isLinear() {
+        return linear;
+    }
+
+    /**
+     * Check that the format can carry the payload.
+     *
+     * @return the text the symbol will decode to, e.g. an EAN-13 number with its check digit
+     * @throws IllegalArgumentException naming what the payload is missing
+     */
+    public String validate(String text) {
+        if (text == null || text.isEmpty()) {
+            throw new IllegalArgumentException("The barcode content is empty");
+        }
+        switch (this) {
+            case CODE_128:
+                if (text.length() > CODE_128_MAX_LENGTH) {
+                    throw new IllegalArgumentException("CODE_128 holds at most " + CODE_128_MAX_LENGTH + " characters");
+                }
+                if (!StandardCharsets.US_ASCII.newEncoder().canEncode(text)) {
+                    throw new IllegalArgumentException("CODE_128 holds ASCII characters only");
+                }
+                return text;
+            case EAN_13:
+                return ean13(text);
+            case DATA_MATRIX:
+            case PDF_417:
+            case AZTEC:
+                // Their writers encode ISO-8859-1 unless an ECI is requested, which not every scanner honors
+                if (!StandardCharsets.ISO_8859_1.newEncoder().canEncode(text)) {
+                    throw new IllegalArgumentException(name() + " holds ISO-8859-1 characters only");
+                }
+                return text;
+            default:
+                return text;
+        }
+    }
+
+    /**
+     * Encode a validated payload into a matrix of one cell per module, without a quiet zone.
+     *
+     * @throws IllegalArgumentException when the payload does not fit the largest symbol
+     */
+    public BitMatrix encode(String text, ErrorCorrectionLevel errorCorrection) {
+        try {
+            return writer.encode(text, format, 0, 0, hints(errorCorrection));
+        } catch (WriterException | IllegalArgumentException e) {
+            throw new IllegalArgumentException("The content can't be encoded as " + name() + ": " + e.getMessage(), e);
+        }
+    }
+
+    // Format specific hints; the QR levels L, M, Q and H map to the nearest setting of formats with their own scale
+    private Map<EncodeHintType, Object> hints(ErrorCorrectionLevel errorCorrection) {
+        Map<EncodeHintType, Object> hints = new EnumMap<>(EncodeHintType.class);
+        hints.put(EncodeHintType.MARGIN, 0);
+        switch (this) {
+            case QR_CODE:
+                hints.put(EncodeHintType.ERROR_CORRECTION, errorCorrection);
+                break;
+            case CODE_128:
+                // Switch code sets for the shortest symbol, e.g. set C for runs of digits
+                hints.put(EncodeHintType.CODE128_COMPACT, Boolean.TRUE);
+                break;
+            case DATA_MATRIX:
+                // The raster is square, so is the symbol
+                hints.put(EncodeHintType.DATA_MATRIX_SHAPE, SymbolShapeHint.FORCE_SQUARE);
+                break;
+            case PDF_417:
+                // Security levels 1 to 4 of 0 to 8
+                hints.put(EncodeHintType.ERROR_CORRECTION, switch (errorCorrection) {
+                    case L -> 1;
+                    case M -> 2;
+                    case Q -> 3;
+                    case H -> 4;
+                });
+                break;
+            case AZTEC:
+                // Percent of the symbol given to error correction, 23% being the format's recommended minimum
+                hints.put(EncodeHintType.ERROR_CORRECTION, switch (errorCorrection) {
+                    case L -> 23;
+                    case M -> 33;
+                    case Q -> 50;
+                    case H -> 66;
+                });
+                break;
+            default:
+                break;
+        }
+        return hints;
+    }
+
+    // 12 digits get their check digit appended; 13 digits must carry a valid one
+    private static String ean13(String text) {
+        if (!text.chars().allMatch(c -> c >= '0' && c <= '9') || (text.length() != 12 && text.length() != 13)) {
+            throw new IllegalArgumentException("EAN_13 holds 12 digits, or 13 with the check digit");
+        }
+        int sum = 0;
+        for (int i = 0; i < 12; i++) {
+            sum += (text.charAt(i) - '0') * (i % 2 == 0 ? 1 : 3);
+        }
+        char checkDigit = (char) ('0' + (10 - sum % 10) % 10);
+        if (text.length() == 13 && text.charAt(12) != checkDigit) {
+            throw new IllegalArgumentException("The EAN_13 check digit should be " + checkDigit);
+        }
+        return text.substring(0, 12) + checkDigit;
+    }
+}
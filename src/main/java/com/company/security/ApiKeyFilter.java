@@ -6,15 +6,34 @@ import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.log4j.Log4j2;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
-import java.util.Arrays;
-import java.util.List;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Properties;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Authenticates requests by their {@code x-api-key} header against an {@link ApiKeyIndex} and, when
+ * {@code API_RATE_LIMIT_PER_SECOND} is set, rate limits each client key with a {@link TokenBucketLimiter}.
+ * Admin keys are not limited.
+ * <p>
+ * When {@code API_KEYS_FILE} names a properties file, its {@code API_KEYS} and {@code API_KEYS_ADMIN}
+ * entries replace the configured ones and the file is read again whenever its modification time
+ * changes, checked every {@code API_KEYS_RELOAD_MS}. A new index is swapped in whole, so requests
+ * never see a half-loaded key set; a file that fails to load leaves the current keys in place.
+ */
+@Log4j2
 @Component
 public class ApiKeyFilter extends OncePerRequestFilter {
 
@@ -24,14 +43,61 @@ public class ApiKeyFilter extends OncePerRequestFilter {
     @Value("${API_KEYS_ADMIN}")
     private String adminApiKeys; // Comma-separated admin API keys
 
-    private List<String> validApiKeys;
-    private List<String> validAdminApiKeys;
+    // Optional properties file with API_KEYS and API_KEYS_ADMIN, reloaded when it changes
+    @Value("${API_KEYS_FILE:}")
+    private String apiKeysFile;
+
+    @Value("${API_KEYS_RELOAD_MS:10000}")
+    private long reloadMillis;
+
+    // Sustained requests per second allowed to each client key; 0 disables rate limiting
+    @Value("${API_RATE_LIMIT_PER_SECOND:0}")
+    private double rateLimitPerSecond;
+
+    @Value("${API_RATE_LIMIT_BURST:100}")
+    private int rateLimitBurst;
+
+    private volatile ApiKeyIndex keyIndex;
+    private TokenBucketLimiter rateLimiter;
+    private ScheduledExecutorService reloadScheduler;
+    private FileTime loadedModifiedTime;
+
+    // The rejections never change, so they are serialized once
+    private byte[] adminRequiredBody;
+    private byte[] invalidKeyBody;
+    private byte[] rateLimitedBody;
 
     @Override
     protected void initFilterBean() throws ServletException {
-        // Split the keys into a list once at initialization
-        validApiKeys = Arrays.asList(apiKeys.split(","));
-        validAdminApiKeys = Arrays.asList(adminApiKeys.split(","));
+        ObjectMapper objectMapper = new ObjectMapper();
+        try {
+            adminRequiredBody = objectMapper.writeValueAsBytes(rejection("401", "Unauthorized: Admin API Key required"));
+            invalidKeyBody = objectMapper.writeValueAsBytes(rejection("401", "Unauthorized: Invalid API Key"));
+            rateLimitedBody = objectMapper.writeValueAsBytes(rejection("429", "Too Many Requests: rate limit exceeded"));
+        } catch (IOException e) {
+            throw new ServletException(e);
+        }
+
+        keyIndex = ApiKeyIndex.of(apiKeys, adminApiKeys);
+        if (rateLimitPerSecond > 0) {
+            rateLimiter = new TokenBucketLimiter(rateLimitPerSecond, rateLimitBurst);
+        }
+        if (!apiKeysFile.isBlank()) {
+            reloadKeys();
+            reloadScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "api-key-reload");
+                thread.setDaemon(true);
+                return thread;
+            });
+            reloadScheduler.scheduleWithFixedDelay(this::reloadKeys, reloadMillis, reloadMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Override
+    public void destroy() {
+        if (reloadScheduler != null) {
+            reloadScheduler.shutdown();
+        }
     }
 
     @Override
@@ -39,50 +105,93 @@ public class ApiKeyFilter extends OncePerRequestFilter {
             throws ServletException, IOException {
 
         String requestApiKey = request.getHeader("x-api-key");
-        String path = request.getRequestURI();
+        ApiKeyIndex.Role role = keyIndex.lookup(requestApiKey);
 
         // Allow admin API keys for ALL endpoints
-        if (validAdminApiKeys.contains(requestApiKey)) {
+        if (role == ApiKeyIndex.Role.ADMIN) {
             filterChain.doFilter(request, response);
             return;
         }
 
         // Restrict certain paths to admin keys only
-        if (isAdminOnlyEndpoint(path)) {
-            ServiceResult serviceResult = ServiceResult.builder()
-                    .returnCode("401")
-                    .returnMessage("Unauthorized: Admin API Key required")
-                    .build();
-            response.setContentType("application/json");
-            response.setStatus(HttpStatus.UNAUTHORIZED.value());
-            response.getWriter().write(new ObjectMapper().writeValueAsString(serviceResult));
+        if (isAdminOnlyEndpoint(request.getRequestURI())) {
+            reject(response, HttpStatus.UNAUTHORIZED, adminRequiredBody);
             return;
         }
 
-        // Allow regular API keys for all other endpoints
-        if (validApiKeys.contains(requestApiKey)) {
-            filterChain.doFilter(request, response);
+        // If no valid key is provided, deny access
+        if (role == null) {
+            reject(response, HttpStatus.UNAUTHORIZED, invalidKeyBody);
             return;
         }
 
-        // If no valid key is provided, deny access
-        ServiceResult serviceResult = ServiceResult.builder()
-                .returnCode("401")
-                .returnMessage("Unauthorized: Invalid API Key")
+        if (rateLimiter != null) {
+            long waitNanos = rateLimiter.tryAcquire(requestApiKey);
+            if (waitNanos > 0) {
+                // Whole seconds, rounded up
+                response.setHeader(HttpHeaders.RETRY_AFTER, Long.toString(TimeUnit.NANOSECONDS.toSeconds(waitNanos + 999_999_999L)));
+                reject(response, HttpStatus.TOO_MANY_REQUESTS, rateLimitedBody);
+                return;
+            }
+        }
+
+        // Allow regular API keys for all other endpoints
+        filterChain.doFilter(request, response);
+    }
+
+    /**
+     * Load the keys file again when it changed since the last load.
+     */
+    void reloadKeys() {
+        try {
+            Path path = Path.of(apiKeysFile);
+            FileTime modifiedTime = Files.getLastModifiedTime(path);
+            if (modifiedTime.equals(loadedModifiedTime)) {
+                return;
+            }
+            Properties keys = new Properties();
+            try (Reader reader = Files.newBufferedReader(path)) {
+                keys.load(reader);
+            }
+            ApiKeyIndex loaded = ApiKeyIndex.of(keys.getProperty("API_KEYS", apiKeys), keys.getProperty("API_KEYS_ADMIN", adminApiKeys));
+            keyIndex = loaded;
+            loadedModifiedTime = modifiedTime;
+            if (rateLimiter != null) {
+                rateLimiter.retainAll(loaded);
+            }
+            log.info("Loaded {} API keys from {}", loaded.size(), apiKeysFile);
+        } catch (IOException | RuntimeException e) {
+            // Keep the scheduled reload running
+            log.error("Loading API keys from {} failed, keeping the current keys", apiKeysFile, e);
+        }
+    }
+
+    private static ServiceResult rejection(String returnCode, String returnMessage) {
+        return ServiceResult.builder()
+                .returnCode(returnCode)
+                .returnMessage(returnMessage)
                 .build();
+    }
+
+    private static void reject(HttpServletResponse response, HttpStatus status, byte[] body) throws IOException {
         response.setContentType("application/json");
-        response.setStatus(HttpStatus.UNAUTHORIZED.value());
-        response.getWriter().write(new ObjectMapper().writeValueAsString(serviceResult));
+        response.setStatus(status.value());
+        response.setContentLength(body.length);
+        response.getOutputStream().write(body);
     }
 
     private boolean isAdminOnlyEndpoint(String path) {
-        return path.equals("/api/firebase/getAllData");
+        return path.equals("/api/firebase/getAllData") || path.equals("/api/firebase/migrateImages")
+                || path.equals("/api/barcodes/imageCacheStats") || path.equals("/api/firebase/clientCacheStats")
+                || path.equals("/api/barcodes/decodeStats") || path.equals("/api/barcodes/scanStats")
+                || path.startsWith("/actuator/");
     }
 
     @Override
     protected boolean shouldNotFilter(HttpServletRequest request) {
-        // Exclude Swagger endpoints from API key filtering
+        // Exclude Swagger endpoints and the health probe from API key filtering
         String path = request.getRequestURI();
-        return path.startsWith("/swagger-ui") || path.startsWith("/v3/api-docs") || path.startsWith("/webjars");
+        return path.startsWith("/swagger-ui") || path.startsWith("/v3/api-docs") || path.startsWith("/webjars")
+                || path.equals("/actuator/health");
     }
 }
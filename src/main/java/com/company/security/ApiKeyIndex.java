@@ -0,0 +1,125 @@
+package com.company.security;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable index of the accepted API keys, holding only their SHA-256 digests. A lookup hashes the
+ * presented key once, finds the candidates sharing the digest's first 8 bytes in a hash map and
+ * compares the full digests with {@link MessageDigest#isEqual}, so the cost doesn't grow with the
+ * number of keys and the comparison doesn't leak how much of a digest matched.
+ * <p>
+ * Keys are configured as comma-separated lists; an entry {@code sha256:<hex>} is a digest, so the
+ * key itself need not appear in the configuration.
+ */
+public final class ApiKeyIndex {
+
+    public enum Role {
+        CLIENT,
+        ADMIN
+    }
+
+    private static final String DIGEST_PREFIX = "sha256:";
+    private static final int DIGEST_LENGTH = 32;
+
+    private final Map<Long, Entry[]> entries;
+    private final int size;
+
+    private ApiKeyIndex(Map<Long, Entry[]> entries, int size) {
+        this.entries = entries;
+        this.size = size;
+    }
+
+    /**
+     * @param clientKeys comma-separated client keys or digests, may be null
+     * @param adminKeys  comma-separated admin keys or digests, may be null; admin wins over client
+     * @throws IllegalArgumentException for a malformed digest entry
+     */
+    public static ApiKeyIndex of(String clientKeys, String adminKeys) {
+        Map<ByteBuffer, Role> roles = new HashMap<>();
+        addAll(roles, clientKeys, Role.CLIENT);
+        addAll(roles, adminKeys, Role.ADMIN);
+
+        Map<Long, List<Entry>> buckets = new HashMap<>();
+        roles.forEach((digest, role) -> buckets.computeIfAbsent(digest.getLong(0), prefix -> new ArrayList<>())
+                .add(new Entry(digest.array(), role)));
+        Map<Long, Entry[]> entries = new HashMap<>(buckets.size() * 2);
+        buckets.forEach((prefix, bucket) -> entries.put(prefix, bucket.toArray(new Entry[0])));
+        return new ApiKeyIndex(entries, roles.size());
+    }
+
+    /**
+     * @return the role of the key, or null when it is not accepted
+     */
+    public Role lookup(String key) {
+        if (key == null || key.isEmpty()) {
+            return null;
+        }
+        byte[] digest = sha256(key);
+        Entry[] candidates = entries.get(ByteBuffer.wrap(digest).getLong(0));
+        if (candidates == null) {
+            return null;
+        }
+        for (Entry candidate : candidates) {
+            if (MessageDigest.isEqual(candidate.digest, digest)) {
+                return candidate.role;
+            }
+        }
+        return null;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public static String digestOf(String key) {
+        return DIGEST_PREFIX + HexFormat.of().formatHex(sha256(key));
+    }
+
+    private static void addAll(Map<ByteBuffer, Role> roles, String keys, Role role) {
+        if (keys == null) {
+            return;
+        }
+        for (String entry : keys.split(",")) {
+            String key = entry.trim();
+            if (key.isEmpty()) {
+                continue;
+            }
+            byte[] digest;
+            if (key.startsWith(DIGEST_PREFIX)) {
+                digest = HexFormat.of().parseHex(key.substring(DIGEST_PREFIX.length()));
+                if (digest.length != DIGEST_LENGTH) {
+                    throw new IllegalArgumentException("Not a SHA-256 digest: " + key);
+                }
+            } else {
+                digest = sha256(key);
+            }
+            roles.merge(ByteBuffer.wrap(digest), role, (existing, added) -> existing == Role.ADMIN ? existing : added);
+        }
+    }
+
+    private static byte[] sha256(String key) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(key.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private static final class Entry {
+        private final byte[] digest;
+        private final Role role;
+
+        private Entry(byte[] digest, Role role) {
+            this.digest = digest;
+            this.role = role;
+        }
+    }
+}
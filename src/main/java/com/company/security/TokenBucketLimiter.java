@@ -0,0 +1,60 @@
+package com.company.security;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per-key token buckets refilled at {@code permitsPerSecond} and holding up to {@code burst} tokens.
+ * Each bucket is a single {@link AtomicLong} with the time at which it will be full again (the GCRA
+ * form of a token bucket), so taking a token is one compare-and-set and no lock is held.
+ */
+public final class TokenBucketLimiter {
+
+    private final long nanosPerToken;
+    private final long burstNanos;
+    private final Map<String, AtomicLong> buckets = new ConcurrentHashMap<>();
+
+    public TokenBucketLimiter(double permitsPerSecond, int burst) {
+        if (permitsPerSecond <= 0 || burst < 1) {
+            throw new IllegalArgumentException("The rate and the burst must be positive");
+        }
+        this.nanosPerToken = Math.max(1L, (long) (1_000_000_000L / permitsPerSecond));
+        this.burstNanos = nanosPerToken * burst;
+    }
+
+    /**
+     * Take a token of the key's bucket.
+     *
+     * @return 0 when a token was taken, otherwise the nanoseconds until the next one is available
+     */
+    public long tryAcquire(String key) {
+        return tryAcquire(key, System.nanoTime());
+    }
+
+    long tryAcquire(String key, long now) {
+        AtomicLong fullAt = buckets.get(key);
+        if (fullAt == null) {
+            fullAt = buckets.computeIfAbsent(key, k -> new AtomicLong(now));
+        }
+        while (true) {
+            long current = fullAt.get();
+            // A bucket that has been full since some time in the past is just full
+            long next = Math.max(current, now) + nanosPerToken;
+            long wait = next - now - burstNanos;
+            if (wait > 0) {
+                return wait;
+            }
+            if (fullAt.compareAndSet(current, next)) {
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * Drop the buckets of keys that are no longer accepted.
+     */
+    public void retainAll(ApiKeyIndex index) {
+        buckets.keySet().removeIf(key -> index.lookup(key) == null);
+    }
+}
@@ -0,0 +1,363 @@
+package com.company.service;
+
+import com.company.constants.Constants;
+import com.company.interfaces.QrRepository;
+import com.company.metrics.PipelineMetrics;
+import com.company.model.ClientCacheStats;
+import com.google.firebase.database.*;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-memory mirror of the {@code QR/<apiKey>} metadata of recently read clients, kept in sync by a
+ * ChildEventListener per client. The first read of a client attaches the listener and waits for the
+ * initial snapshot; later list reads and existence checks are answered locally. Clients are evicted
+ * least recently used first once the estimated size exceeds {@code QR_CLIENT_CACHE_MAX_BYTES}
+ * (0 disables the mirror). Images are not mirrored.
+ * <p>
+ * While the listeners are disconnected from Firebase, reads are still served and counted as stale.
+ */
+@Log4j2
+@Service
+@ConditionalOnProperty(name = "QR_STORE", havingValue = "firebase", matchIfMissing = true)
+public class ClientMirrorService {
+
+    // Rough per-entry overhead of the maps and strings holding a record
+    private static final int RECORD_OVERHEAD = 96;
+    private static final int FIELD_OVERHEAD = 64;
+
+    @Value("${QR_CLIENT_CACHE_MAX_BYTES:0}")
+    private long maxBytes;
+
+    @Autowired
+    private PipelineMetrics metrics;
+
+    private final DatabaseReference databaseReference;
+
+    // Access-ordered, so iteration starts at the least recently used client
+    private final LinkedHashMap<String, ClientMirror> mirrors = new LinkedHashMap<>(16, 0.75f, true);
+    private final AtomicLong totalBytes = new AtomicLong();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong staleHits = new AtomicLong();
+    private final AtomicLong events = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private volatile boolean connected = true;
+    private volatile long disconnectedSince;
+    private ValueEventListener connectionListener;
+
+    public ClientMirrorService() {
+        this.databaseReference = FirebaseDatabase.getInstance().getReference();
+    }
+
+    @PostConstruct
+    public void watchConnection() {
+        if (!isEnabled()) {
+            return;
+        }
+        connectionListener = new ValueEventListener() {
+            @Override
+            public void onDataChange(DataSnapshot dataSnapshot) {
+                boolean nowConnected = Boolean.TRUE.equals(dataSnapshot.getValue(Boolean.class));
+                if (connected && !nowConnected) {
+                    disconnectedSince = System.currentTimeMillis();
+                }
+                connected = nowConnected;
+            }
+
+            @Override
+            public void onCancelled(DatabaseError databaseError) {
+                metrics.cancelled(PipelineMetrics.Listener.CONNECTION);
+                log.warn("Connection state listener cancelled: {}", databaseError.getMessage());
+            }
+        };
+        FirebaseDatabase.getInstance().getReference(".info/connected").addValueEventListener(connectionListener);
+    }
+
+    @PreDestroy
+    public synchronized void detachAll() {
+        mirrors.values().forEach(ClientMirror::detach);
+        mirrors.clear();
+        if (connectionListener != null) {
+            FirebaseDatabase.getInstance().getReference(".info/connected").removeEventListener(connectionListener);
+        }
+    }
+
+    public boolean isEnabled() {
+        return maxBytes > 0;
+    }
+
+    /**
+     * The mirror of a client, attaching it on first use.
+     *
+     * @return A CompletableFuture that completes once the mirror holds the client's records, or null
+     * when the mirror is disabled.
+     */
+    public CompletableFuture<ClientMirror> mirror(String apiKey) {
+        if (!isEnabled()) {
+            return null;
+        }
+        ClientMirror mirror;
+        synchronized (this) {
+            mirror = mirrors.get(apiKey);
+            if (mirror == null) {
+                mirror = new ClientMirror(apiKey);
+                mirrors.put(apiKey, mirror);
+                misses.incrementAndGet();
+                mirror.attach();
+                return mirror.ready;
+            }
+        }
+        if (!mirror.ready.isDone()) {
+            // Still loading for another request
+            misses.incrementAndGet();
+        } else {
+            hits.incrementAndGet();
+            if (!connected) {
+                staleHits.incrementAndGet();
+            }
+        }
+        return mirror.ready;
+    }
+
+    public ClientCacheStats getStats() {
+        if (!isEnabled()) {
+            return ClientCacheStats.builder().enabled(false).build();
+        }
+        long records;
+        int clients;
+        synchronized (this) {
+            clients = mirrors.size();
+            records = mirrors.values().stream().mapToLong(mirror -> mirror.records.size()).sum();
+        }
+        long hitCount = hits.get();
+        long missCount = misses.get();
+        return ClientCacheStats.builder()
+                .enabled(true)
+                .connected(connected)
+                .clients(clients)
+                .records(records)
+                .sizeBytes(totalBytes.get())
+                .maxBytes(maxBytes)
+                .hitCount(hitCount)
+                .missCount(missCount)
+                .hitRate(hitCount + missCount == 0 ? 0 : (double) hitCount / (hitCount + missCount))
+                .staleHitCount(staleHits.get())
+                .disconnectedMillis(connected ? 0 : System.currentTimeMillis() - disconnectedSince)
+                .eventCount(events.get())
+                .evictionCount(evictions.get())
+                .build();
+    }
+
+    // Evict least recently used clients until the mirror fits its budget, never the one just loaded
+    private synchronized void enforceBudget(ClientMirror keep) {
+        Iterator<ClientMirror> iterator = mirrors.values().iterator();
+        while (totalBytes.get() > maxBytes && iterator.hasNext()) {
+            ClientMirror mirror = iterator.next();
+            if (mirror != keep) {
+                iterator.remove();
+                mirror.detach();
+                evictions.incrementAndGet();
+            }
+        }
+        if (totalBytes.get() > maxBytes && mirrors.get(keep.apiKey) == keep) {
+            // A single client larger than the budget is not mirrored
+            mirrors.remove(keep.apiKey);
+            keep.detach();
+            evictions.incrementAndGet();
+        }
+    }
+
+    private synchronized void remove(ClientMirror mirror) {
+        if (mirrors.get(mirror.apiKey) == mirror) {
+            mirrors.remove(mirror.apiKey);
+        }
+        mirror.detach();
+    }
+
+    private static long estimateSize(Map<String, Object> record) {
+        long size = RECORD_OVERHEAD;
+        for (Map.Entry<String, Object> field : record.entrySet()) {
+            size += FIELD_OVERHEAD + 2L * field.getKey().length();
+            if (field.getValue() instanceof String value) {
+                size += 2L * value.length();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * The metadata records of one client in id order.
+     */
+    public class ClientMirror {
+        private final String apiKey;
+        private final NavigableMap<Integer, Map<String, Object>> records = new ConcurrentSkipListMap<>();
+        private final CompletableFuture<ClientMirror> ready = new CompletableFuture<>();
+        private final Query query;
+        private final AtomicLong bytes = new AtomicLong();
+        private ChildEventListener listener;
+        private volatile boolean detached;
+
+        private ClientMirror(String apiKey) {
+            this.apiKey = apiKey;
+            this.query = databaseReference.child(Constants.DBKeys.QRS).child(apiKey);
+        }
+
+        public boolean isEmpty() {
+            return records.isEmpty();
+        }
+
+        public boolean contains(Integer id) {
+            return records.containsKey(id);
+        }
+
+        /**
+         * The record with this id, unmodifiable, or null.
+         */
+        public Map<String, Object> get(Integer id) {
+            return records.get(id);
+        }
+
+        /**
+         * Copies of the records from {@code fromId} on, at most {@code limit} of them.
+         */
+        public Map<String, Object> records(Set<String> fields, Integer fromId, int limit) {
+            NavigableMap<Integer, Map<String, Object>> range = fromId != null ? records.tailMap(fromId, true) : records;
+            Map<String, Object> copy = new LinkedHashMap<>();
+            for (Map.Entry<Integer, Map<String, Object>> record : range.entrySet()) {
+                if (copy.size() == limit) {
+                    break;
+                }
+                copy.put(String.valueOf(record.getKey()), project(record.getValue(), fields));
+            }
+            return copy;
+        }
+
+        /**
+         * The first id after the {@code limit} records starting at {@code fromId}, or null.
+         */
+        public String nextCursor(Integer fromId, int limit) {
+            NavigableMap<Integer, Map<String, Object>> range = fromId != null ? records.tailMap(fromId, true) : records;
+            Iterator<Integer> ids = range.keySet().iterator();
+            for (int i = 0; i < limit && ids.hasNext(); i++) {
+                ids.next();
+            }
+            return ids.hasNext() ? String.valueOf(ids.next()) : null;
+        }
+
+        private void attach() {
+            listener = new ChildEventListener() {
+                @Override
+                public void onChildAdded(DataSnapshot snapshot, String previousChildName) {
+                    put(snapshot);
+                }
+
+                @Override
+                public void onChildChanged(DataSnapshot snapshot, String previousChildName) {
+                    put(snapshot);
+                }
+
+                @Override
+                public void onChildRemoved(DataSnapshot snapshot) {
+                    if (detached) {
+                        return;
+                    }
+                    events.incrementAndGet();
+                    Map<String, Object> removed = records.remove(Integer.valueOf(snapshot.getKey()));
+                    if (removed != null) {
+                        resize(-estimateSize(removed));
+                    }
+                }
+
+                @Override
+                public void onChildMoved(DataSnapshot snapshot, String previousChildName) {
+                }
+
+                @Override
+                public void onCancelled(DatabaseError databaseError) {
+                    metrics.cancelled(PipelineMetrics.Listener.MIRROR);
+                    log.warn("Mirror of client {} cancelled: {}", apiKey, databaseError.getMessage());
+                    ready.completeExceptionally(databaseError.toException());
+                    remove(ClientMirror.this);
+                }
+            };
+            query.addChildEventListener(listener);
+            // Value events fire after the child events of the same data, so this marks the initial load
+            query.addListenerForSingleValueEvent(new ValueEventListener() {
+                @Override
+                public void onDataChange(DataSnapshot dataSnapshot) {
+                    ready.complete(ClientMirror.this);
+                    enforceBudget(ClientMirror.this);
+                }
+
+                @Override
+                public void onCancelled(DatabaseError databaseError) {
+                    ready.completeExceptionally(databaseError.toException());
+                    remove(ClientMirror.this);
+                }
+            });
+        }
+
+        private void detach() {
+            detached = true;
+            if (listener != null) {
+                query.removeEventListener(listener);
+                listener = null;
+            }
+            totalBytes.addAndGet(-bytes.getAndSet(0));
+        }
+
+        private void put(DataSnapshot snapshot) {
+            if (detached) {
+                return;
+            }
+            events.incrementAndGet();
+            Map<String, Object> record = new HashMap<>();
+            for (DataSnapshot field : snapshot.getChildren()) {
+                // Inline images of not yet migrated records are left out
+                if (!QrRepository.IMAGE_FIELD.equals(field.getKey())) {
+                    record.put(field.getKey(), field.getValue());
+                }
+            }
+            Map<String, Object> previous = records.put(Integer.valueOf(snapshot.getKey()), Collections.unmodifiableMap(record));
+            resize(estimateSize(record) - (previous != null ? estimateSize(previous) : 0));
+        }
+
+        private void resize(long delta) {
+            bytes.addAndGet(delta);
+            totalBytes.addAndGet(delta);
+            if (delta > 0 && ready.isDone() && totalBytes.get() > maxBytes) {
+                enforceBudget(this);
+            }
+        }
+
+        private Map<String, Object> project(Map<String, Object> record, Set<String> fields) {
+            if (fields == null) {
+                return new HashMap<>(record);
+            }
+            Map<String, Object> projected = new HashMap<>();
+            record.forEach((field, value) -> {
+                if (fields.contains(field)) {
+                    projected.put(field, value);
+                }
+            });
+            return projected;
+        }
+    }
+}
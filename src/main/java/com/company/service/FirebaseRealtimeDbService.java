@@ -1,46 +1,122 @@
 package com.company.service;
 
 import com.company.constants.Constants;
-import com.company.interfaces.DatabaseCallback;
+import com.company.interfaces.QrRepository;
+import com.company.metrics.PipelineMetrics;
+import com.company.metrics.PipelineMetrics.DbOperation;
 import com.company.model.QrData;
+import com.company.model.QrPage;
+import com.company.model.ScanTally;
+import com.google.api.core.ApiFuture;
+import com.google.api.core.ApiFutureCallback;
+import com.google.api.core.ApiFutures;
+import com.google.common.util.concurrent.MoreExecutors;
 import com.google.firebase.database.*;
+import com.google.firebase.database.utilities.encoding.CustomClassMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Service;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 @Log4j2
 @Service
-public class FirebaseRealtimeDbService {
+@ConditionalOnProperty(name = "QR_STORE", havingValue = "firebase", matchIfMissing = true)
+public class FirebaseRealtimeDbService implements QrRepository {
+
+    // Deadline for update and delete round-trips
+    @Value("${QR_DB_TIMEOUT_MS:10000}")
+    private long timeoutMillis;
+
+    // Write-behind window: writes of a client within it are sent as one multi-path update
+    @Value("${QR_WRITE_FLUSH_MS:10}")
+    private long writeFlushMillis;
+
+    @Value("${QR_WRITE_BATCH_SIZE:500}")
+    private int writeBatchSize;
+
+    // Writes queued or in flight before new ones are rejected with 503
+    @Value("${QR_WRITE_QUEUE_CAPACITY:10000}")
+    private int writeQueueCapacity;
+
+    @Value("${QR_WRITE_MAX_RETRIES:3}")
+    private int writeMaxRetries;
+
+    @Value("${QR_WRITE_RETRY_BASE_MS:100}")
+    private long writeRetryBaseMillis;
+
+    @Autowired
+    private ClientMirrorService clientMirrorService;
+
+    @Autowired
+    private PipelineMetrics metrics;
 
     private final DatabaseReference databaseReference;
+    private ScheduledExecutorService writeScheduler;
+    private WriteBehindQueue writeQueue;
 
     public FirebaseRealtimeDbService() {
         this.databaseReference = FirebaseDatabase.getInstance().getReference();
     }
 
+    @PostConstruct
+    public void initWriteQueue() {
+        writeScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "qr-write-behind");
+            thread.setDaemon(true);
+            return thread;
+        });
+        writeQueue = new WriteBehindQueue(updates -> toCompletableFuture(databaseReference.updateChildrenAsync(updates)),
+                writeScheduler, writeQueueCapacity, writeBatchSize, writeFlushMillis, writeMaxRetries,
+                writeRetryBaseMillis);
+    }
+
+    // Send what is still queued; scheduled retries still run after shutdown, later failures are final
+    @PreDestroy
+    public void flushWrites() {
+        writeQueue.flush();
+        writeScheduler.shutdown();
+    }
+
     /**
      * Retrieve and process all data from the Firebase Realtime Database.
      *
      * @return A CompletableFuture containing a Map with the relevant data.
      */
+    @Override
     public CompletableFuture<Map<String, Object>> getAllData() {
+        return metrics.time(DbOperation.GET_ALL_DATA, this::readAllData);
+    }
+
+    private CompletableFuture<Map<String, Object>> readAllData() {
         CompletableFuture<Map<String, Object>> future = new CompletableFuture<>();
 
         databaseReference.addListenerForSingleValueEvent(new ValueEventListener() {
             @Override
             public void onDataChange(DataSnapshot dataSnapshot) {
-                log.info("inside the database reference");
                 Map<String, Object> data = (Map<String, Object>) dataSnapshot.getValue();
                 future.complete(data != null ? data : new HashMap<>());
             }
 
             @Override
             public void onCancelled(DatabaseError databaseError) {
+                metrics.cancelled(PipelineMetrics.Listener.READ);
                 future.completeExceptionally(new RuntimeException("Error fetching data: " + databaseError.getMessage()));
             }
         });
@@ -48,27 +124,50 @@ public class FirebaseRealtimeDbService {
         return future;
     }
 
-    public CompletableFuture<Map<String, Object>> getDataByClient(String apiKey) {
+    /**
+     * Retrieve the QR records of one client keyed by id.
+     *
+     * @param fields the record fields to return, or null for every metadata field. Images live in
+     *               their own node and are only fetched when {@code base64Image} is requested; other
+     *               reads are served by the client mirror when it is enabled.
+     */
+    @Override
+    public CompletableFuture<Map<String, Object>> getDataByClient(String apiKey, Set<String> fields) {
+        return metrics.time(DbOperation.GET_DATA_BY_CLIENT, () -> {
+            if (wantsImages(fields)) {
+                return readDataByClient(apiKey, fields);
+            }
+            return fromMirror(apiKey, mirror -> mirror.isEmpty()
+                            ? CompletableFuture.failedFuture(new NoSuchElementException("No data found for API Key: " + apiKey))
+                            : CompletableFuture.completedFuture(mirror.records(fields, null, Integer.MAX_VALUE)),
+                    () -> readDataByClient(apiKey, fields));
+        });
+    }
+
+    private CompletableFuture<Map<String, Object>> readDataByClient(String apiKey, Set<String> fields) {
         CompletableFuture<Map<String, Object>> future = new CompletableFuture<>();
 
         databaseReference.child(Constants.DBKeys.QRS).child(apiKey).addListenerForSingleValueEvent(new ValueEventListener() {
             @Override
             public void onDataChange(DataSnapshot dataSnapshot) {
-                log.info("inside the database reference");
                 if (dataSnapshot.getValue() == null) {
-                    future.completeExceptionally(new Exception("No data found for API Key: " + apiKey));
+                    future.completeExceptionally(new NoSuchElementException("No data found for API Key: " + apiKey));
                     return;
                 }
-                List<Object> listData = (List<Object>) dataSnapshot.getValue();
                 Map<String, Object> mapData = new HashMap<>();
-                for (int i = 0; i < listData.size(); i++) {
-                    mapData.put(String.valueOf(i), listData.get(i));
+                for (DataSnapshot record : dataSnapshot.getChildren()) {
+                    mapData.put(record.getKey(), project(record, fields));
+                }
+                if (wantsImages(fields)) {
+                    mergeImages(databaseReference.child(Constants.DBKeys.IMAGES).child(apiKey), mapData, future);
+                } else {
+                    future.complete(mapData);
                 }
-                future.complete(mapData);
             }
 
             @Override
             public void onCancelled(DatabaseError databaseError) {
+                metrics.cancelled(PipelineMetrics.Listener.READ);
                 future.completeExceptionally(new RuntimeException("Error fetching data: " + databaseError.getMessage()));
             }
         });
@@ -77,101 +176,511 @@ public class FirebaseRealtimeDbService {
     }
 
     /**
-     * Write data to a specific node in Firebase Realtime Database.
+     * Retrieve one page of a client's QR records in id order, from the client mirror when enabled or with
+     * {@code orderByKey().startAt(cursor).limitToFirst(limit + 1)}; the extra record becomes the next cursor.
      *
-     * @param data the data to be written
+     * @param cursor the first id of the page, as returned in {@link QrPage#getNextCursor()}, or null to start
+     * @param limit  the page size, capped at {@value #MAX_PAGE_SIZE}
      */
-    public void InsertData(String apiKey, QrData data) {
-        databaseReference.child(Constants.DBKeys.QRS).child(apiKey).addListenerForSingleValueEvent(new ValueEventListener() {
+    @Override
+    public CompletableFuture<QrPage> getDataByClientPage(String apiKey, Set<String> fields, String cursor, int limit) {
+        int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        Integer fromId;
+        try {
+            fromId = cursor != null ? Integer.valueOf(cursor) : null;
+        } catch (NumberFormatException e) {
+            fromId = null;
+        }
+        Integer from = fromId;
+        return metrics.time(DbOperation.GET_DATA_BY_CLIENT_PAGE, () -> {
+            CompletableFuture<QrPage> page = wantsImages(fields) || cursor != null && from == null
+                    ? readDataByClientPage(apiKey, fields, cursor, pageSize)
+                    : fromMirror(apiKey, mirror -> cursor == null && mirror.isEmpty()
+                                    ? CompletableFuture.failedFuture(new NoSuchElementException("No data found for API Key: " + apiKey))
+                                    : CompletableFuture.completedFuture(new QrPage(mirror.records(fields, from, pageSize), mirror.nextCursor(from, pageSize))),
+                            () -> readDataByClientPage(apiKey, fields, cursor, pageSize));
+            return page.orTimeout(timeoutMillis, TimeUnit.MILLISECONDS);
+        });
+    }
+
+    private CompletableFuture<QrPage> readDataByClientPage(String apiKey, Set<String> fields, String cursor, int pageSize) {
+        CompletableFuture<QrPage> future = new CompletableFuture<>();
+
+        Query query = databaseReference.child(Constants.DBKeys.QRS).child(apiKey).orderByKey();
+        if (cursor != null) {
+            query = query.startAt(cursor);
+        }
+        query.limitToFirst(pageSize + 1).addListenerForSingleValueEvent(new ValueEventListener() {
             @Override
             public void onDataChange(DataSnapshot dataSnapshot) {
-                ArrayList<Integer> counterList = (ArrayList<Integer>) dataSnapshot.getValue();
-                if (counterList == null) {
-                    counterList = new ArrayList<>();
+                if (cursor == null && dataSnapshot.getValue() == null) {
+                    future.completeExceptionally(new NoSuchElementException("No data found for API Key: " + apiKey));
+                    return;
+                }
+                Map<String, Object> records = new LinkedHashMap<>();
+                String nextCursor = null;
+                for (DataSnapshot record : dataSnapshot.getChildren()) {
+                    if (records.size() == pageSize) {
+                        nextCursor = record.getKey();
+                        break;
+                    }
+                    records.put(record.getKey(), project(record, fields));
+                }
+                QrPage page = new QrPage(records, nextCursor);
+                if (wantsImages(fields) && !records.isEmpty()) {
+                    // Fetch only the images of this page
+                    List<String> ids = new ArrayList<>(records.keySet());
+                    Query images = databaseReference.child(Constants.DBKeys.IMAGES).child(apiKey).orderByKey()
+                            .startAt(ids.get(0)).endAt(ids.get(ids.size() - 1));
+                    CompletableFuture<Map<String, Object>> merged = new CompletableFuture<>();
+                    mergeImages(images, records, merged);
+                    merged.whenComplete((ignored, e) -> {
+                        if (e != null) {
+                            future.completeExceptionally(e);
+                        } else {
+                            future.complete(page);
+                        }
+                    });
+                } else {
+                    future.complete(page);
                 }
-
-                Integer newKey = counterList.size();
-                databaseReference.child(Constants.DBKeys.QRS).child(apiKey).child(newKey.toString()).setValueAsync(data);
             }
 
             @Override
             public void onCancelled(DatabaseError databaseError) {
-                // Handle cancellation
+                metrics.cancelled(PipelineMetrics.Listener.READ);
+                future.completeExceptionally(new RuntimeException("Error fetching data: " + databaseError.getMessage()));
             }
         });
+
+        return future;
     }
 
-    public void updateData(String apiKey, Integer id, QrData qrData, DatabaseCallback callback) {
-        DatabaseReference qrDataRef = databaseReference.child(Constants.DBKeys.QRS).child(apiKey).child(String.valueOf(id));
-        qrDataRef.addListenerForSingleValueEvent(new ValueEventListener() {
+    // Answer from the client's mirror when it is enabled, falling back to a database read if it can't load
+    private <T> CompletableFuture<T> fromMirror(String apiKey, Function<ClientMirrorService.ClientMirror, CompletableFuture<T>> mirrored,
+                                                Supplier<CompletableFuture<T>> direct) {
+        CompletableFuture<ClientMirrorService.ClientMirror> mirror = clientMirrorService.mirror(apiKey);
+        if (mirror == null) {
+            return direct.get();
+        }
+        return mirror.handle((loaded, e) -> e == null ? mirrored.apply(loaded) : direct.get()).thenCompose(Function.identity());
+    }
+
+    private static boolean wantsImages(Set<String> fields) {
+        return fields != null && fields.contains(IMAGE_FIELD);
+    }
+
+    // Copy the requested fields of a record; inline images of not yet migrated records are dropped unless requested
+    private static Map<String, Object> project(DataSnapshot record, Set<String> fields) {
+        Map<String, Object> projected = new HashMap<>();
+        for (DataSnapshot field : record.getChildren()) {
+            boolean requested = fields == null ? !IMAGE_FIELD.equals(field.getKey()) : fields.contains(field.getKey());
+            if (requested) {
+                projected.put(field.getKey(), field.getValue());
+            }
+        }
+        return projected;
+    }
+
+    private void mergeImages(Query images, Map<String, Object> mapData, CompletableFuture<Map<String, Object>> future) {
+        images.addListenerForSingleValueEvent(new ValueEventListener() {
             @Override
             public void onDataChange(DataSnapshot dataSnapshot) {
-                if (dataSnapshot.exists()) {
-                    // Data exists; proceed with the update
-                    qrDataRef.setValueAsync(qrData);
-                    callback.onSuccess();
-                } else {
-                    // Data does not exist; handle the error
-                    callback.onFailure(new Exception("QR Data not found for id: " + id));
+                for (DataSnapshot image : dataSnapshot.getChildren()) {
+                    Object record = mapData.get(image.getKey());
+                    if (record instanceof Map) {
+                        ((Map<String, Object>) record).put(IMAGE_FIELD, image.getValue());
+                    }
                 }
+                future.complete(mapData);
             }
 
             @Override
             public void onCancelled(DatabaseError databaseError) {
-                // Handle cancellation
-                callback.onFailure(databaseError.toException());
+                metrics.cancelled(PipelineMetrics.Listener.READ);
+                future.completeExceptionally(new RuntimeException("Error fetching images: " + databaseError.getMessage()));
+            }
+        });
+    }
+
+    /**
+     * Read one record's metadata, from the client mirror when it is enabled.
+     */
+    @Override
+    public CompletableFuture<QrData> getRecord(String apiKey, Integer id) {
+        return metrics.time(DbOperation.GET_RECORD, () -> fromMirror(apiKey,
+                        mirror -> CompletableFuture.completedFuture(toQrData(id, mirror.get(id))), () -> readRecord(apiKey, id))
+                .orTimeout(timeoutMillis, TimeUnit.MILLISECONDS));
+    }
+
+    private CompletableFuture<QrData> readRecord(String apiKey, Integer id) {
+        CompletableFuture<QrData> future = new CompletableFuture<>();
+        databaseReference.child(Constants.DBKeys.QRS).child(apiKey).child(String.valueOf(id))
+                .addListenerForSingleValueEvent(new ValueEventListener() {
+                    @Override
+                    public void onDataChange(DataSnapshot dataSnapshot) {
+                        try {
+                            future.complete(toQrData(id, project(dataSnapshot, null)));
+                        } catch (RuntimeException e) {
+                            future.completeExceptionally(e);
+                        }
+                    }
+
+                    @Override
+                    public void onCancelled(DatabaseError databaseError) {
+                        metrics.cancelled(PipelineMetrics.Listener.READ);
+                        future.completeExceptionally(databaseError.toException());
+                    }
+                });
+        return future;
+    }
+
+    private static QrData toQrData(Integer id, Map<String, Object> record) {
+        if (record == null || record.isEmpty()) {
+            throw new NoSuchElementException("QR Data not found for id: " + id);
+        }
+        return CustomClassMapper.convertToCustomClass(record, QrData.class);
+    }
+
+    /**
+     * Write data to a specific node in Firebase Realtime Database through the write-behind queue.
+     *
+     * @param id   the id reserved for the record, see {@link #reserveIds(String, int)}
+     * @param data the data to be written
+     */
+    @Override
+    public CompletableFuture<Void> InsertData(String apiKey, Integer id, QrData data) {
+        return metrics.time(DbOperation.INSERT_DATA, () -> writeQueue.submit(apiKey, splitRecord(apiKey, id, data)));
+    }
+
+    // Metadata and image of one record as a multi-path update from the root
+    private static Map<String, Object> splitRecord(String apiKey, Integer id, QrData data) {
+        Map<String, Object> updates = new HashMap<>();
+        updates.put(recordPath(Constants.DBKeys.QRS, apiKey, id), data.toBuilder().base64Image(null).build());
+        updates.put(recordPath(Constants.DBKeys.IMAGES, apiKey, id), data.getBase64Image());
+        return updates;
+    }
+
+    private static String recordPath(String root, String apiKey, Integer id) {
+        return root + "/" + apiKey + "/" + id;
+    }
+
+    /**
+     * Replace an existing QR record, keeping its scan tallies.
+     *
+     * @return A CompletableFuture that completes once the write is acknowledged, or fails when the
+     * record does not exist or the database does not answer within the deadline.
+     */
+    @Override
+    public CompletableFuture<Void> updateData(String apiKey, Integer id, QrData qrData) {
+        return metrics.time(DbOperation.UPDATE_DATA,
+                () -> whenExists(apiKey, id, () -> writeQueue.submit(apiKey, patchRecord(apiKey, id, qrData))));
+    }
+
+    /**
+     * Send the changed fields as one multi-path update through the write-behind queue. Existence is
+     * not checked again: the caller has just read the record.
+     */
+    @Override
+    public CompletableFuture<Void> patchData(String apiKey, Integer id, Map<String, Object> changes) {
+        Map<String, Object> updates = new HashMap<>();
+        changes.forEach((field, value) -> updates.put(IMAGE_FIELD.equals(field)
+                ? recordPath(Constants.DBKeys.IMAGES, apiKey, id)
+                : recordPath(Constants.DBKeys.QRS, apiKey, id) + "/" + field, value));
+        return metrics.time(DbOperation.PATCH_DATA, () -> writeQueue.submit(apiKey, updates).orTimeout(timeoutMillis, TimeUnit.MILLISECONDS));
+    }
+
+    // Every metadata field as its own path, so the fields owned by scan ingestion are left alone
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> patchRecord(String apiKey, Integer id, QrData data) {
+        Map<String, Object> updates = new HashMap<>();
+        String path = recordPath(Constants.DBKeys.QRS, apiKey, id);
+        // Null fields are kept in the map and clear the stored value
+        Map<String, Object> fields = (Map<String, Object>) CustomClassMapper.convertToPlainJavaTypes(data);
+        fields.forEach((field, value) -> {
+            if (!IMAGE_FIELD.equals(field) && !SCAN_FIELDS.contains(field)) {
+                updates.put(path + "/" + field, value);
             }
         });
+        updates.put(recordPath(Constants.DBKeys.IMAGES, apiKey, id), data.getBase64Image());
+        return updates;
+    }
+
+    /**
+     * Merge the tallies with one transaction per record. Transactions bypass the write-behind queue,
+     * whose path merging would replace one increment with another; the scan aggregator already sends
+     * each code at most once per flush.
+     */
+    @Override
+    public CompletableFuture<Void> recordScans(String apiKey, Map<Integer, ScanTally> talliesById) {
+        return metrics.time(DbOperation.RECORD_SCANS, () -> {
+            List<CompletableFuture<Void>> merges = new ArrayList<>(talliesById.size());
+            talliesById.forEach((id, tally) -> merges.add(mergeScans(
+                    databaseReference.child(Constants.DBKeys.QRS).child(apiKey).child(String.valueOf(id)), tally)));
+            return CompletableFuture.allOf(merges.toArray(new CompletableFuture[0]))
+                    .orTimeout(timeoutMillis, TimeUnit.MILLISECONDS);
+        });
+    }
+
+    private static CompletableFuture<Void> mergeScans(DatabaseReference record, ScanTally tally) {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        record.runTransaction(new Transaction.Handler() {
+            @Override
+            public Transaction.Result doTransaction(MutableData current) {
+                // A missing record, or the first guess before it is loaded: commit nothing, and the
+                // server reruns the transaction with its value if the record exists
+                if (current.getValue() == null) {
+                    return Transaction.success(current);
+                }
+                Long count = current.child("scanCount").getValue(Long.class);
+                Long first = current.child("firstScanAt").getValue(Long.class);
+                Long last = current.child("lastScanAt").getValue(Long.class);
+                current.child("scanned").setValue(true);
+                current.child("scanCount").setValue((count != null ? count : 0L) + tally.getCount());
+                current.child("firstScanAt").setValue(first != null ? Math.min(first, tally.getFirstScanAt()) : tally.getFirstScanAt());
+                current.child("lastScanAt").setValue(last != null ? Math.max(last, tally.getLastScanAt()) : tally.getLastScanAt());
+                return Transaction.success(current);
+            }
+
+            @Override
+            public void onComplete(DatabaseError databaseError, boolean committed, DataSnapshot dataSnapshot) {
+                if (databaseError != null) {
+                    future.completeExceptionally(databaseError.toException());
+                } else {
+                    future.complete(null);
+                }
+            }
+        }, false);
+        return future;
+    }
+
+    @Override
+    public CompletableFuture<Void> deleteData(String apiKey, Integer id) {
+        return metrics.time(DbOperation.DELETE_DATA, () -> whenExists(apiKey, id, () -> {
+            // Remove the metadata and the image together
+            Map<String, Object> removals = new HashMap<>();
+            removals.put(recordPath(Constants.DBKeys.QRS, apiKey, id), null);
+            removals.put(recordPath(Constants.DBKeys.IMAGES, apiKey, id), null);
+            return writeQueue.submit(apiKey, removals);
+        }));
     }
 
-    public void deleteData(String apiKey, Integer id, DatabaseCallback callback) {
+    // Run the write only if the record exists, completing with the write result
+    private CompletableFuture<Void> whenExists(String apiKey, Integer id, Supplier<CompletableFuture<Void>> write) {
+        return fromMirror(apiKey, mirror -> CompletableFuture.completedFuture(mirror.contains(id)), () -> readExists(apiKey, id))
+                .thenCompose(exists -> exists
+                        // Data exists; proceed with the write
+                        ? write.get()
+                        // Data does not exist; handle the error
+                        : CompletableFuture.<Void>failedFuture(new Exception("QR Data not found for id: " + id)))
+                .orTimeout(timeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private CompletableFuture<Boolean> readExists(String apiKey, Integer id) {
+        CompletableFuture<Boolean> future = new CompletableFuture<>();
         DatabaseReference qrDataRef = databaseReference.child(Constants.DBKeys.QRS).child(apiKey).child(String.valueOf(id));
         qrDataRef.addListenerForSingleValueEvent(new ValueEventListener() {
             @Override
             public void onDataChange(DataSnapshot dataSnapshot) {
-                if (dataSnapshot.exists()) {
-                    // Data exists; proceed with the update
-                    qrDataRef.removeValueAsync();
-                    callback.onSuccess();
-                } else {
-                    // Data does not exist; handle the error
-                    callback.onFailure(new Exception("QR Data not found for id: " + id));
-                }
+                future.complete(dataSnapshot.exists());
             }
 
             @Override
             public void onCancelled(DatabaseError databaseError) {
+                metrics.cancelled(PipelineMetrics.Listener.READ);
                 // Handle cancellation
-                callback.onFailure(databaseError.toException());
+                future.completeExceptionally(databaseError.toException());
             }
         });
+        return future;
     }
 
-    public void deleteAllData(String apiKey) {
-        databaseReference.child(Constants.DBKeys.QRS).child(apiKey).removeValueAsync();
+    @Override
+    public CompletableFuture<Void> deleteAllData(String apiKey) {
+        // One update clears the records and images together; the counter stays so leased ids stay unique
+        Map<String, Object> removals = new HashMap<>();
+        removals.put(Constants.DBKeys.QRS + "/" + apiKey, null);
+        removals.put(Constants.DBKeys.IMAGES + "/" + apiKey, null);
+        return metrics.time(DbOperation.DELETE_ALL_DATA, () -> writeQueue.submit(apiKey, removals));
     }
 
+    /**
+     * The size of the client's QR list, i.e. the highest id plus one. Only the last child is
+     * fetched: integer keys are ordered numerically by orderByKey.
+     */
     public CompletableFuture<Integer> getCounterListSize(String apiKey) {
+        return metrics.time(DbOperation.GET_COUNTER_LIST_SIZE, () -> readCounterListSize(apiKey));
+    }
+
+    private CompletableFuture<Integer> readCounterListSize(String apiKey) {
         CompletableFuture<Integer> futureSize = new CompletableFuture<>();
 
-        databaseReference.child(Constants.DBKeys.QRS).child(apiKey).addListenerForSingleValueEvent(new ValueEventListener() {
+        databaseReference.child(Constants.DBKeys.QRS).child(apiKey).orderByKey().limitToLast(1)
+                .addListenerForSingleValueEvent(new ValueEventListener() {
+                    @Override
+                    public void onDataChange(DataSnapshot dataSnapshot) {
+                        int size = 0;
+                        for (DataSnapshot child : dataSnapshot.getChildren()) {
+                            size = Integer.parseInt(child.getKey()) + 1;
+                        }
+                        futureSize.complete(size);
+                    }
+
+                    @Override
+                    public void onCancelled(DatabaseError databaseError) {
+                        metrics.cancelled(PipelineMetrics.Listener.READ);
+                        futureSize.completeExceptionally(databaseError.toException());
+                    }
+                });
+
+        return futureSize;
+    }
+
+    /**
+     * Reserve {@code count} consecutive ids for the client in one atomic transaction on the
+     * client's counter node, which holds the next free id. A missing counter (clients created
+     * before the counter existed) is seeded once from the current list size.
+     *
+     * @return A CompletableFuture containing the first reserved id.
+     */
+    @Override
+    public CompletableFuture<Integer> reserveIds(String apiKey, int count) {
+        return metrics.time(DbOperation.RESERVE_IDS, () -> reserveIdsOnCounter(apiKey, count)
+                .orTimeout(timeoutMillis, TimeUnit.MILLISECONDS));
+    }
+
+    private CompletableFuture<Integer> reserveIdsOnCounter(String apiKey, int count) {
+        DatabaseReference counterRef = databaseReference.child(Constants.DBKeys.COUNTERS).child(apiKey);
+        CompletableFuture<Integer> futureFirstId = new CompletableFuture<>();
+
+        counterRef.addListenerForSingleValueEvent(new ValueEventListener() {
             @Override
             public void onDataChange(DataSnapshot dataSnapshot) {
-                ArrayList<Integer> counterList = (ArrayList<Integer>) dataSnapshot.getValue();
-                if (counterList == null) {
-                    futureSize.complete(0);
+                CompletableFuture<Integer> floor = dataSnapshot.exists()
+                        ? CompletableFuture.completedFuture(0)
+                        : getCounterListSize(apiKey);
+                floor.whenComplete((listSize, e) -> {
+                    if (e != null) {
+                        futureFirstId.completeExceptionally(e);
+                    } else {
+                        reserveIds(counterRef, count, listSize, futureFirstId);
+                    }
+                });
+            }
+
+            @Override
+            public void onCancelled(DatabaseError databaseError) {
+                metrics.cancelled(PipelineMetrics.Listener.READ);
+                futureFirstId.completeExceptionally(databaseError.toException());
+            }
+        });
+
+        return futureFirstId;
+    }
+
+    private void reserveIds(DatabaseReference counterRef, int count, int floor, CompletableFuture<Integer> futureFirstId) {
+        counterRef.runTransaction(new Transaction.Handler() {
+            @Override
+            public Transaction.Result doTransaction(MutableData currentData) {
+                Long next = currentData.getValue(Long.class);
+                long first = Math.max(next != null ? next : 0L, floor);
+                currentData.setValue(first + count);
+                return Transaction.success(currentData);
+            }
+
+            @Override
+            public void onComplete(DatabaseError databaseError, boolean committed, DataSnapshot currentData) {
+                if (databaseError != null) {
+                    futureFirstId.completeExceptionally(databaseError.toException());
+                } else if (!committed) {
+                    futureFirstId.completeExceptionally(new RuntimeException("Id reservation was not committed"));
                 } else {
-                    futureSize.complete(counterList.size());
+                    futureFirstId.complete((int) (currentData.getValue(Long.class) - count));
                 }
             }
+        });
+    }
+
+    /**
+     * Write several QR records of one client with a single multi-path update.
+     *
+     * @param dataById the records keyed by their reserved id
+     */
+    @Override
+    public CompletableFuture<Void> insertBatch(String apiKey, Map<Integer, QrData> dataById) {
+        Map<String, Object> updates = new HashMap<>();
+        dataById.forEach((id, data) -> updates.putAll(splitRecord(apiKey, id, data)));
+        return metrics.time(DbOperation.INSERT_BATCH, () -> writeQueue.submit(apiKey, updates).orTimeout(timeoutMillis, TimeUnit.MILLISECONDS));
+    }
+
+    /**
+     * Move images stored inline under QR/<apiKey>/<id> (the original layout) to QRImages/<apiKey>/<id>.
+     * Reads the whole QR tree once and writes one multi-path update per client.
+     *
+     * @return A CompletableFuture containing the number of migrated images.
+     */
+    @Override
+    public CompletableFuture<Integer> migrateInlineImages() {
+        return metrics.time(DbOperation.MIGRATE_INLINE_IMAGES, this::moveInlineImages);
+    }
+
+    private CompletableFuture<Integer> moveInlineImages() {
+        CompletableFuture<Integer> futureCount = new CompletableFuture<>();
+
+        databaseReference.child(Constants.DBKeys.QRS).addListenerForSingleValueEvent(new ValueEventListener() {
+            @Override
+            public void onDataChange(DataSnapshot dataSnapshot) {
+                List<CompletableFuture<Void>> writes = new ArrayList<>();
+                int migrated = 0;
+                for (DataSnapshot client : dataSnapshot.getChildren()) {
+                    Map<String, Object> updates = new HashMap<>();
+                    for (DataSnapshot record : client.getChildren()) {
+                        Object image = record.child(IMAGE_FIELD).getValue();
+                        if (image != null) {
+                            updates.put(Constants.DBKeys.IMAGES + "/" + client.getKey() + "/" + record.getKey(), image);
+                            updates.put(Constants.DBKeys.QRS + "/" + client.getKey() + "/" + record.getKey() + "/" + IMAGE_FIELD, null);
+                        }
+                    }
+                    if (!updates.isEmpty()) {
+                        migrated += updates.size() / 2;
+                        writes.add(toCompletableFuture(databaseReference.updateChildrenAsync(updates)));
+                    }
+                }
+                int total = migrated;
+                CompletableFuture.allOf(writes.toArray(new CompletableFuture[0])).whenComplete((ignored, e) -> {
+                    if (e != null) {
+                        futureCount.completeExceptionally(e);
+                    } else {
+                        log.info("Migrated {} inline QR images", total);
+                        futureCount.complete(total);
+                    }
+                });
+            }
 
             @Override
             public void onCancelled(DatabaseError databaseError) {
-                futureSize.completeExceptionally(databaseError.toException());
+                metrics.cancelled(PipelineMetrics.Listener.READ);
+                futureCount.completeExceptionally(databaseError.toException());
             }
         });
 
-        return futureSize;
+        return futureCount;
+    }
+
+    private static <T> CompletableFuture<T> toCompletableFuture(ApiFuture<T> apiFuture) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        ApiFutures.addCallback(apiFuture, new ApiFutureCallback<T>() {
+            @Override
+            public void onFailure(Throwable t) {
+                future.completeExceptionally(t);
+            }
+
+            @Override
+            public void onSuccess(T result) {
+                future.complete(result);
+            }
+        }, MoreExecutors.directExecutor());
+        return future;
     }
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,61 @@
+package com.company.service;
+
+import com.company.interfaces.QrRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Hands out collision-free QR ids backed by the per-client counter node. With a block size above
+ * one, each instance leases a range of ids in one transaction and serves them locally; ids left in
+ * a lease when the instance stops are never reused, which leaves gaps. Deleting all data of a client
+ * keeps its counter, so a block leased before the deletion never overlaps one leased after it.
+ */
+@Service
+public class IdAllocationService {
+
+    @Autowired
+    private QrRepository qrRepository;
+
+    @Value("${QR_ID_BLOCK_SIZE:1}")
+    private int blockSize;
+
+    private final Map<String, IdBlock> blocks = new ConcurrentHashMap<>();
+
+    public CompletableFuture<Integer> nextId(String apiKey) {
+        if (blockSize <= 1) {
+            return qrRepository.reserveIds(apiKey, 1);
+        }
+        IdBlock block = blocks.get(apiKey);
+        if (block != null) {
+            Integer id = block.take();
+            if (id != null) {
+                return CompletableFuture.completedFuture(id);
+            }
+        }
+        // Lease a new block, keeping its first id for this caller
+        return qrRepository.reserveIds(apiKey, blockSize).thenApply(first -> {
+            blocks.put(apiKey, new IdBlock(first + 1, first + blockSize));
+            return first;
+        });
+    }
+
+    // A leased range [next, end) of ids
+    private static class IdBlock {
+        private int next;
+        private final int end;
+
+        private IdBlock(int next, int end) {
+            this.next = next;
+            this.end = end;
+        }
+
+        private synchronized Integer take() {
+            return next < end ? next++ : null;
+        }
+    }
+}
@@ -0,0 +1,350 @@
+package com.company.service;
+
+import com.company.constants.Constants;
+import com.company.interfaces.QrRepository;
+import com.company.model.QrData;
+import com.company.model.QrPage;
+import com.company.model.ScanTally;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.log4j.Log4j2;
+import org.h2.mvstore.Cursor;
+import org.h2.mvstore.MVMap;
+import org.h2.mvstore.MVStore;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Embedded {@link QrRepository} on an H2 MVStore file, for self-hosted deployments and load tests
+ * without network access. Each client has an id-ordered map of metadata records and one of images,
+ * mirroring the QR and QRImages nodes; ids come from a shared counter map updated with compare-and-set.
+ * Metadata is stored as a fixed-order array rather than a serialized object to keep records compact.
+ */
+@Log4j2
+@Service
+@ConditionalOnProperty(name = "QR_STORE", havingValue = "local")
+public class LocalStoreService implements QrRepository {
+
+    // Record layout and the field names Firebase uses for QrData
+    private static final String[] FIELDS = {"url", "size", "errorCorrection", "startDate", "endDate", "scanned", "type", "format", "imageFormat",
+            "scanCount", "firstScanAt", "lastScanAt"};
+    private static final int SCANNED = 5;
+    private static final int SCAN_COUNT = 9;
+    private static final int FIRST_SCAN_AT = 10;
+    private static final int LAST_SCAN_AT = 11;
+    private static final String RECORDS_PREFIX = Constants.DBKeys.QRS + "/";
+    private static final String IMAGES_PREFIX = Constants.DBKeys.IMAGES + "/";
+
+    // Store file, empty keeps everything in memory
+    @Value("${QR_LOCAL_STORE_PATH:qr-store.mv.db}")
+    private String path;
+
+    // Background commit interval, which persists id counters; every record write commits before completing
+    @Value("${QR_LOCAL_STORE_COMMIT_MS:1000}")
+    private int commitDelayMillis;
+
+    private MVStore store;
+    private MVMap<String, Long> counters;
+
+    @PostConstruct
+    public void initStore() {
+        MVStore.Builder builder = new MVStore.Builder();
+        if (path != null && !path.isBlank()) {
+            builder.fileName(path).compress();
+        }
+        store = builder.open();
+        store.setAutoCommitDelay(commitDelayMillis);
+        counters = store.openMap(Constants.DBKeys.COUNTERS);
+        log.info("Local QR store opened at {}", path == null || path.isBlank() ? "<memory>" : path);
+    }
+
+    @PreDestroy
+    public void close() {
+        if (store != null && !store.isClosed()) {
+            store.close();
+        }
+    }
+
+    @Override
+    public CompletableFuture<Map<String, Object>> getAllData() {
+        Map<String, Object> records = new HashMap<>();
+        Map<String, Object> images = new HashMap<>();
+        for (String name : store.getMapNames()) {
+            if (name.startsWith(RECORDS_PREFIX)) {
+                String apiKey = name.substring(RECORDS_PREFIX.length());
+                Map<String, Object> client = new LinkedHashMap<>();
+                recordsOf(apiKey).forEach((id, record) -> client.put(String.valueOf(id), toMap(record, null)));
+                records.put(apiKey, client);
+            } else if (name.startsWith(IMAGES_PREFIX)) {
+                String apiKey = name.substring(IMAGES_PREFIX.length());
+                Map<String, Object> client = new LinkedHashMap<>();
+                imagesOf(apiKey).forEach((id, image) -> client.put(String.valueOf(id), image));
+                images.put(apiKey, client);
+            }
+        }
+        Map<String, Object> data = new HashMap<>();
+        data.put(Constants.DBKeys.QRS, records);
+        data.put(Constants.DBKeys.IMAGES, images);
+        data.put(Constants.DBKeys.COUNTERS, new HashMap<>(counters));
+        return CompletableFuture.completedFuture(data);
+    }
+
+    @Override
+    public CompletableFuture<Map<String, Object>> getDataByClient(String apiKey, Set<String> fields) {
+        MVMap<Integer, Object[]> records = existingRecordsOf(apiKey);
+        if (records == null || records.isEmpty()) {
+            return CompletableFuture.failedFuture(new NoSuchElementException("No data found for API Key: " + apiKey));
+        }
+        MVMap<Integer, String> images = wantsImages(fields) ? imagesOf(apiKey) : null;
+        Map<String, Object> mapData = new HashMap<>();
+        records.forEach((id, record) -> mapData.put(String.valueOf(id), project(id, record, fields, images)));
+        return CompletableFuture.completedFuture(mapData);
+    }
+
+    @Override
+    public CompletableFuture<QrPage> getDataByClientPage(String apiKey, Set<String> fields, String cursor, int limit) {
+        int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        MVMap<Integer, Object[]> records = existingRecordsOf(apiKey);
+        if (records == null || cursor == null && records.isEmpty()) {
+            return CompletableFuture.failedFuture(new NoSuchElementException("No data found for API Key: " + apiKey));
+        }
+        Integer from;
+        try {
+            from = cursor != null ? Integer.valueOf(cursor) : null;
+        } catch (NumberFormatException e) {
+            return CompletableFuture.failedFuture(new IllegalArgumentException("Invalid cursor: " + cursor));
+        }
+
+        MVMap<Integer, String> images = wantsImages(fields) ? imagesOf(apiKey) : null;
+        Map<String, Object> page = new LinkedHashMap<>();
+        String nextCursor = null;
+        Cursor<Integer, Object[]> iterator = records.cursor(from);
+        while (iterator.hasNext()) {
+            Integer id = iterator.next();
+            if (page.size() == pageSize) {
+                nextCursor = String.valueOf(id);
+                break;
+            }
+            page.put(String.valueOf(id), project(id, iterator.getValue(), fields, images));
+        }
+        return CompletableFuture.completedFuture(new QrPage(page, nextCursor));
+    }
+
+    @Override
+    public CompletableFuture<Void> InsertData(String apiKey, Integer id, QrData data) {
+        put(apiKey, id, data);
+        store.commit();
+        return CompletableFuture.completedFuture(null);
+    }
+
+    @Override
+    public CompletableFuture<Void> insertBatch(String apiKey, Map<Integer, QrData> dataById) {
+        dataById.forEach((id, data) -> put(apiKey, id, data));
+        store.commit();
+        return CompletableFuture.completedFuture(null);
+    }
+
+    @Override
+    public CompletableFuture<QrData> getRecord(String apiKey, Integer id) {
+        MVMap<Integer, Object[]> records = existingRecordsOf(apiKey);
+        Object[] record = records != null ? records.get(id) : null;
+        if (record == null) {
+            return CompletableFuture.failedFuture(new NoSuchElementException("QR Data not found for id: " + id));
+        }
+        Object[] fields = Arrays.copyOf(record, FIELDS.length);
+        return CompletableFuture.completedFuture(QrData.builder()
+                .url((String) fields[0])
+                .size((Integer) fields[1])
+                .errorCorrection((String) fields[2])
+                .startDate((String) fields[3])
+                .endDate((String) fields[4])
+                .isScanned(Boolean.TRUE.equals(fields[SCANNED]))
+                .type((Integer) fields[6])
+                .format((String) fields[7])
+                .imageFormat((String) fields[8])
+                .scanCount((Long) fields[SCAN_COUNT])
+                .firstScanAt((Long) fields[FIRST_SCAN_AT])
+                .lastScanAt((Long) fields[LAST_SCAN_AT])
+                .build());
+    }
+
+    // Merged into the current record, so scans flushed meanwhile by recordScans are kept
+    @Override
+    public CompletableFuture<Void> patchData(String apiKey, Integer id, Map<String, Object> changes) {
+        MVMap<Integer, Object[]> records = existingRecordsOf(apiKey);
+        Object[] patched = records == null ? null : records.computeIfPresent(id, (key, existing) -> {
+            Object[] record = Arrays.copyOf(existing, FIELDS.length);
+            for (int i = 0; i < FIELDS.length; i++) {
+                if (changes.containsKey(FIELDS[i])) {
+                    record[i] = changes.get(FIELDS[i]);
+                }
+            }
+            return record;
+        });
+        if (patched == null) {
+            return CompletableFuture.failedFuture(new NoSuchElementException("QR Data not found for id: " + id));
+        }
+        if (changes.containsKey(IMAGE_FIELD)) {
+            putImage(apiKey, id, (String) changes.get(IMAGE_FIELD));
+        }
+        store.commit();
+        return CompletableFuture.completedFuture(null);
+    }
+
+    @Override
+    public CompletableFuture<Void> updateData(String apiKey, Integer id, QrData qrData) {
+        MVMap<Integer, Object[]> records = existingRecordsOf(apiKey);
+        Object[] updated = records == null ? null : records.computeIfPresent(id, (key, existing) -> {
+            Object[] record = toRecord(qrData);
+            // Scan tallies belong to scan ingestion; records written before they existed have none
+            for (int i = SCAN_COUNT; i < Math.min(FIELDS.length, existing.length); i++) {
+                record[i] = existing[i];
+            }
+            return record;
+        });
+        if (updated == null) {
+            return CompletableFuture.failedFuture(new Exception("QR Data not found for id: " + id));
+        }
+        putImage(apiKey, id, qrData.getBase64Image());
+        store.commit();
+        return CompletableFuture.completedFuture(null);
+    }
+
+    @Override
+    public CompletableFuture<Void> recordScans(String apiKey, Map<Integer, ScanTally> talliesById) {
+        MVMap<Integer, Object[]> records = existingRecordsOf(apiKey);
+        if (records == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        talliesById.forEach((id, tally) -> records.computeIfPresent(id, (key, record) -> {
+            Object[] merged = Arrays.copyOf(record, FIELDS.length);
+            merged[SCANNED] = true;
+            merged[SCAN_COUNT] = (merged[SCAN_COUNT] != null ? (Long) merged[SCAN_COUNT] : 0L) + tally.getCount();
+            merged[FIRST_SCAN_AT] = merged[FIRST_SCAN_AT] != null
+                    ? Math.min((Long) merged[FIRST_SCAN_AT], tally.getFirstScanAt()) : tally.getFirstScanAt();
+            merged[LAST_SCAN_AT] = merged[LAST_SCAN_AT] != null
+                    ? Math.max((Long) merged[LAST_SCAN_AT], tally.getLastScanAt()) : tally.getLastScanAt();
+            return merged;
+        }));
+        store.commit();
+        return CompletableFuture.completedFuture(null);
+    }
+
+    @Override
+    public CompletableFuture<Void> deleteData(String apiKey, Integer id) {
+        MVMap<Integer, Object[]> records = existingRecordsOf(apiKey);
+        if (records == null || records.remove(id) == null) {
+            return CompletableFuture.failedFuture(new Exception("QR Data not found for id: " + id));
+        }
+        imagesOf(apiKey).remove(id);
+        store.commit();
+        return CompletableFuture.completedFuture(null);
+    }
+
+    @Override
+    public CompletableFuture<Void> deleteAllData(String apiKey) {
+        store.removeMap(RECORDS_PREFIX + apiKey);
+        store.removeMap(IMAGES_PREFIX + apiKey);
+        store.commit();
+        return CompletableFuture.completedFuture(null);
+    }
+
+    /**
+     * Reserve ids with a compare-and-set loop on the client's counter. A missing counter is seeded
+     * from the highest stored id, so data imported without counters does not collide.
+     */
+    @Override
+    public CompletableFuture<Integer> reserveIds(String apiKey, int count) {
+        while (true) {
+            Long next = counters.get(apiKey);
+            if (next == null) {
+                Integer lastId = recordsOf(apiKey).lastKey();
+                long first = lastId != null ? lastId + 1L : 0L;
+                if (counters.putIfAbsent(apiKey, first + count) == null) {
+                    return CompletableFuture.completedFuture((int) first);
+                }
+            } else if (counters.replace(apiKey, next, next + count)) {
+                return CompletableFuture.completedFuture(next.intValue());
+            }
+        }
+    }
+
+    // Images are never stored inline locally
+    @Override
+    public CompletableFuture<Integer> migrateInlineImages() {
+        return CompletableFuture.completedFuture(0);
+    }
+
+    private void put(String apiKey, Integer id, QrData data) {
+        put(apiKey, id, toRecord(data), data.getBase64Image());
+    }
+
+    private void put(String apiKey, Integer id, Object[] record, String base64Image) {
+        recordsOf(apiKey).put(id, record);
+        putImage(apiKey, id, base64Image);
+    }
+
+    private void putImage(String apiKey, Integer id, String base64Image) {
+        if (base64Image != null) {
+            imagesOf(apiKey).put(id, base64Image);
+        } else {
+            imagesOf(apiKey).remove(id);
+        }
+    }
+
+    private MVMap<Integer, Object[]> recordsOf(String apiKey) {
+        return store.openMap(RECORDS_PREFIX + apiKey);
+    }
+
+    // Reads don't create maps for unknown clients
+    private MVMap<Integer, Object[]> existingRecordsOf(String apiKey) {
+        return store.hasMap(RECORDS_PREFIX + apiKey) ? recordsOf(apiKey) : null;
+    }
+
+    private MVMap<Integer, String> imagesOf(String apiKey) {
+        return store.openMap(IMAGES_PREFIX + apiKey);
+    }
+
+    private static boolean wantsImages(Set<String> fields) {
+        return fields != null && fields.contains(IMAGE_FIELD);
+    }
+
+    private static Object[] toRecord(QrData data) {
+        return new Object[]{data.getUrl(), data.getSize(), data.getErrorCorrection(), data.getStartDate(),
+                data.getEndDate(), data.isScanned(), data.getType(), data.getFormat(),
+                data.getImageFormat(), data.getScanCount(), data.getFirstScanAt(), data.getLastScanAt()};
+    }
+
+    // Copy the requested fields of a record, adding the image when requested
+    private static Map<String, Object> project(Integer id, Object[] record, Set<String> fields, MVMap<Integer, String> images) {
+        Map<String, Object> projected = toMap(record, fields);
+        if (images != null) {
+            String image = images.get(id);
+            if (image != null) {
+                projected.put(IMAGE_FIELD, image);
+            }
+        }
+        return projected;
+    }
+
+    // Null fields are left out, as Firebase does not store them
+    private static Map<String, Object> toMap(Object[] record, Set<String> fields) {
+        Map<String, Object> map = new HashMap<>();
+        // Records written before a field was added are shorter
+        for (int i = 0; i < Math.min(FIELDS.length, record.length); i++) {
+            if (record[i] != null && (fields == null || fields.contains(FIELDS[i]))) {
+                map.put(FIELDS[i], record[i]);
+            }
+        }
+        return map;
+    }
+}
@@ -0,0 +1,420 @@
+package com.company.service;
+
+import com.company.decode.BufferPool;
+import com.company.decode.GrayImages;
+import com.company.decode.GrayLuminanceSource;
+import com.company.model.DecodeStageStats;
+import com.company.model.DecodeStats;
+import com.google.zxing.*;
+import com.google.zxing.common.HybridBinarizer;
+import com.google.zxing.multi.GenericMultipleBarcodeReader;
+import com.google.zxing.multi.MultipleBarcodeReader;
+import com.google.zxing.multi.qrcode.QRCodeMultiReader;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Decodes the barcodes in uploaded images. Only the formats the caller expects are tried, and
+ * several codes per image can be returned. Images above {@code QR_DECODE_TILE_THRESHOLD_PIXELS} are
+ * searched in overlapping tiles on the decode pool, plus one downscaled pass over the whole image for
+ * codes larger than the tile overlap; results are merged by format and text.
+ * <p>
+ * Reading a single code escalates through the {@link Stage stages} and stops at the first hit, so a
+ * clean photo costs one pass over a plane of at most {@code QR_DECODE_FAST_SIZE} pixels per side.
+ * <p>
+ * Every pass works on one 8-bit gray plane per upload (see {@link GrayImages}); uploads and derived
+ * planes are drawn from a shared {@link BufferPool}.
+ */
+@Log4j2
+@Service
+public class QRDecodeService {
+
+    public static final Set<BarcodeFormat> QR_ONLY = EnumSet.of(BarcodeFormat.QR_CODE);
+
+    // Row-scanned formats, the only ones whose readers care about orientation without TRY_HARDER
+    private static final Set<BarcodeFormat> ONE_D = EnumSet.of(BarcodeFormat.CODABAR, BarcodeFormat.CODE_39,
+            BarcodeFormat.CODE_93, BarcodeFormat.CODE_128, BarcodeFormat.EAN_8, BarcodeFormat.EAN_13, BarcodeFormat.ITF,
+            BarcodeFormat.RSS_14, BarcodeFormat.RSS_EXPANDED, BarcodeFormat.UPC_A, BarcodeFormat.UPC_E);
+
+    /**
+     * Passes of a single-code read, cheapest first.
+     */
+    public enum Stage {
+        // Downsampled grayscale plane, default hints
+        FAST,
+        // The downsampled plane turned 90 degrees, for vertical 1D codes
+        ROTATED,
+        // Full resolution, default hints
+        FULL,
+        // Full resolution with TRY_HARDER
+        TRY_HARDER
+    }
+
+    @Value("${QR_DECODE_TILE_THRESHOLD_PIXELS:4000000}")
+    private long tileThresholdPixels;
+
+    @Value("${QR_DECODE_TILE_SIZE:1024}")
+    private int tileSize;
+
+    // Codes up to this size always fit whole in some tile
+    @Value("${QR_DECODE_TILE_OVERLAP:320}")
+    private int tileOverlap;
+
+    // Long side of the downscaled whole-image pass
+    @Value("${QR_DECODE_OVERVIEW_SIZE:1600}")
+    private int overviewSize;
+
+    // Long side of the plane tried first when reading a single code
+    @Value("${QR_DECODE_FAST_SIZE:1024}")
+    private int fastSize;
+
+    // Uploads with more pixels are rejected from their header, before any plane is allocated
+    @Value("${QR_DECODE_MAX_PIXELS:40000000}")
+    private long maxPixels;
+
+    // Upload and luminance buffers kept for reuse
+    @Value("${QR_DECODE_BUFFER_POOL_BYTES:134217728}")
+    private long bufferPoolBytes;
+
+    @Autowired
+    private ExecutorService decodeExecutor;
+
+    private BufferPool bufferPool;
+
+    private final Map<Stage, StageCounter> stageCounters = new EnumMap<>(Stage.class);
+    private final AtomicLong decodes = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public QRDecodeService() {
+        for (Stage stage : Stage.values()) {
+            stageCounters.put(stage, new StageCounter());
+        }
+    }
+
+    @PostConstruct
+    public void initBufferPool() {
+        bufferPool = new BufferPool(bufferPoolBytes);
+    }
+
+    /**
+     * Parse a comma separated list of zxing format names, such as {@code QR_CODE,DATA_MATRIX}.
+     *
+     * @return the formats, or {@link #QR_ONLY} when none are given
+     * @throws IllegalArgumentException for an unknown format name
+     */
+    public static Set<BarcodeFormat> parseFormats(String formats) {
+        if (formats == null || formats.isBlank()) {
+            return QR_ONLY;
+        }
+        Set<BarcodeFormat> parsed = EnumSet.noneOf(BarcodeFormat.class);
+        for (String format : formats.split(",")) {
+            try {
+                parsed.add(BarcodeFormat.valueOf(format.trim().toUpperCase()));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unknown barcode format: " + format.trim());
+            }
+        }
+        return parsed;
+    }
+
+    /**
+     * Decode an uploaded PNG or JPEG. The bytes are read once into a pooled buffer and turned into a
+     * gray plane without an intermediate ARGB image where the format allows.
+     *
+     * @param formats  the formats to look for
+     * @param multiple return every code found instead of the first one
+     * @return the decoded codes, never empty
+     * @throws NotFoundException when no code is found
+     * @throws IOException       when the upload is not a readable image or has more than
+     *                           {@code QR_DECODE_MAX_PIXELS} pixels
+     */
+    public List<Result> decode(InputStream input, Set<BarcodeFormat> formats, boolean multiple) throws IOException, NotFoundException {
+        byte[] upload = bufferPool.acquireAtLeast(Math.max(input.available(), 8192));
+        GrayLuminanceSource source;
+        try {
+            int length = 0;
+            for (int read; (read = input.read(upload, length, upload.length - length)) > 0; ) {
+                length += read;
+                if (length == upload.length) {
+                    byte[] larger = bufferPool.acquireAtLeast(upload.length * 2);
+                    System.arraycopy(upload, 0, larger, 0, length);
+                    bufferPool.release(upload);
+                    upload = larger;
+                }
+            }
+            source = GrayImages.read(upload, length, bufferPool, maxPixels);
+        } finally {
+            bufferPool.release(upload);
+        }
+        try {
+            return decode(source, formats, multiple);
+        } finally {
+            bufferPool.release(source);
+        }
+    }
+
+    /**
+     * @see #decode(InputStream, Set, boolean)
+     */
+    public List<Result> decode(BufferedImage image, Set<BarcodeFormat> formats, boolean multiple) throws NotFoundException {
+        GrayLuminanceSource source = GrayImages.toGray(image, bufferPool);
+        try {
+            return decode(source, formats, multiple);
+        } finally {
+            bufferPool.release(source);
+        }
+    }
+
+    private List<Result> decode(GrayLuminanceSource source, Set<BarcodeFormat> formats, boolean multiple) throws NotFoundException {
+        if (!multiple) {
+            return List.of(decodeFirst(source, formats));
+        }
+        List<Result> results;
+        if (isTiled(source)) {
+            results = decodeTiled(source, formats, hints(formats, false), true, true);
+        } else {
+            results = decodeRegion(source, formats, hints(formats, true), true);
+        }
+        if (results.isEmpty()) {
+            throw NotFoundException.getNotFoundInstance();
+        }
+        return results;
+    }
+
+    public DecodeStats getStats() {
+        Map<String, DecodeStageStats> stages = new LinkedHashMap<>();
+        stageCounters.forEach((stage, counter) -> {
+            long attempts = counter.attempts.get();
+            long hits = counter.hits.get();
+            stages.put(stage.name(), DecodeStageStats.builder()
+                    .attempts(attempts)
+                    .hits(hits)
+                    .hitRate(attempts == 0 ? 0 : (double) hits / attempts)
+                    .averageMillis(attempts == 0 ? 0 : counter.nanos.get() / 1e6 / attempts)
+                    .build());
+        });
+        long decodeCount = decodes.get();
+        long missCount = misses.get();
+        return DecodeStats.builder()
+                .decodes(decodeCount)
+                .misses(missCount)
+                .hitRate(decodeCount == 0 ? 0 : (double) (decodeCount - missCount) / decodeCount)
+                .stages(stages)
+                .build();
+    }
+
+    // Escalate from the cheap downsampled pass to full resolution and TRY_HARDER only on failure
+    private Result decodeFirst(GrayLuminanceSource source, Set<BarcodeFormat> formats) throws NotFoundException {
+        decodes.incrementAndGet();
+        Map<DecodeHintType, Object> hints = hints(formats, false);
+        GrayLuminanceSource fastSource = source.downscale(fastSize, bufferPool);
+        boolean downscaled = fastSource != source;
+        Result result;
+        try {
+            result = attempt(Stage.FAST, () -> first(decodeRegion(fastSource, formats, hints, false)));
+            if (result == null && !Collections.disjoint(formats, ONE_D)) {
+                // Without TRY_HARDER the 1D readers only scan rows
+                result = attempt(Stage.ROTATED, () -> {
+                    GrayLuminanceSource rotated = fastSource.rotateCounterClockwise(bufferPool);
+                    try {
+                        return first(decodeRegion(rotated, formats, hints, false));
+                    } finally {
+                        bufferPool.release(rotated);
+                    }
+                });
+            }
+        } finally {
+            if (downscaled) {
+                bufferPool.release(fastSource);
+            }
+        }
+        if (result != null) {
+            return result;
+        }
+
+        if (downscaled) {
+            result = attempt(Stage.FULL, () -> first(decodeFull(source, formats, hints)));
+        }
+        if (result == null) {
+            Map<DecodeHintType, Object> hardHints = hints(formats, true);
+            result = attempt(Stage.TRY_HARDER, () -> first(decodeFull(source, formats, hardHints)));
+        }
+        if (result == null) {
+            misses.incrementAndGet();
+            throw NotFoundException.getNotFoundInstance();
+        }
+        return result;
+    }
+
+    private Result attempt(Stage stage, Supplier<Result> pass) {
+        StageCounter counter = stageCounters.get(stage);
+        long start = System.nanoTime();
+        Result result = pass.get();
+        counter.nanos.addAndGet(System.nanoTime() - start);
+        counter.attempts.incrementAndGet();
+        if (result != null) {
+            counter.hits.incrementAndGet();
+        }
+        return result;
+    }
+
+    // The downsampled plane already covered large codes, so tiles are searched without the overview pass
+    private List<Result> decodeFull(GrayLuminanceSource source, Set<BarcodeFormat> formats, Map<DecodeHintType, Object> hints) {
+        return isTiled(source)
+                ? decodeTiled(source, formats, hints, false, false)
+                : decodeRegion(source, formats, hints, false);
+    }
+
+    private boolean isTiled(LuminanceSource source) {
+        return (long) source.getWidth() * source.getHeight() > tileThresholdPixels;
+    }
+
+    private static Result first(List<Result> results) {
+        return results.isEmpty() ? null : results.get(0);
+    }
+
+    private static Map<DecodeHintType, Object> hints(Set<BarcodeFormat> formats, boolean tryHarder) {
+        Map<DecodeHintType, Object> hints = new EnumMap<>(DecodeHintType.class);
+        hints.put(DecodeHintType.POSSIBLE_FORMATS, formats);
+        if (tryHarder) {
+            hints.put(DecodeHintType.TRY_HARDER, Boolean.TRUE);
+        }
+        return hints;
+    }
+
+    // Tiles are crops of the same luminance plane, so the image is converted only once
+    private List<Result> decodeTiled(GrayLuminanceSource source, Set<BarcodeFormat> formats,
+                                     Map<DecodeHintType, Object> hints, boolean multiple, boolean overview) {
+        List<int[]> tiles = tiles(source.getWidth(), source.getHeight());
+
+        CompletableFuture<Void> found = new CompletableFuture<>();
+        List<CompletableFuture<List<Result>>> searches = new ArrayList<>(tiles.size() + 1);
+        if (overview) {
+            searches.add(CompletableFuture.supplyAsync(() -> found.isDone() && !multiple
+                    ? List.<Result>of()
+                    : whenFound(decodeOverview(source, formats, hints, multiple), found),
+                    decodeExecutor));
+        }
+        for (int[] tile : tiles) {
+            searches.add(CompletableFuture.supplyAsync(() -> found.isDone() && !multiple
+                    ? List.<Result>of()
+                    : whenFound(decodeRegion(source.crop(tile[0], tile[1], tile[2], tile[3]), formats, hints, multiple), found),
+                    decodeExecutor));
+        }
+
+        Map<String, Result> merged = new LinkedHashMap<>();
+        for (CompletableFuture<List<Result>> search : searches) {
+            for (Result result : search.join()) {
+                merged.putIfAbsent(result.getBarcodeFormat() + "|" + result.getText(), result);
+            }
+        }
+        log.debug("Searched {} tiles of a {}x{} image, found {} codes", tiles.size(), source.getWidth(), source.getHeight(), merged.size());
+        return new ArrayList<>(merged.values());
+    }
+
+    private List<Result> decodeOverview(GrayLuminanceSource source, Set<BarcodeFormat> formats,
+                                        Map<DecodeHintType, Object> hints, boolean multiple) {
+        GrayLuminanceSource overview = source.downscale(overviewSize, bufferPool);
+        try {
+            return decodeRegion(overview, formats, hints, multiple);
+        } finally {
+            if (overview != source) {
+                bufferPool.release(overview);
+            }
+        }
+    }
+
+    private static List<Result> whenFound(List<Result> results, CompletableFuture<Void> found) {
+        if (!results.isEmpty()) {
+            found.complete(null);
+        }
+        return results;
+    }
+
+    // Readers are not thread-safe, so every region gets its own
+    private static List<Result> decodeRegion(LuminanceSource source, Set<BarcodeFormat> formats,
+                                             Map<DecodeHintType, Object> hints, boolean multiple) {
+        BinaryBitmap bitmap = new BinaryBitmap(new HybridBinarizer(source));
+        if (!multiple) {
+            try {
+                return List.of(new MultiFormatReader().decode(bitmap, hints));
+            } catch (NotFoundException e) {
+                // With several QR codes in view the single reader can pair finder patterns of different
+                // codes; the multi reader groups them properly
+                if (!formats.contains(BarcodeFormat.QR_CODE)) {
+                    return List.of();
+                }
+            }
+        }
+        List<Result> results = new ArrayList<>();
+        if (formats.contains(BarcodeFormat.QR_CODE)) {
+            results.addAll(decodeMultiple(new QRCodeMultiReader(), bitmap, hints));
+        }
+        Set<BarcodeFormat> otherFormats = EnumSet.noneOf(BarcodeFormat.class);
+        otherFormats.addAll(formats);
+        otherFormats.remove(BarcodeFormat.QR_CODE);
+        if (!otherFormats.isEmpty() && (multiple || results.isEmpty())) {
+            // The generic reader splits the image around each code it finds, which QR grouping doesn't need
+            Map<DecodeHintType, Object> otherHints = new EnumMap<>(hints);
+            otherHints.put(DecodeHintType.POSSIBLE_FORMATS, otherFormats);
+            results.addAll(decodeMultiple(new GenericMultipleBarcodeReader(new MultiFormatReader()), bitmap, otherHints));
+        }
+        return results;
+    }
+
+    private static List<Result> decodeMultiple(MultipleBarcodeReader reader, BinaryBitmap bitmap, Map<DecodeHintType, Object> hints) {
+        try {
+            return List.of(reader.decodeMultiple(bitmap, hints));
+        } catch (NotFoundException e) {
+            return List.of();
+        }
+    }
+
+    // Tiles as {left, top, width, height}, overlapping by tileOverlap and covering the image edge to edge
+    List<int[]> tiles(int width, int height) {
+        List<int[]> tiles = new ArrayList<>();
+        for (int top : offsets(height)) {
+            for (int left : offsets(width)) {
+                tiles.add(new int[]{left, top, Math.min(tileSize, width - left), Math.min(tileSize, height - top)});
+            }
+        }
+        return tiles;
+    }
+
+    private List<Integer> offsets(int length) {
+        List<Integer> offsets = new ArrayList<>();
+        int stride = Math.max(1, tileSize - tileOverlap);
+        for (int offset = 0; ; offset += stride) {
+            if (offset + tileSize >= length) {
+                offsets.add(Math.max(0, length - tileSize));
+                return offsets;
+            }
+            offsets.add(offset);
+        }
+    }
+
+    private static class StageCounter {
+        private final AtomicLong attempts = new AtomicLong();
+        private final AtomicLong hits = new AtomicLong();
+        private final AtomicLong nanos = new AtomicLong();
+    }
+}
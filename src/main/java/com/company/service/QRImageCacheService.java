@@ -0,0 +1,128 @@
+package com.company.service;
+
+import com.company.model.ImageCacheStats;
+import com.company.render.QrImage;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.google.zxing.qrcode.decoder.ErrorCorrectionLevel;
+import com.google.zxing.qrcode.encoder.QRCode;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * Bounded in-process cache of verified QR images, keyed by a SHA-256 of the render parameters.
+ * Eviction is W-TinyLFU weighted by image bytes, so one-off codes (type 2/4 URLs embed a unique id)
+ * are not admitted at the expense of frequently regenerated static codes.
+ * <p>
+ * A second tier keeps encoded QR symbols by text and error correction level, so rendering the same
+ * code at another size or encoding skips Reed-Solomon encoding and mask selection and only rescales
+ * the module matrix. Cached symbols are shared and must not be modified.
+ */
+@Log4j2
+@Service
+public class QRImageCacheService {
+
+    // 0 disables the cache
+    @Value("${QR_IMAGE_CACHE_MAX_BYTES:67108864}")
+    private long maxBytes;
+
+    // 0 disables the symbol tier
+    @Value("${QR_SYMBOL_CACHE_MAX_BYTES:16777216}")
+    private long maxSymbolBytes;
+
+    private Cache<String, QrImage> cache;
+    private Cache<String, QRCode> symbols;
+
+    @PostConstruct
+    public void initCache() {
+        if (maxSymbolBytes > 0) {
+            symbols = Caffeine.newBuilder()
+                    .maximumWeight(maxSymbolBytes)
+                    // One byte per module, plus the key
+                    .weigher((String key, QRCode code) -> code.getMatrix().getWidth() * code.getMatrix().getHeight() + key.length() * 2)
+                    .recordStats()
+                    .build();
+        }
+        if (maxBytes <= 0) {
+            log.info("QR image cache disabled");
+            return;
+        }
+        cache = Caffeine.newBuilder()
+                .maximumWeight(maxBytes)
+                .weigher((String key, QrImage image) -> image.weight())
+                .recordStats()
+                .build();
+    }
+
+    public static String key(String text, int size, ErrorCorrectionLevel errorCorrection, String format) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update((format + '|' + errorCorrection + '|' + size + '|').getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest.digest(text.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    public QrImage get(String key) {
+        return cache != null ? cache.getIfPresent(key) : null;
+    }
+
+    public void put(String key, QrImage image) {
+        if (cache != null) {
+            cache.put(key, image);
+        }
+    }
+
+    // The key is the text itself: a symbol is far costlier to encode than its key is to compare
+    public QRCode getSymbol(String text, ErrorCorrectionLevel errorCorrection) {
+        return symbols != null ? symbols.getIfPresent(errorCorrection.name() + '|' + text) : null;
+    }
+
+    public void putSymbol(String text, ErrorCorrectionLevel errorCorrection, QRCode code) {
+        if (symbols != null) {
+            symbols.put(errorCorrection.name() + '|' + text, code);
+        }
+    }
+
+    public ImageCacheStats getStats() {
+        ImageCacheStats.ImageCacheStatsBuilder builder = ImageCacheStats.builder().enabled(cache != null);
+        if (cache != null) {
+            // Weights are applied by Caffeine's async maintenance; drain it so the snapshot is current
+            cache.cleanUp();
+            CacheStats stats = cache.stats();
+            builder.entries(cache.estimatedSize())
+                    .sizeBytes(weightedSize(cache))
+                    .maxBytes(maxBytes)
+                    .hitCount(stats.hitCount())
+                    .missCount(stats.missCount())
+                    .hitRate(stats.hitRate())
+                    .evictionCount(stats.evictionCount())
+                    .evictionBytes(stats.evictionWeight());
+        }
+        if (symbols != null) {
+            symbols.cleanUp();
+            CacheStats stats = symbols.stats();
+            builder.symbolEntries(symbols.estimatedSize())
+                    .symbolSizeBytes(weightedSize(symbols))
+                    .symbolHitCount(stats.hitCount())
+                    .symbolMissCount(stats.missCount())
+                    .symbolHitRate(stats.hitRate());
+        }
+        return builder.build();
+    }
+
+    private static long weightedSize(Cache<?, ?> cache) {
+        return cache.policy().eviction()
+                .map(eviction -> eviction.weightedSize().orElse(0L))
+                .orElse(0L);
+    }
+}
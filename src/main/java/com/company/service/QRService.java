@@ -1,166 +1,440 @@
 package com.company.service;
 
-import com.company.interfaces.DatabaseCallback;
+import com.company.decode.UrlParser;
+import com.company.interfaces.QrRepository;
+import com.company.metrics.PipelineMetrics;
+import com.company.metrics.PipelineMetrics.Stage;
+import com.company.model.GeneratedQr;
 import com.company.model.ParsedUrl;
 import com.company.model.QrData;
+import com.company.model.QrSpec;
+import com.company.render.BilevelPngWriter;
+import com.company.render.ImageFormat;
+import com.company.render.PackedBitRaster;
+import com.company.render.QrImage;
+import com.company.render.QrRasterRenderer;
+import com.company.render.RenderLimiter;
+import com.company.render.RenderedBarcode;
+import com.company.render.RenderedQr;
+import com.company.render.SvgWriter;
+import com.company.render.Symbology;
 import com.google.zxing.*;
-import com.google.zxing.client.j2se.BufferedImageLuminanceSource;
 import com.google.zxing.common.BitMatrix;
-import com.google.zxing.common.HybridBinarizer;
 import com.google.zxing.qrcode.decoder.ErrorCorrectionLevel;
+import com.google.zxing.qrcode.encoder.Encoder;
+import com.google.zxing.qrcode.encoder.QRCode;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
-import javax.imageio.ImageIO;
-import java.awt.*;
 import java.awt.image.BufferedImage;
-import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.net.URL;
+import java.util.ArrayList;
 import java.util.Base64;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 @Service
 public class QRService {
 
     @Autowired
-    private FirebaseRealtimeDbService firebaseRealtimeDbService;
+    private QrRepository qrRepository;
+    @Autowired
+    private BilevelPngWriter bilevelPngWriter;
+    @Autowired
+    private QRVerificationService qrVerificationService;
+    @Autowired
+    private QRDecodeService qrDecodeService;
+    @Autowired
+    private QRImageCacheService qrImageCacheService;
+    @Autowired
+    private IdAllocationService idAllocationService;
+    @Autowired
+    private ExecutorService renderExecutor;
+    @Autowired
+    private RenderLimiter renderLimiter;
+    @Autowired
+    private PipelineMetrics metrics;
+    @Value("${QR_BATCH_MAX_SIZE:1000}")
+    private int maxBatchSize;
+    @Value("${QR_DB_TIMEOUT_MS:10000}")
+    private long dbTimeoutMillis;
     private static final int SIZE = 300;
+    private static final int QUIET_ZONE = 0;
     private static final ErrorCorrectionLevel DEFAULT_ERROR_CORRECTION = ErrorCorrectionLevel.M;
 
+    /**
+     * @param format      the barcode format, see {@link Symbology#parse(String)}; QR when null
+     * @param imageFormat png or svg, see {@link ImageFormat#parse(String)}; PNG when null
+     * @param durable     wait until the record is acknowledged by the database before returning; otherwise
+     *                    the write is queued and only a full write queue fails the request
+     */
     public byte[] generateQRCodeAndWriteToDB(String apiKey, String url, Integer size, String errorCorrection, boolean isScanned,
-                                             String startDate, String endDate, Integer type) throws Exception {
+                                             String startDate, String endDate, Integer type, String format,
+                                             String imageFormat, boolean durable) throws Exception {
+        Symbology symbology = Symbology.parse(format);
+        ImageFormat encoding = ImageFormat.parse(imageFormat);
+        // Reserve the record id atomically, it is also embedded in self managed codes
+        int id = awaitDb(idAllocationService.nextId(apiKey));
         if ((type == 2) || (type == 4)) {
-            // Fetch counter size from Firebase
-            CompletableFuture<Integer> futureSize = firebaseRealtimeDbService.getCounterListSize(apiKey);
-            int id = futureSize.get();
-            url = url + "?apiKey=" + apiKey + "&id=" + id + "&isScanned=" + isScanned + "&startDate="
-                    + startDate + "&endDate=" + endDate;
+            url = selfManagedUrl(url, apiKey, id, isScanned, startDate, endDate);
         }
 
         int qrSize = (size != null) ? size : SIZE;
         ErrorCorrectionLevel correctionLevel = getErrorCorrectionLevel(errorCorrection);
 
-        // Generate the QR code
-        byte[] qrImageBytes = generateQRCode(url, qrSize, correctionLevel);
-
-        // Convert the QR code to a base64-encoded string
-        String base64QrImage = Base64.getEncoder().encodeToString(qrImageBytes);
-
-        BufferedImage qrImage = ImageIO.read(new ByteArrayInputStream(qrImageBytes));
+        // Generate the code, or reuse an identical verified one
+        QrImage qrImage = renderCode(symbology, encoding, url, qrSize, correctionLevel);
+
+        // Create the QR data object
+        QrData qrData = QrData.builder()
+                .url(url)
+                .size(qrSize)
+                .errorCorrection(correctionLevel.toString())
+                .base64Image(qrImage.getBase64())
+                .isScanned(isScanned)
+                .startDate(startDate)
+                .endDate(endDate)
+                .type(type)
+                .format(storedFormat(symbology))
+                .imageFormat(storedImageFormat(encoding))
+                .build();
+        // Update Firebase with the generated QR data
+        CompletableFuture<Void> write = qrRepository.InsertData(apiKey, id, qrData);
+        if (durable || write.isCompletedExceptionally()) {
+            awaitDb(write);
+        }
+        return qrImage.getBytes();
+    }
 
-        if (isQRCodeReadable(qrImage)) {
-            // Create the QR data object
-            QrData qrData = QrData.builder()
-                    .url(url)
-                    .size(qrSize)
-                    .errorCorrection(correctionLevel.toString())
-                    .base64Image(base64QrImage)
-                    .isScanned(isScanned)
-                    .startDate(startDate)
-                    .endDate(endDate)
-                    .type(type)
-                    .build();
-            // Update Firebase with the generated QR data
-            firebaseRealtimeDbService.InsertData(apiKey, qrData);
-            return qrImageBytes;
-        } else throw new Exception("The QR is not readable");
+    // Wait up to QR_DB_TIMEOUT_MS; a full write queue and an expired deadline are rethrown as themselves
+    private <T> T awaitDb(CompletableFuture<T> future) throws Exception {
+        try {
+            return future.get(dbTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RejectedExecutionException rejected) {
+                throw rejected;
+            }
+            if (e.getCause() instanceof TimeoutException timeout) {
+                throw timeout;
+            }
+            throw e;
+        }
     }
 
-    public void generateQRCodeAndUpdateDatabase(String apiKey, String url, Integer size, String errorCorrection, Integer id, boolean isScanned,
-                                                String startDate, String endDate, Integer type, DatabaseCallback callback) throws Exception {
+    /**
+     * Update a record by patching only the fields that differ from the stored one. The image is
+     * regenerated only when the encoded text or a render parameter changed; for types 1 and 3 the
+     * dates and the scanned flag are not encoded, so changing them writes just those fields.
+     *
+     * @return A CompletableFuture that fails with a {@link java.util.NoSuchElementException} when the
+     * record does not exist
+     */
+    public CompletableFuture<Void> generateQRCodeAndUpdateDatabase(String apiKey, String url, Integer size, String errorCorrection, Integer id,
+                                                                   boolean isScanned, String startDate, String endDate, Integer type,
+                                                                   String format, String imageFormat) throws Exception {
+        Symbology symbology = Symbology.parse(format);
+        ImageFormat encoding = ImageFormat.parse(imageFormat);
         if ((type == 2) || (type == 4)) {
             // Include the counter size in the QR text or use it for logging/debugging
-            url = url + "?apiKey=" + apiKey + "&id=" + id + "&isScanned=" + isScanned + "&startDate="
-                    + startDate + "&endDate=" + endDate;
+            url = selfManagedUrl(url, apiKey, id, isScanned, startDate, endDate);
         }
         int qrSize = (size != null) ? size : SIZE;
         ErrorCorrectionLevel correctionLevel = getErrorCorrectionLevel(errorCorrection);
+        // Content the format can't carry is rejected before the record is read
+        String text = url;
+        symbology.validate(text);
+
+        QrData updated = QrData.builder()
+                .url(url)
+                .size(qrSize)
+                .errorCorrection(correctionLevel.toString())
+                .isScanned(isScanned)
+                .startDate(startDate)
+                .endDate(endDate)
+                .type(type)
+                .format(storedFormat(symbology))
+                .imageFormat(storedImageFormat(encoding))
+                .build();
+
+        return qrRepository.getRecord(apiKey, id).thenCompose(stored -> {
+            Map<String, Object> changes = changedFields(stored, updated);
+            if (!rendersDifferently(stored, updated)) {
+                // The stored image already shows this text at these render parameters
+                return changes.isEmpty() ? CompletableFuture.<Void>completedFuture(null) : qrRepository.patchData(apiKey, id, changes);
+            }
+            // Rendering is CPU-bound, keep it off the database callback thread
+            return CompletableFuture.supplyAsync(() -> {
+                try {
+                    return renderCode(symbology, encoding, text, qrSize, correctionLevel);
+                } catch (Exception e) {
+                    throw new CompletionException(e);
+                }
+            }, renderExecutor).thenCompose(qrImage -> {
+                changes.put(QrRepository.IMAGE_FIELD, qrImage.getBase64());
+                return qrRepository.patchData(apiKey, id, changes);
+            });
+        });
+    }
 
-        // Generate the QR code
-        byte[] qrImageBytes = generateQRCode(url, qrSize, correctionLevel);
+    // Fields of the update that differ from the stored record, keyed by stored field name
+    private static Map<String, Object> changedFields(QrData stored, QrData updated) {
+        Map<String, Object> changes = new HashMap<>();
+        putIfChanged(changes, "url", stored.getUrl(), updated.getUrl());
+        putIfChanged(changes, "size", stored.getSize(), updated.getSize());
+        putIfChanged(changes, "errorCorrection", stored.getErrorCorrection(), updated.getErrorCorrection());
+        putIfChanged(changes, "startDate", stored.getStartDate(), updated.getStartDate());
+        putIfChanged(changes, "endDate", stored.getEndDate(), updated.getEndDate());
+        putIfChanged(changes, "scanned", stored.isScanned(), updated.isScanned());
+        putIfChanged(changes, "type", stored.getType(), updated.getType());
+        putIfChanged(changes, "format", stored.getFormat(), updated.getFormat());
+        putIfChanged(changes, "imageFormat", stored.getImageFormat(), updated.getImageFormat());
+        return changes;
+    }
 
-        // Convert the QR code to a base64-encoded string
-        String base64QrImage = Base64.getEncoder().encodeToString(qrImageBytes);
+    private static void putIfChanged(Map<String, Object> changes, String field, Object stored, Object updated) {
+        if (!Objects.equals(stored, updated)) {
+            changes.put(field, updated);
+        }
+    }
 
-        BufferedImage qrImage = ImageIO.read(new ByteArrayInputStream(qrImageBytes));
+    private static boolean rendersDifferently(QrData stored, QrData updated) {
+        return !Objects.equals(stored.getUrl(), updated.getUrl())
+                || !Objects.equals(stored.getSize(), updated.getSize())
+                || !Objects.equals(stored.getErrorCorrection(), updated.getErrorCorrection())
+                || !Objects.equals(stored.getFormat(), updated.getFormat())
+                || !Objects.equals(stored.getImageFormat(), updated.getImageFormat());
+    }
 
-        if (isQRCodeReadable(qrImage)) {
-            // Create the QR data object
+    /**
+     * Generate a batch of QR codes for one client: reserve a contiguous id range in one transaction,
+     * render the codes in parallel on the render pool and persist all records with one multi-path update.
+     * Both database round-trips wait at most {@code QR_DB_TIMEOUT_MS}.
+     */
+    public List<GeneratedQr> generateBatch(String apiKey, List<QrSpec> specs) throws Exception {
+        if (specs == null || specs.isEmpty()) {
+            throw new IllegalArgumentException("The batch is empty");
+        }
+        if (specs.size() > maxBatchSize) {
+            throw new IllegalArgumentException("The batch exceeds the maximum size of " + maxBatchSize);
+        }
+        for (QrSpec spec : specs) {
+            if (spec.getUrl() == null || spec.getType() == null) {
+                throw new IllegalArgumentException("Every QR spec requires a url and a type");
+            }
+            Symbology.parse(spec.getFormat());
+            ImageFormat.parse(spec.getImageFormat());
+        }
+
+        int firstId = awaitDb(qrRepository.reserveIds(apiKey, specs.size()));
+
+        List<CompletableFuture<GeneratedQr>> futures = new ArrayList<>(specs.size());
+        for (int i = 0; i < specs.size(); i++) {
+            QrSpec spec = specs.get(i);
+            int id = firstId + i;
+            futures.add(CompletableFuture.supplyAsync(() -> generateForBatch(apiKey, id, spec), renderExecutor));
+        }
+        try {
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+        } catch (CompletionException e) {
+            // A payload its format can't carry fails the whole batch as a bad request
+            if (e.getCause() instanceof IllegalArgumentException) {
+                throw (IllegalArgumentException) e.getCause();
+            }
+            throw e;
+        }
+
+        List<GeneratedQr> generated = new ArrayList<>(specs.size());
+        Map<Integer, QrData> dataById = new LinkedHashMap<>();
+        for (CompletableFuture<GeneratedQr> future : futures) {
+            GeneratedQr generatedQr = future.join();
+            generated.add(generatedQr);
+            dataById.put(generatedQr.getId(), generatedQr.getQrData());
+        }
+
+        // Persist every record in one round-trip
+        awaitDb(qrRepository.insertBatch(apiKey, dataById));
+        return generated;
+    }
+
+    private GeneratedQr generateForBatch(String apiKey, int id, QrSpec spec) {
+        boolean isScanned = Boolean.TRUE.equals(spec.getIsScanned());
+        String url = spec.getUrl();
+        if ((spec.getType() == 2) || (spec.getType() == 4)) {
+            url = selfManagedUrl(url, apiKey, id, isScanned, spec.getStartDate(), spec.getEndDate());
+        }
+        int qrSize = (spec.getSize() != null) ? spec.getSize() : SIZE;
+        ErrorCorrectionLevel correctionLevel = getErrorCorrectionLevel(spec.getErrorCorrection());
+        Symbology symbology = Symbology.parse(spec.getFormat());
+        ImageFormat encoding = ImageFormat.parse(spec.getImageFormat());
+
+        try {
+            QrImage qrImage = renderCode(symbology, encoding, url, qrSize, correctionLevel);
             QrData qrData = QrData.builder()
                     .url(url)
                     .size(qrSize)
                     .errorCorrection(correctionLevel.toString())
-                    .base64Image(base64QrImage)
+                    .base64Image(qrImage.getBase64())
                     .isScanned(isScanned)
-                    .startDate(startDate)
-                    .endDate(endDate)
-                    .type(type)
+                    .startDate(spec.getStartDate())
+                    .endDate(spec.getEndDate())
+                    .type(spec.getType())
+                    .format(storedFormat(symbology))
+                    .imageFormat(storedImageFormat(encoding))
                     .build();
+            return new GeneratedQr(id, qrData, qrImage.getBytes());
+        } catch (IllegalArgumentException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new CompletionException("Failed to generate QR for id " + id + ": " + e.getMessage(), e);
+        }
+    }
 
-            // Update Firebase with the generated QR data
-            firebaseRealtimeDbService.updateData(apiKey, id, qrData, callback);
-        } else throw new Exception("The QR is not readable");
+    // Self managed codes (type 2/4) carry their identity in the encoded url
+    private static String selfManagedUrl(String url, String apiKey, int id, boolean isScanned,
+                                         String startDate, String endDate) {
+        return url + "?apiKey=" + apiKey + "&id=" + id + "&isScanned=" + isScanned + "&startDate="
+                + startDate + "&endDate=" + endDate;
     }
 
-    // Common method for generating QR codes
-    private byte[] generateQRCode(String text, int size, ErrorCorrectionLevel errorCorrection) throws Exception {
-        Map<EncodeHintType, Object> hints = new HashMap<>();
-        hints.put(EncodeHintType.ERROR_CORRECTION, errorCorrection);
-        hints.put(EncodeHintType.MARGIN, 0); // Optional: to set margin to 0
-
-        MultiFormatWriter multiFormatWriter = new MultiFormatWriter();
-        BitMatrix bitMatrix = multiFormatWriter.encode(text, BarcodeFormat.QR_CODE, size, size, hints);
-
-        BufferedImage bufferedImage = toBufferedImage(bitMatrix);
-        return toByteArray(bufferedImage);
-    }
-
-    // Convert BitMatrix to BufferedImage
-    private BufferedImage toBufferedImage(BitMatrix matrix) {
-        int width = matrix.getWidth();
-        int height = matrix.getHeight();
-        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
-        image.createGraphics();
-
-        Graphics2D graphics = (Graphics2D) image.getGraphics();
-        graphics.setColor(Color.WHITE); // Background color
-        graphics.fillRect(0, 0, width, height);
-        graphics.setColor(Color.BLACK); // Barcode color
-
-        // Draw the matrix
-        for (int x = 0; x < width; x++) {
-            for (int y = 0; y < height; y++) {
-                if (matrix.get(x, y)) {
-                    image.setRGB(x, y, Color.BLACK.getRGB());
-                } else {
-                    image.setRGB(x, y, Color.WHITE.getRGB());
+    // QR records keep their original shape, without a format field
+    private static String storedFormat(Symbology symbology) {
+        return symbology == Symbology.QR_CODE ? null : symbology.name();
+    }
+
+    private static String storedImageFormat(ImageFormat imageFormat) {
+        return imageFormat == ImageFormat.PNG ? null : imageFormat.getExtension();
+    }
+
+    // Serve identical render requests from the image cache, verifying only freshly generated codes
+    private QrImage renderCode(Symbology symbology, ImageFormat imageFormat, String text, int size,
+                               ErrorCorrectionLevel errorCorrection) throws Exception {
+        String content = symbology.validate(text);
+        // QR PNG keys are unchanged, other formats and encodings are keyed apart
+        String cacheKey = QRImageCacheService.key(content, size, errorCorrection,
+                (symbology == Symbology.QR_CODE ? "" : symbology.name() + ".") + imageFormat.getExtension());
+        QrImage cached = qrImageCacheService.get(cacheKey);
+        if (cached != null) {
+            return cached;
+        }
+
+        // CPU-bound work runs under the render limiter so virtual request threads can't oversubscribe the cores
+        QrImage qrImage = renderLimiter.call(() -> {
+            metrics.recordText(content);
+            byte[] image;
+            if (imageFormat == ImageFormat.SVG) {
+                image = generateSvg(symbology, content, size, errorCorrection);
+            } else if (symbology == Symbology.QR_CODE) {
+                RenderedQr renderedQr = generateQRCode(content, size, errorCorrection);
+                if (!verified(() -> qrVerificationService.verify(renderedQr))) {
+                    throw new Exception("The QR is not readable");
+                }
+                image = renderedQr.getPng();
+            } else {
+                RenderedBarcode barcode = generateBarcode(symbology, content, size, errorCorrection);
+                if (!verified(() -> qrVerificationService.verify(barcode))) {
+                    throw new Exception("The " + symbology + " barcode is not readable");
                 }
+                image = barcode.getPng();
+            }
+            metrics.recordImage(imageFormat == ImageFormat.SVG, image);
+            // Convert the image to a base64-encoded string
+            String base64 = metrics.time(Stage.BASE64, () -> Base64.getEncoder().encodeToString(image));
+            return new QrImage(image, base64);
+        });
+        qrImageCacheService.put(cacheKey, qrImage);
+        return qrImage;
+    }
+
+    // Common method for generating QR codes
+    private RenderedQr generateQRCode(String text, int size, ErrorCorrectionLevel errorCorrection) throws Exception {
+        // Encode once and scale the module matrix ourselves, keeping the symbol for verification
+        QRCode code = encodeQr(text, errorCorrection);
+        PackedBitRaster raster = metrics.time(Stage.RENDER, () -> QrRasterRenderer.pack(code.getMatrix(), size, size, QUIET_ZONE));
+        return new RenderedQr(text, code, QUIET_ZONE, raster, toByteArray(raster));
+    }
+
+    // Every size and encoding of the same text reuses one encoded symbol; only the scaling is redone
+    private QRCode encodeQr(String text, ErrorCorrectionLevel errorCorrection) throws WriterException {
+        QRCode code = qrImageCacheService.getSymbol(text, errorCorrection);
+        if (code == null) {
+            code = metrics.time(Stage.ENCODE, () -> Encoder.encode(text, errorCorrection));
+            qrImageCacheService.putSymbol(text, errorCorrection, code);
+        }
+        return code;
+    }
+
+    // Other formats share the scaling and PNG encoding of QR; linear ones are half as tall as they are wide
+    private RenderedBarcode generateBarcode(Symbology symbology, String text, int size, ErrorCorrectionLevel errorCorrection) throws IOException {
+        BitMatrix modules = metrics.time(Stage.ENCODE, () -> symbology.encode(text, errorCorrection));
+        int height = symbology.isLinear() ? size / 2 : size;
+        PackedBitRaster raster = metrics.time(Stage.RENDER,
+                () -> QrRasterRenderer.pack(modules, size, height, symbology.getQuietZone(), symbology.isLinear()));
+        int moduleScale = QrRasterRenderer.moduleScale(modules, size, height, symbology.getQuietZone(), symbology.isLinear());
+        return new RenderedBarcode(symbology, text, modules, moduleScale, raster, toByteArray(raster));
+    }
+
+    // Vector output is drawn from the module matrix with no raster; the symbol itself is verified instead
+    private byte[] generateSvg(Symbology symbology, String text, int size, ErrorCorrectionLevel errorCorrection) throws Exception {
+        ByteArrayOutputStream svg = new ByteArrayOutputStream(1024);
+        if (symbology == Symbology.QR_CODE) {
+            QRCode code = encodeQr(text, errorCorrection);
+            if (!verified(() -> qrVerificationService.verifySymbol(text, code))) {
+                throw new Exception("The QR is not readable");
+            }
+            metrics.time(Stage.SVG, () -> {
+                SvgWriter.write(code.getMatrix(), QUIET_ZONE, size, size, svg);
+                return null;
+            });
+        } else {
+            BitMatrix modules = metrics.time(Stage.ENCODE, () -> symbology.encode(text, errorCorrection));
+            if (!verified(() -> qrVerificationService.verifySymbol(symbology, text, modules))) {
+                throw new Exception("The " + symbology + " barcode is not readable");
             }
+            metrics.time(Stage.SVG, () -> {
+                SvgWriter.write(modules, symbology.getQuietZone(), symbology.isLinear(), size,
+                        symbology.isLinear() ? size / 2 : size, svg);
+                return null;
+            });
         }
+        return svg.toByteArray();
+    }
 
-        return image;
+    // A code that doesn't verify counts as a failed verification
+    private <E extends Exception> boolean verified(PipelineMetrics.StageCall<Boolean, E> verification) throws E {
+        boolean readable = metrics.time(Stage.VERIFY, verification);
+        if (!readable) {
+            metrics.failed(Stage.VERIFY);
+        }
+        return readable;
     }
 
     public boolean isQRCodeReadable(BufferedImage qrImage) throws NotFoundException {
-        LuminanceSource source = new BufferedImageLuminanceSource(qrImage);
-        BinaryBitmap bitmap = new BinaryBitmap(new HybridBinarizer(source));
-        Map<DecodeHintType, Object> hints = new HashMap<>();
-        hints.put(DecodeHintType.TRY_HARDER, Boolean.TRUE);
-
-        new MultiFormatReader().decode(bitmap, hints);
-        return true;  // Decoding successful
+        return qrVerificationService.isReadable(qrImage);
     }
 
-    // Convert BufferedImage to byte array
-    private byte[] toByteArray(BufferedImage image) throws IOException {
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        ImageIO.write(image, "PNG", baos);
+    // Encode the packed raster as a 1-bit PNG
+    private byte[] toByteArray(PackedBitRaster raster) throws IOException {
+        // Bilevel QR rasters deflate to a small fraction of the packed size
+        ByteArrayOutputStream baos = new ByteArrayOutputStream(Math.max(256, raster.getData().length / 8));
+        metrics.time(Stage.PNG, () -> {
+            bilevelPngWriter.write(raster, baos);
+            return null;
+        });
         return baos.toByteArray();
     }
 
@@ -184,40 +458,43 @@ public class QRService {
         }
     }
 
-    public static ParsedUrl readAndParseQRCode(MultipartFile file) throws Exception {
-        String qrData = readQRCodeFromStream(file.getInputStream());
-        return parseUrl(qrData);
+    /**
+     * Check that an uploaded image holds a code of the given formats, escalating from a fast
+     * downsampled pass only when needed.
+     */
+    public boolean isReadable(InputStream inputStream, Set<BarcodeFormat> formats) throws IOException, NotFoundException {
+        decode(inputStream, formats, false);
+        return true;
     }
 
-    public static String readQRCodeFromStream(InputStream inputStream) throws Exception {
-        BufferedImage bufferedImage = ImageIO.read(inputStream);
-
-        LuminanceSource source = new BufferedImageLuminanceSource(bufferedImage);
-        BinaryBitmap bitmap = new BinaryBitmap(new HybridBinarizer(source));
-
-        Result result = new MultiFormatReader().decode(bitmap);
-        return result.getText();
+    /**
+     * @param multiple parse every code in the image instead of the first one found
+     */
+    public List<ParsedUrl> readAndParseQRCodes(MultipartFile file, Set<BarcodeFormat> formats, boolean multiple) throws Exception {
+        List<ParsedUrl> parsedUrls = new ArrayList<>();
+        for (String qrData : readQRCodesFromStream(file.getInputStream(), formats, multiple)) {
+            parsedUrls.add(UrlParser.parse(qrData));
+        }
+        return parsedUrls;
     }
 
-    private static ParsedUrl parseUrl(String urlString) throws Exception {
-        URL url = new URL(urlString);
-
-        String protocol = url.getProtocol();
-        String host = url.getHost();
-        String path = url.getPath();
-        String query = url.getQuery();
-
-        Map<String, String> queryParams = new HashMap<>();
-        if (query != null) {
-            String[] pairs = query.split("&");
-            for (String pair : pairs) {
-                String[] keyValue = pair.split("=");
-                String key = keyValue[0];
-                String value = keyValue.length > 1 ? keyValue[1] : "";
-                queryParams.put(key, value);
-            }
+    public List<String> readQRCodesFromStream(InputStream inputStream, Set<BarcodeFormat> formats, boolean multiple) throws Exception {
+        List<String> texts = new ArrayList<>();
+        for (Result result : decode(inputStream, formats, multiple)) {
+            texts.add(result.getText());
         }
+        return texts;
+    }
 
-        return new ParsedUrl(urlString, protocol, host, path, queryParams);
+    private List<Result> decode(InputStream inputStream, Set<BarcodeFormat> formats, boolean multiple) throws IOException, NotFoundException {
+        long start = System.nanoTime();
+        boolean found = false;
+        try {
+            List<Result> results = qrDecodeService.decode(inputStream, formats, multiple);
+            found = true;
+            return results;
+        } finally {
+            metrics.record(Stage.DECODE, start, found);
+        }
     }
 }
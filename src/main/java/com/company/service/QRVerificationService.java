@@ -0,0 +1,303 @@
+package com.company.service;
+
+import com.company.model.VerificationMode;
+import com.company.render.PackedBitBinarizer;
+import com.company.render.PackedBitRaster;
+import com.company.render.QrRasterRenderer;
+import com.company.render.RenderedBarcode;
+import com.company.render.RenderedQr;
+import com.company.render.Symbology;
+import com.google.zxing.*;
+import com.google.zxing.aztec.AztecReader;
+import com.google.zxing.client.j2se.BufferedImageLuminanceSource;
+import com.google.zxing.common.BitArray;
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.common.HybridBinarizer;
+import com.google.zxing.datamatrix.DataMatrixReader;
+import com.google.zxing.oned.Code128Reader;
+import com.google.zxing.oned.EAN13Reader;
+import com.google.zxing.oned.OneDReader;
+import com.google.zxing.pdf417.PDF417Reader;
+import com.google.zxing.qrcode.decoder.Mode;
+import com.google.zxing.qrcode.decoder.Version;
+import com.google.zxing.qrcode.encoder.ByteMatrix;
+import com.google.zxing.qrcode.encoder.QRCode;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Decides whether a freshly generated QR image is fit to be stored and returned.
+ * The mode is chosen with QR_VERIFICATION_MODE; FULL keeps the original decode round-trip.
+ */
+@Log4j2
+@Service
+public class QRVerificationService {
+
+    private static final int FINDER_SIZE = 7;
+
+    @Value("${QR_VERIFICATION_MODE:FULL}")
+    private VerificationMode mode;
+
+    // Used by SAMPLED: one request in N gets a full decode
+    @Value("${QR_VERIFICATION_SAMPLE_RATE:100}")
+    private int sampleRate;
+
+    @Value("${QR_VERIFICATION_MIN_MODULE_PIXELS:1}")
+    private int minModulePixels;
+
+    @Value("${QR_VERIFICATION_MIN_QUIET_ZONE:0}")
+    private int minQuietZoneModules;
+
+    private final AtomicLong sampleCounter = new AtomicLong();
+
+    public VerificationMode getMode() {
+        return mode;
+    }
+
+    public boolean verify(RenderedQr renderedQr) throws IOException {
+        switch (mode) {
+            case NONE:
+                return true;
+            case STRUCTURAL:
+                return isStructurallyValid(renderedQr);
+            case SAMPLED:
+                if (!isStructurallyValid(renderedQr)) {
+                    return false;
+                }
+                return sampleCounter.incrementAndGet() % Math.max(1, sampleRate) != 0 || decodes(renderedQr);
+            case FULL:
+            default:
+                return decodes(renderedQr);
+        }
+    }
+
+    /**
+     * Verify a generated image of a non-QR format. Without a structural model for these formats, the
+     * STRUCTURAL and SAMPLED checks decode the packed raster in memory with the format's own reader:
+     * linear symbols from a single row, 2D symbols as a pure barcode. FULL reads the PNG back as for QR.
+     */
+    public boolean verify(RenderedBarcode barcode) throws IOException {
+        switch (mode) {
+            case NONE:
+                return true;
+            case STRUCTURAL:
+                return decodesRaster(barcode);
+            case SAMPLED:
+                if (!decodesRaster(barcode)) {
+                    return false;
+                }
+                return sampleCounter.incrementAndGet() % Math.max(1, sampleRate) != 0 || decodes(barcode);
+            case FULL:
+            default:
+                return decodes(barcode);
+        }
+    }
+
+    public boolean isReadable(BufferedImage qrImage) throws NotFoundException {
+        LuminanceSource source = new BufferedImageLuminanceSource(qrImage);
+        BinaryBitmap bitmap = new BinaryBitmap(new HybridBinarizer(source));
+        Map<DecodeHintType, Object> hints = new HashMap<>();
+        hints.put(DecodeHintType.TRY_HARDER, Boolean.TRUE);
+        // Generated codes are always QR, so the 1D and other 2D readers are skipped
+        hints.put(DecodeHintType.POSSIBLE_FORMATS, QRDecodeService.QR_ONLY);
+
+        new MultiFormatReader().decode(bitmap, hints);
+        return true;  // Decoding successful
+    }
+
+    // Read the PNG back and decode it, as a scanner would
+    private boolean decodes(RenderedQr renderedQr) throws IOException {
+        BufferedImage qrImage = ImageIO.read(new ByteArrayInputStream(renderedQr.getPng()));
+        try {
+            return isReadable(qrImage);
+        } catch (NotFoundException e) {
+            log.warn("Generated QR could not be decoded: {}", renderedQr.getText());
+            return false;
+        }
+    }
+
+    // Read the PNG back and decode it with the readers of its format only
+    private boolean decodes(RenderedBarcode barcode) throws IOException {
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(barcode.getPng()));
+        Map<DecodeHintType, Object> hints = new EnumMap<>(DecodeHintType.class);
+        hints.put(DecodeHintType.TRY_HARDER, Boolean.TRUE);
+        hints.put(DecodeHintType.POSSIBLE_FORMATS, Set.of(barcode.getSymbology().getFormat()));
+        try {
+            Result result = new MultiFormatReader().decode(new BinaryBitmap(new HybridBinarizer(
+                    new BufferedImageLuminanceSource(image))), hints);
+            return matches(barcode, result);
+        } catch (NotFoundException e) {
+            log.warn("Generated {} could not be decoded: {}", barcode.getSymbology(), barcode.getText());
+            return false;
+        }
+    }
+
+    /**
+     * Verify a QR symbol written as vectors. There is no raster whose scale could be checked or
+     * decoded, so every mode but NONE runs the structural checks of the symbol itself.
+     */
+    public boolean verifySymbol(String text, QRCode code) {
+        return mode == VerificationMode.NONE || isSymbolValid(text, code);
+    }
+
+    // Other formats written as vectors are decoded in memory from a raster of two pixels per module
+    public boolean verifySymbol(Symbology symbology, String text, BitMatrix modules) {
+        if (mode == VerificationMode.NONE) {
+            return true;
+        }
+        int quietZone = symbology.getQuietZone();
+        int width = (modules.getWidth() + quietZone * 2) * 2;
+        int height = symbology.isLinear() ? 2 : (modules.getHeight() + quietZone * 2) * 2;
+        PackedBitRaster raster = QrRasterRenderer.pack(modules, width, height, quietZone, symbology.isLinear());
+        return decodesInMemory(new RenderedBarcode(symbology, text, modules, 2, raster, null));
+    }
+
+    boolean decodesRaster(RenderedBarcode barcode) {
+        if (barcode.getModuleScale() < minModulePixels) {
+            return false;
+        }
+        return decodesInMemory(barcode);
+    }
+
+    private boolean decodesInMemory(RenderedBarcode barcode) {
+        PackedBitRaster raster = barcode.getRaster();
+        try {
+            Result result;
+            if (barcode.getSymbology().isLinear()) {
+                // Every row of a linear symbol is the same
+                int y = raster.getHeight() / 2;
+                BitArray row = new PackedBitBinarizer(raster).getBlackRow(y, null);
+                OneDReader reader = barcode.getSymbology() == Symbology.EAN_13
+                        ? new EAN13Reader() : new Code128Reader();
+                result = reader.decodeRow(y, row, null);
+            } else {
+                Reader reader = switch (barcode.getSymbology()) {
+                    case DATA_MATRIX -> new DataMatrixReader();
+                    case PDF_417 -> new PDF417Reader();
+                    case AZTEC -> new AztecReader();
+                    default -> new MultiFormatReader();
+                };
+                Map<DecodeHintType, Object> hints = new EnumMap<>(DecodeHintType.class);
+                hints.put(DecodeHintType.PURE_BARCODE, Boolean.TRUE);
+                hints.put(DecodeHintType.POSSIBLE_FORMATS, Set.of(barcode.getSymbology().getFormat()));
+                result = reader.decode(new BinaryBitmap(new PackedBitBinarizer(raster)), hints);
+            }
+            return matches(barcode, result);
+        } catch (ReaderException e) {
+            log.warn("Generated {} could not be decoded: {}", barcode.getSymbology(), barcode.getText());
+            return false;
+        }
+    }
+
+    private static boolean matches(RenderedBarcode barcode, Result result) {
+        if (!barcode.getText().equals(result.getText())) {
+            log.warn("Generated {} decodes to different content: {}", barcode.getSymbology(), barcode.getText());
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Check the encoded symbol instead of decoding pixels: a valid version whose data capacity
+     * fits the payload, a fully populated module matrix with intact finder patterns, and enough
+     * pixels per module and quiet zone in the raster it was scaled into.
+     */
+    public boolean isStructurallyValid(RenderedQr renderedQr) {
+        QRCode code = renderedQr.getCode();
+        if (!isSymbolValid(renderedQr.getText(), code)) {
+            return false;
+        }
+
+        PackedBitRaster raster = renderedQr.getRaster();
+        int quietZone = renderedQr.getQuietZone();
+        int scale = QrRasterRenderer.moduleScale(code.getMatrix(), raster.getWidth(), raster.getHeight(), quietZone);
+        return scale >= minModulePixels && quietZone >= minQuietZoneModules;
+    }
+
+    private static boolean isSymbolValid(String text, QRCode code) {
+        Version version = code.getVersion();
+        ByteMatrix matrix = code.getMatrix();
+        if (version == null || matrix == null || code.getECLevel() == null
+                || !QRCode.isValidMaskPattern(code.getMaskPattern())) {
+            return false;
+        }
+        int dimension = version.getDimensionForVersion();
+        if (matrix.getWidth() != dimension || matrix.getHeight() != dimension) {
+            return false;
+        }
+        if (!fitsCapacity(text, code)) {
+            return false;
+        }
+        return isFullyPopulated(matrix) && hasFinderPatterns(matrix);
+    }
+
+    private static boolean fitsCapacity(String text, QRCode code) {
+        Version version = code.getVersion();
+        int dataBits = (version.getTotalCodewords()
+                - version.getECBlocksForLevel(code.getECLevel()).getTotalECCodewords()) * 8;
+        int required = requiredBits(text, code.getMode(), version);
+        // Unknown encodings (Kanji, non Latin-1 byte mode) are trusted to the encoder
+        return required < 0 || required <= dataBits;
+    }
+
+    private static int requiredBits(String text, Mode mode, Version version) {
+        int header = 4 + mode.getCharacterCountBits(version);
+        int length = text.length();
+        switch (mode) {
+            case NUMERIC:
+                int remainder = length % 3;
+                return header + (length / 3) * 10 + (remainder == 1 ? 4 : remainder == 2 ? 7 : 0);
+            case ALPHANUMERIC:
+                return header + (length / 2) * 11 + (length % 2) * 6;
+            case BYTE:
+                if (!StandardCharsets.ISO_8859_1.newEncoder().canEncode(text)) {
+                    return -1;
+                }
+                return header + length * 8;
+            default:
+                return -1;
+        }
+    }
+
+    private static boolean isFullyPopulated(ByteMatrix matrix) {
+        for (byte[] row : matrix.getArray()) {
+            for (byte cell : row) {
+                if (cell != 0 && cell != 1) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static boolean hasFinderPatterns(ByteMatrix matrix) {
+        int far = matrix.getWidth() - FINDER_SIZE;
+        return isFinderPattern(matrix, 0, 0) && isFinderPattern(matrix, far, 0) && isFinderPattern(matrix, 0, far);
+    }
+
+    // 7x7 finder: dark outer ring, light ring, dark 3x3 center
+    private static boolean isFinderPattern(ByteMatrix matrix, int left, int top) {
+        for (int dy = 0; dy < FINDER_SIZE; dy++) {
+            for (int dx = 0; dx < FINDER_SIZE; dx++) {
+                int ring = Math.max(Math.abs(dx - 3), Math.abs(dy - 3));
+                int expected = ring == 2 ? 0 : 1;
+                if (matrix.get(left + dx, top + dy) != expected) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,155 @@
+package com.company.service;
+
+import com.company.interfaces.QrRepository;
+import com.company.model.ScanStats;
+import com.company.model.ScanTally;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-memory first stage of scan tracking. Scans are tallied per code (count, first and last scan) and
+ * written every {@code QR_SCAN_FLUSH_MS} with one {@link QrRepository#recordScans} call per client, so
+ * a code scanned thousands of times a second costs one record merge per flush. The tallies of a failed
+ * flush are dropped and counted rather than retried, so a scan is counted at most once.
+ * <p>
+ * About {@code QR_SCAN_MAX_PENDING_CODES} codes wait between flushes; scans of further codes are
+ * rejected with a {@link RejectedExecutionException} until the next flush.
+ */
+@Log4j2
+@Service
+public class ScanAggregationService {
+
+    @Value("${QR_SCAN_FLUSH_MS:1000}")
+    private long flushMillis;
+
+    @Value("${QR_SCAN_MAX_PENDING_CODES:100000}")
+    private int maxPendingCodes;
+
+    @Autowired
+    private QrRepository qrRepository;
+
+    // Tallies are only touched inside compute and remove, under the lock of their bin
+    private final Map<String, Map<Integer, ScanTally>> pending = new ConcurrentHashMap<>();
+    private final AtomicLong pendingCodes = new AtomicLong();
+    private final AtomicLong received = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong flushes = new AtomicLong();
+    private final AtomicLong codesWritten = new AtomicLong();
+    private final AtomicLong codesFailed = new AtomicLong();
+    private ScheduledExecutorService flushScheduler;
+
+    @PostConstruct
+    public void startFlushing() {
+        flushScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "qr-scan-flush");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flushScheduler.scheduleWithFixedDelay(this::flush, flushMillis, flushMillis, TimeUnit.MILLISECONDS);
+    }
+
+    // Write what is still pending
+    @PreDestroy
+    public void stopFlushing() {
+        flushScheduler.shutdown();
+        flush();
+    }
+
+    /**
+     * Count one scan of a code.
+     *
+     * @param scannedAt epoch milliseconds of the scan
+     * @throws IllegalArgumentException   for a negative id
+     * @throws RejectedExecutionException when too many codes are waiting for the next flush
+     */
+    public void recordScan(String apiKey, int id, long scannedAt) {
+        if (id < 0) {
+            throw new IllegalArgumentException("Invalid id: " + id);
+        }
+        Map<Integer, ScanTally> tallies = pending.computeIfAbsent(apiKey, key -> new ConcurrentHashMap<>());
+        // Checked outside the lock, so concurrent first scans may overshoot the bound slightly
+        if (pendingCodes.get() >= maxPendingCodes && !tallies.containsKey(id)) {
+            rejected.incrementAndGet();
+            throw new RejectedExecutionException("Too many codes waiting for the next scan flush");
+        }
+        tallies.compute(id, (key, tally) -> {
+            if (tally == null) {
+                pendingCodes.incrementAndGet();
+                return new ScanTally(1, scannedAt, scannedAt);
+            }
+            tally.setCount(tally.getCount() + 1);
+            tally.setFirstScanAt(Math.min(tally.getFirstScanAt(), scannedAt));
+            tally.setLastScanAt(Math.max(tally.getLastScanAt(), scannedAt));
+            return tally;
+        });
+        received.incrementAndGet();
+    }
+
+    /**
+     * Hand every pending tally to the repository. Writes complete asynchronously.
+     */
+    public void flush() {
+        try {
+            pending.forEach(this::flushClient);
+            flushes.incrementAndGet();
+        } catch (RuntimeException e) {
+            // Keep the scheduled flush running
+            log.error("Scan flush failed", e);
+        }
+    }
+
+    private void flushClient(String apiKey, Map<Integer, ScanTally> tallies) {
+        Map<Integer, ScanTally> batch = new HashMap<>();
+        for (Integer id : tallies.keySet()) {
+            // Scans arriving after the removal start a new tally for the next flush
+            ScanTally tally = tallies.remove(id);
+            if (tally != null) {
+                batch.put(id, tally);
+            }
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+        pendingCodes.addAndGet(-batch.size());
+        CompletableFuture<Void> write;
+        try {
+            write = qrRepository.recordScans(apiKey, batch);
+        } catch (RuntimeException e) {
+            write = CompletableFuture.failedFuture(e);
+        }
+        write.whenComplete((ignored, e) -> {
+            if (e == null) {
+                codesWritten.addAndGet(batch.size());
+            } else {
+                codesFailed.addAndGet(batch.size());
+                log.error("Writing scans of {} codes failed", batch.size(), e);
+            }
+        });
+    }
+
+    public ScanStats getStats() {
+        return ScanStats.builder()
+                .received(received.get())
+                .rejected(rejected.get())
+                .pendingCodes(pendingCodes.get())
+                .flushes(flushes.get())
+                .codesWritten(codesWritten.get())
+                .codesFailed(codesFailed.get())
+                .flushMillis(flushMillis)
+                .build();
+    }
+}
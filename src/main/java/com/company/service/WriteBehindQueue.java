@@ -0,0 +1,225 @@
+package com.company.service;
+
+import lombok.extern.log4j.Log4j2;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Coalesces multi-path updates per client into one write per flush window. Writes of a client are
+ * merged into a pending batch (a later value for a path replaces the earlier one, and clearing a node
+ * drops pending writes below it) and sent when the window elapses or the batch is full. Batches of a
+ * client are sent one after the other so their order is kept; failed batches are retried with
+ * exponential backoff and full jitter before their callers are failed.
+ * <p>
+ * The number of queued writes is bounded: once full, {@link #submit} rejects the write right away
+ * with a {@link RejectedExecutionException}. It never waits for room, since callers may run on the
+ * database callback thread that has to deliver the completions which free it.
+ */
+@Log4j2
+public class WriteBehindQueue {
+
+    private final Function<Map<String, Object>, CompletableFuture<Void>> sink;
+    private final ScheduledExecutorService scheduler;
+    private final Semaphore capacity;
+    private final int batchSize;
+    private final long flushMillis;
+    private final int maxRetries;
+    private final long retryBaseMillis;
+    private final Map<String, ClientQueue> queues = new ConcurrentHashMap<>();
+
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong retried = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+
+    public WriteBehindQueue(Function<Map<String, Object>, CompletableFuture<Void>> sink, ScheduledExecutorService scheduler,
+                            int capacity, int batchSize, long flushMillis, int maxRetries, long retryBaseMillis) {
+        this.sink = sink;
+        this.scheduler = scheduler;
+        this.capacity = new Semaphore(capacity);
+        this.batchSize = batchSize;
+        this.flushMillis = flushMillis;
+        this.maxRetries = maxRetries;
+        this.retryBaseMillis = retryBaseMillis;
+    }
+
+    /**
+     * Queue a multi-path update of one client.
+     *
+     * @return A CompletableFuture that completes once the batch holding the update is acknowledged,
+     * or fails when the queue is full or the batch failed after every retry.
+     */
+    public CompletableFuture<Void> submit(String apiKey, Map<String, Object> updates) {
+        if (!capacity.tryAcquire()) {
+            rejected.incrementAndGet();
+            return CompletableFuture.failedFuture(new RejectedExecutionException("Write queue is full"));
+        }
+        submitted.incrementAndGet();
+        return queues.computeIfAbsent(apiKey, key -> new ClientQueue()).add(updates);
+    }
+
+    /**
+     * Send every pending batch now.
+     */
+    public void flush() {
+        queues.values().forEach(ClientQueue::flush);
+    }
+
+    public long getPending() {
+        return submitted.get() - sent.get() - failed.get();
+    }
+
+    public long getSubmitted() {
+        return submitted.get();
+    }
+
+    public long getSent() {
+        return sent.get();
+    }
+
+    public long getBatchesSent() {
+        return batches.get();
+    }
+
+    public long getRetries() {
+        return retried.get();
+    }
+
+    public long getFailed() {
+        return failed.get();
+    }
+
+    public long getRejected() {
+        return rejected.get();
+    }
+
+    // Updates merged by path; TreeMap keeps the children of a path contiguous
+    private static class Batch {
+        private final NavigableMap<String, Object> updates = new TreeMap<>();
+        private final List<CompletableFuture<Void>> callers = new ArrayList<>();
+
+        // A write below a path this batch already sets can't go in the same multi-path update
+        private boolean conflicts(Map<String, Object> newUpdates) {
+            for (String path : newUpdates.keySet()) {
+                for (int slash = path.indexOf('/'); slash > 0; slash = path.indexOf('/', slash + 1)) {
+                    if (updates.containsKey(path.substring(0, slash))) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+
+        private void merge(Map<String, Object> newUpdates) {
+            newUpdates.forEach((path, value) -> {
+                // '0' sorts right after '/', so this range is every path below this one
+                updates.subMap(path + "/", path + "0").clear();
+                updates.put(path, value);
+            });
+        }
+    }
+
+    private class ClientQueue {
+        private final Deque<Batch> ready = new ArrayDeque<>();
+        private Batch open;
+        private ScheduledFuture<?> scheduledFlush;
+        private CompletableFuture<Void> inFlight = CompletableFuture.completedFuture(null);
+
+        private synchronized CompletableFuture<Void> add(Map<String, Object> updates) {
+            if (open != null && open.conflicts(updates)) {
+                ready.add(open);
+                open = null;
+            }
+            if (open == null) {
+                open = new Batch();
+            }
+            CompletableFuture<Void> caller = new CompletableFuture<>();
+            open.merge(updates);
+            open.callers.add(caller);
+
+            if (open.callers.size() >= batchSize || !ready.isEmpty()) {
+                flush();
+            } else if (scheduledFlush == null) {
+                scheduledFlush = scheduler.schedule(this::flush, flushMillis, TimeUnit.MILLISECONDS);
+            }
+            return caller;
+        }
+
+        private synchronized void flush() {
+            if (scheduledFlush != null) {
+                scheduledFlush.cancel(false);
+                scheduledFlush = null;
+            }
+            if (open != null) {
+                ready.add(open);
+                open = null;
+            }
+            while (!ready.isEmpty()) {
+                Batch batch = ready.poll();
+                inFlight = inFlight.thenCompose(ignored -> send(batch, 0));
+            }
+        }
+
+        // Completes normally once the batch is settled either way, so later batches still go out
+        private CompletableFuture<Void> send(Batch batch, int attempt) {
+            CompletableFuture<Void> settled = new CompletableFuture<>();
+            CompletableFuture<Void> write;
+            try {
+                write = sink.apply(batch.updates);
+            } catch (RuntimeException e) {
+                write = CompletableFuture.failedFuture(e);
+            }
+            write.whenComplete((ignored, e) -> {
+                if (e == null) {
+                    sent.addAndGet(batch.callers.size());
+                    batches.incrementAndGet();
+                    capacity.release(batch.callers.size());
+                    batch.callers.forEach(caller -> caller.complete(null));
+                    settled.complete(null);
+                } else if (attempt < maxRetries && retry(batch, attempt, e, settled)) {
+                    retried.incrementAndGet();
+                } else {
+                    log.error("Write of {} updates failed after {} retries", batch.callers.size(), attempt, e);
+                    failed.addAndGet(batch.callers.size());
+                    capacity.release(batch.callers.size());
+                    batch.callers.forEach(caller -> caller.completeExceptionally(e));
+                    settled.complete(null);
+                }
+            });
+            return settled;
+        }
+
+        // False when the scheduler is shut down, so the batch is failed instead of left unsettled
+        private boolean retry(Batch batch, int attempt, Throwable e, CompletableFuture<Void> settled) {
+            // Full jitter: a random delay up to the exponential backoff
+            long backoff = retryBaseMillis << attempt;
+            long delay = ThreadLocalRandom.current().nextLong(backoff + 1);
+            try {
+                scheduler.schedule(() -> send(batch, attempt + 1).whenComplete((v, t) -> settled.complete(null)),
+                        delay, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException rejectedRetry) {
+                return false;
+            }
+            log.warn("Write of {} updates failed, retrying in {} ms", batch.callers.size(), delay, e);
+            return true;
+        }
+    }
+}
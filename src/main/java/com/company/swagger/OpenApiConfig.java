@@ -49,6 +49,10 @@ public class OpenApiConfig {
                                         new MediaType().schema(new Schema<>().$ref("#/components/schemas/ServiceResult")))))
                         .addResponses("401", new ApiResponse()
                                 .description("Unauthorized - API key required"))
+                        .addResponses("429", new ApiResponse()
+                                .description("Too Many Requests - rate limit of the API key exceeded; see the Retry-After header")
+                                .content(new Content().addMediaType("application/json",
+                                        new MediaType().schema(new Schema<>().$ref("#/components/schemas/ServiceResult")))))
                         .addResponses("500", new ApiResponse()
                                 .description("Internal Server Error")
                                 .content(new Content().addMediaType("application/json",
@@ -72,7 +76,27 @@ public class OpenApiConfig {
                         .addPathItem("/api/firebase/getDataByClient",
                                 new PathItem().get(new Operation()
                                         .summary("Retrieve data by client API key")
-                                        .description("Fetches stored data for a specific client using an API key.")
+                                        .description("Fetches stored data for a specific client using an API key. " +
+                                                "Images are stored separately and only returned when base64Image is requested in fields.")
+                                        .addParametersItem(new Parameter()
+                                                .name("fields")
+                                                .description("Comma-separated record fields to return: url, size, errorCorrection, " +
+                                                        "startDate, endDate, scanned, type, format, imageFormat, scanCount, firstScanAt, lastScanAt, base64Image. Defaults to every field except base64Image")
+                                                .required(false)
+                                                .example("url,type,scanned")
+                                                .in("query"))
+                                        .addParametersItem(new Parameter()
+                                                .name("limit")
+                                                .description("Page size, at most 1000. When set, records are returned in id order " +
+                                                        "and the X-Next-Cursor response header holds the cursor of the next page")
+                                                .required(false)
+                                                .example("100")
+                                                .in("query"))
+                                        .addParametersItem(new Parameter()
+                                                .name("cursor")
+                                                .description("Cursor of the page to fetch, from the X-Next-Cursor header of the previous page")
+                                                .required(false)
+                                                .in("query"))
                                         .addParametersItem(new Parameter()
                                                 .name("x-api-key")
                                                 .description("API Key for client authentication")
@@ -87,6 +111,44 @@ public class OpenApiConfig {
                                                         .content(new Content().addMediaType("application/json",
                                                                 new MediaType().schema(new Schema<>().$ref("#/components/schemas/ServiceResult")))))
                                         )))
+                        .addPathItem("/api/firebase/streamDataByClient",
+                                new PathItem().get(new Operation()
+                                        .summary("Stream data by client API key")
+                                        .description("Streams every record of the client as newline-delimited JSON (application/x-ndjson), " +
+                                                "one object with an id field per line, without building the whole list in memory.")
+                                        .addParametersItem(new Parameter()
+                                                .name("fields")
+                                                .description("Comma-separated record fields to return, as in getDataByClient")
+                                                .required(false)
+                                                .example("url,type,scanned")
+                                                .in("query"))
+                                        .addParametersItem(new Parameter()
+                                                .name("x-api-key")
+                                                .description("API Key for client authentication")
+                                                .required(true)
+                                                .in("header"))
+                                        .responses(new ApiResponses()
+                                                .addApiResponse("200", new ApiResponse().description("Records streamed successfully"))
+                                                .addApiResponse("401", new ApiResponse().description("Unauthorized - API key required"))
+                                        )))
+                        .addPathItem("/api/firebase/migrateImages",
+                                new PathItem().post(new Operation()
+                                        .summary("Migrate inline QR images")
+                                        .description("Moves images stored inside QR records to the separate image node. Requires an admin API key.")
+                                        .addParametersItem(new Parameter()
+                                                .name("x-api-key")
+                                                .description("Admin API Key")
+                                                .required(true)
+                                                .in("header"))
+                                        .responses(new ApiResponses()
+                                                .addApiResponse("200", new ApiResponse().description("Images migrated successfully")
+                                                        .content(new Content().addMediaType("application/json",
+                                                                new MediaType().schema(new Schema<>().$ref("#/components/schemas/ServiceResult")))))
+                                                .addApiResponse("401", new ApiResponse().description("Unauthorized - Admin API key required"))
+                                                .addApiResponse("500", new ApiResponse().description("Error migrating images")
+                                                        .content(new Content().addMediaType("application/json",
+                                                                new MediaType().schema(new Schema<>().$ref("#/components/schemas/ServiceResult")))))
+                                        )))
                         .addPathItem("/api/firebase/deleteQrById",
                                 new PathItem().delete(new Operation()
                                         .summary("Delete QR By id")
@@ -112,6 +174,12 @@ public class OpenApiConfig {
                                                 .addApiResponse("404", new ApiResponse().description("Not Found - Id not found for the API key")
                                                         .content(new Content().addMediaType("application/json",
                                                                 new MediaType().schema(new Schema<>().$ref("#/components/schemas/ServiceResult")))))
+                                                .addApiResponse("504", new ApiResponse().description("Timed out waiting for the database")
+                                                        .content(new Content().addMediaType("application/json",
+                                                                new MediaType().schema(new Schema<>().$ref("#/components/schemas/ServiceResult")))))
+                                                .addApiResponse("503", new ApiResponse().description("Write queue is full, retry later")
+                                                        .content(new Content().addMediaType("application/json",
+                                                                new MediaType().schema(new Schema<>().$ref("#/components/schemas/ServiceResult")))))
                                                 .addApiResponse("500", new ApiResponse().description("Error deleting data")
                                                         .content(new Content().addMediaType("application/json",
                                                                 new MediaType().schema(new Schema<>().$ref("#/components/schemas/ServiceResult")))))
@@ -132,6 +200,9 @@ public class OpenApiConfig {
                                                 .addApiResponse("401", new ApiResponse().description("Unauthorized - API key required")
                                                         .content(new Content().addMediaType("application/json",
                                                                 new MediaType().schema(new Schema<>().$ref("#/components/schemas/ServiceResult")))))
+                                                .addApiResponse("503", new ApiResponse().description("Write queue is full, retry later")
+                                                        .content(new Content().addMediaType("application/json",
+                                                                new MediaType().schema(new Schema<>().$ref("#/components/schemas/ServiceResult")))))
                                                 .addApiResponse("500", new ApiResponse().description("Error deleting data")
                                                         .content(new Content().addMediaType("application/json",
                                                                 new MediaType().schema(new Schema<>().$ref("#/components/schemas/ServiceResult")))))
@@ -184,6 +255,27 @@ public class OpenApiConfig {
                                                 .required(false)
                                                 .example("20260101")
                                                 .in("query"))
+                                        .addParametersItem(new Parameter()
+                                                .name("format")
+                                                .description("Barcode format: QR_CODE (default), CODE_128, EAN_13, DATA_MATRIX, " +
+                                                        "PDF_417 or AZTEC. Content the format can't carry is rejected with 400")
+                                                .required(false)
+                                                .example("CODE_128")
+                                                .in("query"))
+                                        .addParametersItem(new Parameter()
+                                                .name("imageFormat")
+                                                .description("Image encoding: png (default) or svg, a resolution-independent " +
+                                                        "vector drawn from the module matrix")
+                                                .required(false)
+                                                .example("svg")
+                                                .in("query"))
+                                        .addParametersItem(new Parameter()
+                                                .name("durable")
+                                                .description("Respond only after the record is stored. By default the record " +
+                                                        "is queued and written within a few milliseconds.")
+                                                .required(false)
+                                                .example("false")
+                                                .in("query"))
                                         .addParametersItem(new Parameter()
                                                 .name("x-api-key")
                                                 .description("API Key for authentication")
@@ -191,12 +283,43 @@ public class OpenApiConfig {
                                                 .in("header"))
                                         .responses(new ApiResponses()
                                                 .addApiResponse("200", new ApiResponse().description("QR code generated successfully"))
+                                                .addApiResponse("400", new ApiResponse().description("Unknown format or image format, or content the format can't carry"))
+                                                .addApiResponse("503", new ApiResponse().description("Write queue is full, retry later"))
+                                                .addApiResponse("504", new ApiResponse().description("Timed out waiting for the database (durable only)"))
                                                 .addApiResponse("500", new ApiResponse().description("Error generating QR code"))
                                         )))
+                        .addPathItem("/api/barcodes/generateBatch",
+                                new PathItem().post(new Operation()
+                                        .summary("Generate a batch of QR codes")
+                                        .description("Generates many QR codes in one request. Ids are reserved as one contiguous range, " +
+                                                "the codes are rendered in parallel and all records are stored with a single write. " +
+                                                "Returns a ZIP archive with one <id>.png (or <id>.svg) entry per code, in request order.")
+                                        .requestBody(new RequestBody()
+                                                .description("List of QR specs with the same fields as generateQRCode: " +
+                                                        "url, type, size, errorCorrection, isScanned, startDate, endDate, format, imageFormat")
+                                                .required(true)
+                                                .content(new Content().addMediaType("application/json",
+                                                        new MediaType().schema(new Schema<>().type("array")))))
+                                        .addParametersItem(new Parameter()
+                                                .name("x-api-key")
+                                                .description("API Key for authentication")
+                                                .required(true)
+                                                .in("header"))
+                                        .responses(new ApiResponses()
+                                                .addApiResponse("200", new ApiResponse().description("ZIP archive of the generated QR codes"))
+                                                .addApiResponse("400", new ApiResponse().description("Empty, oversized or invalid batch")
+                                                        .content(new Content().addMediaType("application/json",
+                                                                new MediaType().schema(new Schema<>().$ref("#/components/schemas/ServiceResult")))))
+                                                .addApiResponse("500", new ApiResponse().description("Error generating QR codes")
+                                                        .content(new Content().addMediaType("application/json",
+                                                                new MediaType().schema(new Schema<>().$ref("#/components/schemas/ServiceResult")))))
+                                        )))
                         .addPathItem("/api/barcodes/updateQrById",
                                 new PathItem().put(new Operation()
                                         .summary("Update QR By id")
-                                        .description("Updates the data that stored in the specific id for the specific client")
+                                        .description("Updates the data that stored in the specific id for the specific client. Only the fields " +
+                                                "that differ from the stored record are written, and the image is regenerated only when the " +
+                                                "encoded text, size, error correction, format or image format changed.")
                                         .addParametersItem(new Parameter()
                                                 .name("id")
                                                 .description("The id of the barcode ")
@@ -247,6 +370,18 @@ public class OpenApiConfig {
                                                 .required(false)
                                                 .example("20260101")
                                                 .in("query"))
+                                        .addParametersItem(new Parameter()
+                                                .name("format")
+                                                .description("Barcode format, see generateQRCode; QR_CODE when omitted")
+                                                .required(false)
+                                                .example("QR_CODE")
+                                                .in("query"))
+                                        .addParametersItem(new Parameter()
+                                                .name("imageFormat")
+                                                .description("Image encoding, see generateQRCode; png when omitted")
+                                                .required(false)
+                                                .example("png")
+                                                .in("query"))
                                         .addParametersItem(new Parameter()
                                                 .name("x-api-key")
                                                 .description("API Key for client authentication")
@@ -262,14 +397,74 @@ public class OpenApiConfig {
                                                 .addApiResponse("404", new ApiResponse().description("Not Found - Id not found for the API key")
                                                         .content(new Content().addMediaType("application/json",
                                                                 new MediaType().schema(new Schema<>().$ref("#/components/schemas/ServiceResult")))))
+                                                .addApiResponse("504", new ApiResponse().description("Timed out waiting for the database")
+                                                        .content(new Content().addMediaType("application/json",
+                                                                new MediaType().schema(new Schema<>().$ref("#/components/schemas/ServiceResult")))))
+                                                .addApiResponse("503", new ApiResponse().description("Write queue is full, retry later")
+                                                        .content(new Content().addMediaType("application/json",
+                                                                new MediaType().schema(new Schema<>().$ref("#/components/schemas/ServiceResult")))))
                                                 .addApiResponse("500", new ApiResponse().description("Error deleting data")
                                                         .content(new Content().addMediaType("application/json",
                                                                 new MediaType().schema(new Schema<>().$ref("#/components/schemas/ServiceResult")))))
                                         )))
+                        .addPathItem("/api/barcodes/scan",
+                                new PathItem().post(new Operation()
+                                        .summary("Record a scan")
+                                        .description("Counts one scan of a code. Scans are tallied in memory and merged into the record " +
+                                                "every QR_SCAN_FLUSH_MS, setting scanned and updating scanCount, firstScanAt and lastScanAt " +
+                                                "(epoch milliseconds). Scans of unknown ids are dropped at the flush.")
+                                        .addParametersItem(new Parameter()
+                                                .name("id")
+                                                .description("The id of the scanned code")
+                                                .required(true)
+                                                .example("42")
+                                                .in("query"))
+                                        .addParametersItem(new Parameter()
+                                                .name("x-api-key")
+                                                .description("API Key of the client owning the code")
+                                                .required(true)
+                                                .in("header"))
+                                        .responses(new ApiResponses()
+                                                .addApiResponse("202", new ApiResponse().description("Scan recorded"))
+                                                .addApiResponse("400", new ApiResponse().description("Invalid id"))
+                                                .addApiResponse("503", new ApiResponse().description("Too many codes waiting for the next flush, retry later"))
+                                        )))
+                        .addPathItem("/api/barcodes/scanStats",
+                                new PathItem().get(new Operation()
+                                        .summary("Scan ingestion statistics")
+                                        .description("Returns received, rejected and pending scans and the codes written by each flush. Requires an admin API key.")
+                                        .addParametersItem(new Parameter()
+                                                .name("x-api-key")
+                                                .description("Admin API Key")
+                                                .required(true)
+                                                .in("header"))
+                                        .responses(new ApiResponses()
+                                                .addApiResponse("200", new ApiResponse().description("Scan statistics retrieved successfully"))
+                                                .addApiResponse("401", new ApiResponse().description("Unauthorized - Admin API key required")
+                                                        .content(new Content().addMediaType("application/json",
+                                                                new MediaType().schema(new Schema<>().$ref("#/components/schemas/ServiceResult")))))
+                                        )))
+                        .addPathItem("/actuator/prometheus",
+                                new PathItem().get(new Operation()
+                                        .summary("Prometheus metrics")
+                                        .description("Returns the stage, database, payload and JVM metrics in the Prometheus text format. Requires an admin API key.")
+                                        .addParametersItem(new Parameter()
+                                                .name("x-api-key")
+                                                .description("Admin API Key")
+                                                .required(true)
+                                                .in("header"))
+                                        .responses(new ApiResponses()
+                                                .addApiResponse("200", new ApiResponse().description("Metrics scraped successfully"))
+                                                .addApiResponse("401", new ApiResponse().description("Unauthorized - Admin API key required")
+                                                        .content(new Content().addMediaType("application/json",
+                                                                new MediaType().schema(new Schema<>().$ref("#/components/schemas/ServiceResult")))))
+                                        )))
                         .addPathItem("/api/barcodes/read",
                                 new PathItem().post(new Operation()
                                         .summary("Read QR Code")
-                                        .description("Mark the QR Code as read")
+                                        .description("Mark the QR Code as read. The decoded url is returned split into protocol, host, path " +
+                                                "and percent-decoded query parameters; codes of type 2/4 also get their apiKey, id, " +
+                                                "isScanned and dates typed under selfManaged.")
                                         .addParametersItem(new Parameter()
                                                 .name("file")
                                                 .description("QR code")
@@ -290,6 +485,52 @@ public class OpenApiConfig {
                                                 .addApiResponse("500", new ApiResponse().description("Error deleting data")
                                                         .content(new Content().addMediaType("application/json",
                                                                 new MediaType().schema(new Schema<>().$ref("#/components/schemas/ServiceResult"))))))))
+                        .addPathItem("/api/barcodes/imageCacheStats",
+                                new PathItem().get(new Operation()
+                                        .summary("QR image cache statistics")
+                                        .description("Returns hit, miss and eviction counters of the rendered QR image cache, and the entries " +
+                                                "and hit counters of the encoded QR symbol cache shared by every size. Requires an admin API key.")
+                                        .addParametersItem(new Parameter()
+                                                .name("x-api-key")
+                                                .description("Admin API Key")
+                                                .required(true)
+                                                .in("header"))
+                                        .responses(new ApiResponses()
+                                                .addApiResponse("200", new ApiResponse().description("Cache statistics retrieved successfully"))
+                                                .addApiResponse("401", new ApiResponse().description("Unauthorized - Admin API key required")
+                                                        .content(new Content().addMediaType("application/json",
+                                                                new MediaType().schema(new Schema<>().$ref("#/components/schemas/ServiceResult")))))
+                                        )))
+                        .addPathItem("/api/barcodes/decodeStats",
+                                new PathItem().get(new Operation()
+                                        .summary("QR decode statistics")
+                                        .description("Returns attempts, hit rate and average time of each decode stage, from the fast downsampled pass to TRY_HARDER at full resolution. Requires an admin API key.")
+                                        .addParametersItem(new Parameter()
+                                                .name("x-api-key")
+                                                .description("Admin API Key")
+                                                .required(true)
+                                                .in("header"))
+                                        .responses(new ApiResponses()
+                                                .addApiResponse("200", new ApiResponse().description("Decode statistics retrieved successfully"))
+                                                .addApiResponse("401", new ApiResponse().description("Unauthorized - Admin API key required")
+                                                        .content(new Content().addMediaType("application/json",
+                                                                new MediaType().schema(new Schema<>().$ref("#/components/schemas/ServiceResult")))))
+                                        )))
+                        .addPathItem("/api/firebase/clientCacheStats",
+                                new PathItem().get(new Operation()
+                                        .summary("Client mirror statistics")
+                                        .description("Returns hit, miss, staleness and eviction counters of the in-memory mirror of client QR lists. Requires an admin API key.")
+                                        .addParametersItem(new Parameter()
+                                                .name("x-api-key")
+                                                .description("Admin API Key")
+                                                .required(true)
+                                                .in("header"))
+                                        .responses(new ApiResponses()
+                                                .addApiResponse("200", new ApiResponse().description("Cache statistics retrieved successfully"))
+                                                .addApiResponse("401", new ApiResponse().description("Unauthorized - Admin API key required")
+                                                        .content(new Content().addMediaType("application/json",
+                                                                new MediaType().schema(new Schema<>().$ref("#/components/schemas/ServiceResult")))))
+                                        )))
                         .addPathItem("/api/barcodes/qrcode/check",
                                 new PathItem().post(new Operation()
                                         .summary("Check if the qr code is readable")
@@ -299,6 +540,11 @@ public class OpenApiConfig {
                                                 .description("QR code")
                                                 .required(true)
                                                 .in("query"))
+                                        .addParametersItem(new Parameter()
+                                                .name("formats")
+                                                .description("Comma separated barcode formats to look for, e.g. QR_CODE,DATA_MATRIX (default QR_CODE)")
+                                                .required(false)
+                                                .in("query"))
                                         .addParametersItem(new Parameter()
                                                 .name("x-api-key")
                                                 .description("API Key for client authentication")
@@ -0,0 +1,63 @@
+package com.company.benchmarks;
+
+import com.company.security.ApiKeyIndex;
+import com.company.security.TokenBucketLimiter;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Authenticating a request key: the former scan of the configured key list against the digest index,
+ * and the cost of taking a rate limit token. The key looked up is the last one configured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ApiKeyAuthBenchmark {
+
+    @Param({"10", "1000"})
+    public int keys;
+
+    private List<String> keyList;
+    private ApiKeyIndex index;
+    private TokenBucketLimiter limiter;
+    private String requestKey;
+
+    @Setup
+    public void setUp() {
+        String configured = IntStream.range(0, keys)
+                .mapToObj(i -> "client-key-" + String.format("%08x", i * 2654435761L))
+                .collect(Collectors.joining(","));
+        keyList = Arrays.asList(configured.split(","));
+        index = ApiKeyIndex.of(configured, "admin-key");
+        limiter = new TokenBucketLimiter(1e9, 1_000_000);
+        // A fresh string, as read from a header
+        requestKey = new String(keyList.get(keys - 1).toCharArray());
+    }
+
+    @Benchmark
+    public boolean listContains() {
+        return keyList.contains(requestKey);
+    }
+
+    @Benchmark
+    public ApiKeyIndex.Role digestIndex() {
+        return index.lookup(requestKey);
+    }
+
+    @Benchmark
+    public long rateLimitToken() {
+        return limiter.tryAcquire(requestKey);
+    }
+
+    public static void main(String[] args) throws Exception {
+        org.openjdk.jmh.Main.main(args);
+    }
+}
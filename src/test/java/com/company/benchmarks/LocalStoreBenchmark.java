@@ -0,0 +1,74 @@
+package com.company.benchmarks;
+
+import com.company.model.QrData;
+import com.company.model.QrPage;
+import com.company.service.LocalStoreService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Throughput of the embedded store behind {@code QR_STORE=local}: single inserts with a 300px image,
+ * id reservation and 100-record page reads of a 10k-record client.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+public class LocalStoreBenchmark {
+
+    private static final int RECORDS = 10_000;
+
+    private LocalStoreService store;
+    private File file;
+    private QrData qrData;
+    private final AtomicInteger nextId = new AtomicInteger(RECORDS);
+
+    @Setup
+    public void setup() throws IOException {
+        file = File.createTempFile("qr-bench", ".mv.db");
+        file.delete();
+        store = new LocalStoreService();
+        ReflectionTestUtils.setField(store, "path", file.getPath());
+        ReflectionTestUtils.setField(store, "commitDelayMillis", 1000);
+        store.initStore();
+
+        // A 300px bilevel PNG is about 630 bytes, 840 characters of base64
+        qrData = QrData.builder().url("https://www.example.com?apiKey=abc&id=42&isScanned=false")
+                .size(300).errorCorrection("M").type(2).base64Image("A".repeat(840)).build();
+        for (int id = 0; id < RECORDS; id++) {
+            store.InsertData("reader", id, qrData);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        store.close();
+        file.delete();
+    }
+
+    @Benchmark
+    public void insert() {
+        store.InsertData("writer", nextId.getAndIncrement(), qrData);
+    }
+
+    @Benchmark
+    public Integer reserveId() throws Exception {
+        return store.reserveIds("writer", 1).get();
+    }
+
+    @Benchmark
+    public QrPage readPage() throws Exception {
+        return store.getDataByClientPage("reader", null, "5000", 100).get();
+    }
+
+    public static void main(String[] args) throws Exception {
+        org.openjdk.jmh.Main.main(args);
+    }
+}
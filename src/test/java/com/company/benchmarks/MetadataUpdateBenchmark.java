@@ -0,0 +1,85 @@
+package com.company.benchmarks;
+
+import com.company.metrics.PipelineMetrics;
+import com.company.model.QrData;
+import com.company.model.VerificationMode;
+import com.company.render.BilevelPngWriter;
+import com.company.render.RenderLimiter;
+import com.company.service.LocalStoreService;
+import com.company.service.QRImageCacheService;
+import com.company.service.QRService;
+import com.company.service.QRVerificationService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * updateQrById against the in-memory local store with the image caches off. {@code datesOnly} changes
+ * the end date of a type 1 code, which only patches that field; {@code encodedText} changes the url,
+ * which regenerates, verifies and stores the image.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MetadataUpdateBenchmark {
+
+    private LocalStoreService store;
+    private ExecutorService renderExecutor;
+    private QRService qrService;
+    private int counter;
+
+    @Setup
+    public void setup() {
+        store = new LocalStoreService();
+        ReflectionTestUtils.setField(store, "path", "");
+        ReflectionTestUtils.setField(store, "commitDelayMillis", 1000);
+        store.initStore();
+        store.InsertData("key", 1, QrData.builder().url("https://www.example.com/a").size(300).errorCorrection("M")
+                .type(1).build());
+
+        QRVerificationService verificationService = new QRVerificationService();
+        ReflectionTestUtils.setField(verificationService, "mode", VerificationMode.STRUCTURAL);
+        ReflectionTestUtils.setField(verificationService, "minModulePixels", 2);
+        QRImageCacheService cacheService = new QRImageCacheService();
+        cacheService.initCache();
+        renderExecutor = Executors.newSingleThreadExecutor();
+
+        qrService = new QRService();
+        ReflectionTestUtils.setField(qrService, "metrics", new PipelineMetrics(new SimpleMeterRegistry()));
+        ReflectionTestUtils.setField(qrService, "qrRepository", store);
+        ReflectionTestUtils.setField(qrService, "bilevelPngWriter", new BilevelPngWriter(6));
+        ReflectionTestUtils.setField(qrService, "qrVerificationService", verificationService);
+        ReflectionTestUtils.setField(qrService, "qrImageCacheService", cacheService);
+        ReflectionTestUtils.setField(qrService, "renderExecutor", renderExecutor);
+        ReflectionTestUtils.setField(qrService, "renderLimiter", new RenderLimiter(1));
+    }
+
+    @TearDown
+    public void tearDown() {
+        renderExecutor.shutdown();
+        store.close();
+    }
+
+    @Benchmark
+    public void datesOnly() throws Exception {
+        qrService.generateQRCodeAndUpdateDatabase("key", "https://www.example.com/a", 300, "M", 1,
+                false, null, String.valueOf(20260000 + (++counter % 1000)), 1, null, null).get();
+    }
+
+    @Benchmark
+    public void encodedText() throws Exception {
+        qrService.generateQRCodeAndUpdateDatabase("key", "https://www.example.com/" + (++counter), 300, "M", 1,
+                false, null, null, 1, null, null).get();
+    }
+
+    public static void main(String[] args) throws Exception {
+        org.openjdk.jmh.Main.main(args);
+    }
+}
@@ -0,0 +1,72 @@
+package com.company.benchmarks;
+
+import com.company.render.BilevelPngWriter;
+import com.company.render.PackedBitRaster;
+import com.company.render.QrRasterRenderer;
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.EncodeHintType;
+import com.google.zxing.MultiFormatWriter;
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.qrcode.decoder.ErrorCorrectionLevel;
+import org.openjdk.jmh.annotations.*;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares ImageIO's generic PNG writer on an RGB image with the bilevel PNG writer.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PngBenchmark {
+
+    @Param({"300", "1000"})
+    public int size;
+
+    @Param({"1", "6", "9"})
+    public int compressionLevel;
+
+    private BufferedImage rgbImage;
+    private PackedBitRaster raster;
+    private BilevelPngWriter writer;
+
+    @Setup
+    public void setup() throws Exception {
+        BitMatrix matrix = new MultiFormatWriter().encode("https://www.example.com?apiKey=abc&id=42&isScanned=false",
+                BarcodeFormat.QR_CODE, size, size,
+                Map.of(EncodeHintType.ERROR_CORRECTION, ErrorCorrectionLevel.M, EncodeHintType.MARGIN, 0));
+        rgbImage = new BufferedImage(size, size, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                rgbImage.setRGB(x, y, matrix.get(x, y) ? 0x000000 : 0xFFFFFF);
+            }
+        }
+        raster = QrRasterRenderer.pack(matrix);
+        writer = new BilevelPngWriter(compressionLevel);
+    }
+
+    @Benchmark
+    public byte[] imageIoRgb() throws Exception {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        ImageIO.write(rgbImage, "PNG", baos);
+        return baos.toByteArray();
+    }
+
+    @Benchmark
+    public byte[] bilevelWriter() throws Exception {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        writer.write(raster, baos);
+        return baos.toByteArray();
+    }
+
+    public static void main(String[] args) throws Exception {
+        org.openjdk.jmh.Main.main(args);
+    }
+}
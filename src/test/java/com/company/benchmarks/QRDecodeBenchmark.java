@@ -0,0 +1,113 @@
+package com.company.benchmarks;
+
+import com.company.service.QRDecodeService;
+import com.google.zxing.*;
+import com.google.zxing.client.j2se.BufferedImageLuminanceSource;
+import com.google.zxing.client.j2se.MatrixToImageWriter;
+import com.google.zxing.common.HybridBinarizer;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reading a 4000x3000 scan of a label sheet holding a grid of QR codes. {@code unrestrictedSingle} is
+ * the original reader, trying every format and returning one code; {@code wholeImageAll} finds every
+ * QR code in one pass over the full image; {@code tiledAll} searches overlapping tiles on a pool with
+ * one thread per core. {@code pyramidFirst} reads one code through the decode stages, starting from a
+ * downsampled plane.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 3)
+@Fork(1)
+public class QRDecodeBenchmark {
+
+    private static final int WIDTH = 4000;
+    private static final int HEIGHT = 3000;
+
+    @Param({"12"})
+    public int codes;
+
+    @Param({"260"})
+    public int codeSize;
+
+    private BufferedImage scan;
+    private ExecutorService decodeExecutor;
+    private QRDecodeService tiled;
+    private QRDecodeService wholeImage;
+
+    @Setup
+    public void setup() throws Exception {
+        scan = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = scan.createGraphics();
+        graphics.setColor(Color.WHITE);
+        graphics.fillRect(0, 0, WIDTH, HEIGHT);
+        int columns = (int) Math.ceil(Math.sqrt(codes * 4 / 3.0));
+        for (int i = 0; i < codes; i++) {
+            int x = 150 + (i % columns) * (WIDTH - 300) / columns;
+            int y = 150 + (i / columns) * (HEIGHT - 300) / ((codes + columns - 1) / columns);
+            BufferedImage code = MatrixToImageWriter.toBufferedImage(new MultiFormatWriter().encode(
+                    "https://www.example.com?apiKey=abc&id=" + i, BarcodeFormat.QR_CODE, codeSize, codeSize,
+                    Map.of(EncodeHintType.MARGIN, 2)));
+            graphics.drawImage(code, x, y, null);
+        }
+        graphics.dispose();
+
+        decodeExecutor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        tiled = decodeService(4_000_000L);
+        wholeImage = decodeService(Long.MAX_VALUE);
+    }
+
+    @TearDown
+    public void tearDown() {
+        decodeExecutor.shutdownNow();
+    }
+
+    @Benchmark
+    public Result unrestrictedSingle() throws Exception {
+        BinaryBitmap bitmap = new BinaryBitmap(new HybridBinarizer(new BufferedImageLuminanceSource(scan)));
+        return new MultiFormatReader().decode(bitmap);
+    }
+
+    @Benchmark
+    public List<Result> pyramidFirst() throws Exception {
+        return tiled.decode(scan, QRDecodeService.QR_ONLY, false);
+    }
+
+    @Benchmark
+    public List<Result> wholeImageAll() throws Exception {
+        return wholeImage.decode(scan, QRDecodeService.QR_ONLY, true);
+    }
+
+    @Benchmark
+    public List<Result> tiledAll() throws Exception {
+        return tiled.decode(scan, QRDecodeService.QR_ONLY, true);
+    }
+
+    private QRDecodeService decodeService(long tileThresholdPixels) {
+        QRDecodeService service = new QRDecodeService();
+        ReflectionTestUtils.setField(service, "tileThresholdPixels", tileThresholdPixels);
+        ReflectionTestUtils.setField(service, "tileSize", 1024);
+        ReflectionTestUtils.setField(service, "tileOverlap", 320);
+        ReflectionTestUtils.setField(service, "overviewSize", 1600);
+        ReflectionTestUtils.setField(service, "fastSize", 1024);
+        ReflectionTestUtils.setField(service, "bufferPoolBytes", 128L << 20);
+        ReflectionTestUtils.setField(service, "maxPixels", 40_000_000L);
+        ReflectionTestUtils.setField(service, "decodeExecutor", decodeExecutor);
+        service.initBufferPool();
+        return service;
+    }
+
+    public static void main(String[] args) throws Exception {
+        org.openjdk.jmh.Main.main(args);
+    }
+}
@@ -0,0 +1,135 @@
+package com.company.benchmarks;
+
+import com.company.metrics.PipelineMetrics;
+import com.company.render.BilevelPngWriter;
+import com.company.render.PackedBitRaster;
+import com.company.render.QrRasterRenderer;
+import com.company.service.QRDecodeService;
+import com.company.service.QRService;
+import com.company.service.QRVerificationService;
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.EncodeHintType;
+import com.google.zxing.MultiFormatWriter;
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.qrcode.decoder.ErrorCorrectionLevel;
+import com.google.zxing.qrcode.encoder.Encoder;
+import com.google.zxing.qrcode.encoder.QRCode;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Baseline for each stage of QR generation and reading in {@link QRService}, parameterized by payload
+ * length, image size and error correction level. Run through the {@code benchmarks} profile, which
+ * adds {@code -prof gc} so every stage also reports its allocation rate.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 3, time = 1)
+@Fork(1)
+public class QRServiceStageBenchmark {
+
+    @Param({"40", "150", "500"})
+    public int payloadLength;
+
+    @Param({"300", "1000"})
+    public int size;
+
+    @Param({"L", "M", "H"})
+    public String errorCorrection;
+
+    private String text;
+    private ErrorCorrectionLevel level;
+    private BilevelPngWriter pngWriter;
+    private QRService qrService;
+    private QRCode code;
+    private PackedBitRaster raster;
+    private BufferedImage image;
+    private byte[] png;
+
+    @Setup
+    public void setup() throws Exception {
+        text = payload(payloadLength);
+        level = ErrorCorrectionLevel.valueOf(errorCorrection);
+        pngWriter = new BilevelPngWriter(6);
+
+        qrService = new QRService();
+        ReflectionTestUtils.setField(qrService, "metrics", new PipelineMetrics(new SimpleMeterRegistry()));
+        ReflectionTestUtils.setField(qrService, "qrVerificationService", new QRVerificationService());
+        // Stage images are far below the tiling threshold, so no decode pool is needed
+        QRDecodeService qrDecodeService = new QRDecodeService();
+        ReflectionTestUtils.setField(qrDecodeService, "tileThresholdPixels", Long.MAX_VALUE);
+        ReflectionTestUtils.setField(qrDecodeService, "fastSize", 1024);
+        ReflectionTestUtils.setField(qrDecodeService, "bufferPoolBytes", 16L << 20);
+        ReflectionTestUtils.setField(qrDecodeService, "maxPixels", 40_000_000L);
+        qrDecodeService.initBufferPool();
+        ReflectionTestUtils.setField(qrService, "qrDecodeService", qrDecodeService);
+
+        code = Encoder.encode(text, level);
+        raster = QrRasterRenderer.pack(code.getMatrix(), size, size, 0);
+        image = QrRasterRenderer.toBufferedImage(raster);
+        png = toByteArray();
+    }
+
+    // The original generation path, kept for comparison with the service's direct Encoder call
+    @Benchmark
+    public BitMatrix multiFormatWriterEncode() throws Exception {
+        return new MultiFormatWriter().encode(text, BarcodeFormat.QR_CODE, size, size,
+                Map.of(EncodeHintType.ERROR_CORRECTION, level, EncodeHintType.MARGIN, 0));
+    }
+
+    @Benchmark
+    public QRCode encode() throws Exception {
+        return Encoder.encode(text, level);
+    }
+
+    @Benchmark
+    public BufferedImage toBufferedImage() {
+        return QrRasterRenderer.toBufferedImage(QrRasterRenderer.pack(code.getMatrix(), size, size, 0));
+    }
+
+    @Benchmark
+    public byte[] toByteArray() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(256, raster.getData().length / 8));
+        pngWriter.write(raster, out);
+        return out.toByteArray();
+    }
+
+    @Benchmark
+    public String base64() {
+        return Base64.getEncoder().encodeToString(png);
+    }
+
+    @Benchmark
+    public boolean isQRCodeReadable() throws Exception {
+        return qrService.isQRCodeReadable(image);
+    }
+
+    @Benchmark
+    public List<String> readQRCodesFromStream() throws Exception {
+        return qrService.readQRCodesFromStream(new ByteArrayInputStream(png), QRDecodeService.QR_ONLY, false);
+    }
+
+    // A self-managed style URL padded to the requested length
+    private static String payload(int length) {
+        StringBuilder builder = new StringBuilder("https://www.example.com?apiKey=abc&id=42&isScanned=false&p=");
+        for (int i = 0; builder.length() < length; i++) {
+            builder.append((char) ('a' + i % 26));
+        }
+        return builder.substring(0, length);
+    }
+
+    public static void main(String[] args) throws Exception {
+        org.openjdk.jmh.Main.main(args);
+    }
+}
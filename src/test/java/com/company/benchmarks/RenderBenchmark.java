@@ -0,0 +1,77 @@
+package com.company.benchmarks;
+
+import com.company.render.PackedBitRaster;
+import com.company.render.QrRasterRenderer;
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.EncodeHintType;
+import com.google.zxing.MultiFormatWriter;
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.qrcode.decoder.ErrorCorrectionLevel;
+import org.openjdk.jmh.annotations.*;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the original per-pixel setRGB rendering with the packed 1-bit raster renderer.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RenderBenchmark {
+
+    @Param({"300", "600", "1000"})
+    public int size;
+
+    private BitMatrix matrix;
+
+    @Setup
+    public void setup() throws Exception {
+        matrix = new MultiFormatWriter().encode("https://www.example.com?apiKey=abc&id=42&isScanned=false",
+                BarcodeFormat.QR_CODE, size, size,
+                Map.of(EncodeHintType.ERROR_CORRECTION, ErrorCorrectionLevel.M, EncodeHintType.MARGIN, 0));
+    }
+
+    @Benchmark
+    public BufferedImage legacySetRgb() {
+        int width = matrix.getWidth();
+        int height = matrix.getHeight();
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        image.createGraphics();
+
+        Graphics2D graphics = (Graphics2D) image.getGraphics();
+        graphics.setColor(Color.WHITE);
+        graphics.fillRect(0, 0, width, height);
+        graphics.setColor(Color.BLACK);
+
+        for (int x = 0; x < width; x++) {
+            for (int y = 0; y < height; y++) {
+                if (matrix.get(x, y)) {
+                    image.setRGB(x, y, Color.BLACK.getRGB());
+                } else {
+                    image.setRGB(x, y, Color.WHITE.getRGB());
+                }
+            }
+        }
+        return image;
+    }
+
+    @Benchmark
+    public BufferedImage packedBufferedImage() {
+        return QrRasterRenderer.toBufferedImage(matrix);
+    }
+
+    @Benchmark
+    public PackedBitRaster packedRasterOnly() {
+        return QrRasterRenderer.pack(matrix);
+    }
+
+    public static void main(String[] args) throws Exception {
+        org.openjdk.jmh.Main.main(args);
+    }
+}
@@ -0,0 +1,46 @@
+package com.company.benchmarks;
+
+import com.company.service.ScanAggregationService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of recording a scan in the aggregation stage, for a single code scanned at an event and for
+ * scans spread over many codes. Nothing is flushed, so only the in-memory tally is measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ScanIngestBenchmark {
+
+    private static final int CODES = 10_000;
+
+    private ScanAggregationService scans;
+    private int next;
+
+    @Setup
+    public void setup() {
+        scans = new ScanAggregationService();
+        ReflectionTestUtils.setField(scans, "maxPendingCodes", Integer.MAX_VALUE);
+    }
+
+    @Benchmark
+    public void hotCode() {
+        scans.recordScan("key", 42, System.currentTimeMillis());
+    }
+
+    @Benchmark
+    public void spreadCodes() {
+        next = (next + 1) % CODES;
+        scans.recordScan("key", next, System.currentTimeMillis());
+    }
+
+    public static void main(String[] args) throws Exception {
+        org.openjdk.jmh.Main.main(args);
+    }
+}
@@ -0,0 +1,50 @@
+package com.company.benchmarks;
+
+import com.company.render.PackedBitRaster;
+import com.company.render.QrRasterRenderer;
+import com.google.zxing.qrcode.decoder.ErrorCorrectionLevel;
+import com.google.zxing.qrcode.encoder.Encoder;
+import com.google.zxing.qrcode.encoder.QRCode;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of producing a raster of a text at some size: encoding the symbol and scaling it, versus scaling
+ * a symbol already in the module-level cache.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SymbolCacheBenchmark {
+
+    private static final String TEXT = "https://www.example.com?apiKey=abc&id=42&isScanned=false";
+
+    @Param({"150", "300", "1000"})
+    public int size;
+
+    private QRCode cached;
+
+    @Setup
+    public void setup() throws Exception {
+        cached = Encoder.encode(TEXT, ErrorCorrectionLevel.M);
+    }
+
+    @Benchmark
+    public PackedBitRaster encodeAndScale() throws Exception {
+        QRCode code = Encoder.encode(TEXT, ErrorCorrectionLevel.M);
+        return QrRasterRenderer.pack(code.getMatrix(), size, size, 0);
+    }
+
+    @Benchmark
+    public PackedBitRaster scaleCachedSymbol() {
+        return QrRasterRenderer.pack(cached.getMatrix(), size, size, 0);
+    }
+
+    public static void main(String[] args) throws Exception {
+        org.openjdk.jmh.Main.main(args);
+    }
+}
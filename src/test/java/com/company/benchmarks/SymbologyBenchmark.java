@@ -0,0 +1,84 @@
+package com.company.benchmarks;
+
+import com.company.model.VerificationMode;
+import com.company.render.BilevelPngWriter;
+import com.company.render.PackedBitRaster;
+import com.company.render.QrRasterRenderer;
+import com.company.render.RenderedBarcode;
+import com.company.render.Symbology;
+import com.company.service.QRVerificationService;
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.qrcode.decoder.ErrorCorrectionLevel;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of the shared generation pipeline for every format at 600 px: {@code render} encodes,
+ * scales and writes the PNG; {@code verifyInMemory} is the format-aware check of the STRUCTURAL and
+ * SAMPLED modes, {@code verifyPng} the FULL read-back.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SymbologyBenchmark {
+
+    private static final int SIZE = 600;
+
+    @Param({"QR_CODE", "CODE_128", "EAN_13", "DATA_MATRIX", "PDF_417", "AZTEC"})
+    public Symbology symbology;
+
+    private String text;
+    private BilevelPngWriter pngWriter;
+    private RenderedBarcode rendered;
+    private QRVerificationService inMemory;
+    private QRVerificationService fromPng;
+
+    @Setup
+    public void setup() throws Exception {
+        text = symbology == Symbology.EAN_13 ? "4006381333931" : "SKU-2024-000042-A";
+        pngWriter = new BilevelPngWriter(6);
+        rendered = render();
+        inMemory = verificationService(VerificationMode.STRUCTURAL);
+        fromPng = verificationService(VerificationMode.FULL);
+    }
+
+    @Benchmark
+    public RenderedBarcode render() throws IOException {
+        BitMatrix modules = symbology.encode(text, ErrorCorrectionLevel.M);
+        int height = symbology.isLinear() ? SIZE / 2 : SIZE;
+        PackedBitRaster raster = QrRasterRenderer.pack(modules, SIZE, height, symbology.getQuietZone(), symbology.isLinear());
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        pngWriter.write(raster, png);
+        return new RenderedBarcode(symbology, text, modules,
+                QrRasterRenderer.moduleScale(modules, SIZE, height, symbology.getQuietZone(), symbology.isLinear()),
+                raster, png.toByteArray());
+    }
+
+    @Benchmark
+    public boolean verifyInMemory() throws IOException {
+        return inMemory.verify(rendered);
+    }
+
+    @Benchmark
+    public boolean verifyPng() throws IOException {
+        return fromPng.verify(rendered);
+    }
+
+    private static QRVerificationService verificationService(VerificationMode mode) {
+        QRVerificationService service = new QRVerificationService();
+        ReflectionTestUtils.setField(service, "mode", mode);
+        ReflectionTestUtils.setField(service, "minModulePixels", 1);
+        return service;
+    }
+
+    public static void main(String[] args) throws Exception {
+        org.openjdk.jmh.Main.main(args);
+    }
+}
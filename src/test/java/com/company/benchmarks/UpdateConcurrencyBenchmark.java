@@ -0,0 +1,78 @@
+package com.company.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.*;
+
+/**
+ * Load model of 500 concurrent update requests against a database with a fixed round-trip latency.
+ * {@code latchPerRequest} parks a servlet thread on a CountDownLatch until the callback fires, as the
+ * update and delete endpoints used to; {@code asyncResult} returns a CompletableFuture and releases the
+ * thread. Both run on a 200-thread pool, Tomcat's default maximum.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 3)
+@Fork(1)
+public class UpdateConcurrencyBenchmark {
+
+    private static final int CONCURRENT_UPDATES = 500;
+    private static final int SERVLET_THREADS = 200;
+
+    @Param({"20"})
+    public int dbLatencyMillis;
+
+    private ExecutorService servletPool;
+    private ScheduledExecutorService database;
+
+    @Setup
+    public void setup() {
+        servletPool = Executors.newFixedThreadPool(SERVLET_THREADS);
+        database = Executors.newScheduledThreadPool(4);
+    }
+
+    @TearDown
+    public void tearDown() {
+        servletPool.shutdownNow();
+        database.shutdownNow();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CONCURRENT_UPDATES)
+    public void latchPerRequest() throws Exception {
+        CountDownLatch done = new CountDownLatch(CONCURRENT_UPDATES);
+        for (int i = 0; i < CONCURRENT_UPDATES; i++) {
+            servletPool.execute(() -> {
+                CountDownLatch latch = new CountDownLatch(1);
+                database.schedule(latch::countDown, dbLatencyMillis, TimeUnit.MILLISECONDS);
+                try {
+                    latch.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                done.countDown();
+            });
+        }
+        done.await();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CONCURRENT_UPDATES)
+    public void asyncResult() throws Exception {
+        CountDownLatch done = new CountDownLatch(CONCURRENT_UPDATES);
+        for (int i = 0; i < CONCURRENT_UPDATES; i++) {
+            servletPool.execute(() -> {
+                CompletableFuture<Void> future = new CompletableFuture<>();
+                database.schedule(() -> future.complete(null), dbLatencyMillis, TimeUnit.MILLISECONDS);
+                future.orTimeout(10, TimeUnit.SECONDS).whenComplete((ignored, e) -> done.countDown());
+            });
+        }
+        done.await();
+    }
+
+    public static void main(String[] args) throws Exception {
+        org.openjdk.jmh.Main.main(args);
+    }
+}
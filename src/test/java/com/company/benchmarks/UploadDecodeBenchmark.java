@@ -0,0 +1,98 @@
+package com.company.benchmarks;
+
+import com.company.decode.BufferPool;
+import com.company.decode.GrayImages;
+import com.company.decode.GrayLuminanceSource;
+import com.company.service.QRDecodeService;
+import com.google.zxing.*;
+import com.google.zxing.client.j2se.BufferedImageLuminanceSource;
+import com.google.zxing.client.j2se.MatrixToImageWriter;
+import com.google.zxing.common.HybridBinarizer;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The read path of a 4000x3000 upload holding one QR code, from bytes to luminance. The
+ * {@code bufferedImage*} benchmarks are the original path through an ARGB image and
+ * BufferedImageLuminanceSource; the {@code grayPlane*} ones read the upload into a pooled buffer and
+ * decode it straight to a gray plane. Run with the {@code benchmarks} profile for allocation per op.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 3)
+@Fork(1)
+public class UploadDecodeBenchmark {
+
+    @Param({"jpg", "png"})
+    public String uploadFormat;
+
+    private byte[] upload;
+    private BufferPool pool;
+    private QRDecodeService qrDecodeService;
+
+    @Setup
+    public void setup() throws Exception {
+        BufferedImage photo = new BufferedImage(4000, 3000, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = photo.createGraphics();
+        graphics.setPaint(new GradientPaint(0, 0, new Color(235, 230, 220), 4000, 3000, new Color(180, 175, 170)));
+        graphics.fillRect(0, 0, 4000, 3000);
+        graphics.drawImage(MatrixToImageWriter.toBufferedImage(new MultiFormatWriter().encode(
+                "https://www.example.com?apiKey=abc&id=42&isScanned=false", BarcodeFormat.QR_CODE, 900, 900,
+                Map.of(EncodeHintType.MARGIN, 2))), 1500, 1000, null);
+        graphics.dispose();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ImageIO.write(photo, uploadFormat, bytes);
+        upload = bytes.toByteArray();
+
+        pool = new BufferPool(128L << 20);
+        qrDecodeService = new QRDecodeService();
+        ReflectionTestUtils.setField(qrDecodeService, "tileThresholdPixels", Long.MAX_VALUE);
+        ReflectionTestUtils.setField(qrDecodeService, "fastSize", 1024);
+        ReflectionTestUtils.setField(qrDecodeService, "bufferPoolBytes", 128L << 20);
+        ReflectionTestUtils.setField(qrDecodeService, "maxPixels", 40_000_000L);
+        qrDecodeService.initBufferPool();
+    }
+
+    @Benchmark
+    public byte[] bufferedImageLuminance() throws Exception {
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(upload));
+        return new BufferedImageLuminanceSource(image).getMatrix();
+    }
+
+    @Benchmark
+    public byte[] grayPlaneLuminance() throws Exception {
+        GrayLuminanceSource source = GrayImages.read(upload, upload.length, pool, Long.MAX_VALUE);
+        try {
+            return source.getMatrix();
+        } finally {
+            pool.release(source);
+        }
+    }
+
+    // The original /read path
+    @Benchmark
+    public Result bufferedImageRead() throws Exception {
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(upload));
+        return new MultiFormatReader().decode(new BinaryBitmap(new HybridBinarizer(new BufferedImageLuminanceSource(image))));
+    }
+
+    @Benchmark
+    public List<Result> grayPlaneRead() throws Exception {
+        return qrDecodeService.decode(new ByteArrayInputStream(upload), QRDecodeService.QR_ONLY, false);
+    }
+
+    public static void main(String[] args) throws Exception {
+        org.openjdk.jmh.Main.main(args);
+    }
+}
@@ -0,0 +1,53 @@
+package com.company.benchmarks;
+
+import com.company.decode.UrlParser;
+import com.company.model.ParsedUrl;
+import org.openjdk.jmh.annotations.*;
+
+import java.net.URL;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing the text of a scanned self-managed code: the former {@code java.net.URL} plus
+ * {@code String.split} parser against the single-pass {@link UrlParser}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UrlParserBenchmark {
+
+    @Param({
+            "https://www.example.com/menu?apiKey=a1b2c3d4e5&id=4242&isScanned=false&startDate=20260101&endDate=20261231",
+            "https://www.example.com/search?q=caf%C3%A9%20au%20lait&lang=fr"
+    })
+    public String text;
+
+    @Benchmark
+    @SuppressWarnings("deprecation")
+    public ParsedUrl legacyUrlAndSplit() throws Exception {
+        URL url = new URL(text);
+        Map<String, String> queryParams = new HashMap<>();
+        String query = url.getQuery();
+        if (query != null) {
+            for (String pair : query.split("&")) {
+                String[] keyValue = pair.split("=");
+                queryParams.put(keyValue[0], keyValue.length > 1 ? keyValue[1] : "");
+            }
+        }
+        return new ParsedUrl(text, url.getProtocol(), url.getHost(), url.getPath(), queryParams, null);
+    }
+
+    @Benchmark
+    public ParsedUrl singlePass() {
+        return UrlParser.parse(text);
+    }
+
+    public static void main(String[] args) throws Exception {
+        org.openjdk.jmh.Main.main(args);
+    }
+}
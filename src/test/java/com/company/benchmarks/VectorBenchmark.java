@@ -0,0 +1,57 @@
+package com.company.benchmarks;
+
+import com.company.render.BilevelPngWriter;
+import com.company.render.PackedBitRaster;
+import com.company.render.QrRasterRenderer;
+import com.company.render.SvgWriter;
+import com.google.zxing.qrcode.decoder.ErrorCorrectionLevel;
+import com.google.zxing.qrcode.encoder.Encoder;
+import com.google.zxing.qrcode.encoder.QRCode;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayOutputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of turning an encoded QR symbol into an image: scaling to a packed raster and writing a 1-bit
+ * PNG, against writing the module matrix as a single SVG path, whose cost does not depend on the size.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class VectorBenchmark {
+
+    @Param({"300", "1000", "3000"})
+    public int size;
+
+    private QRCode code;
+    private BilevelPngWriter writer;
+
+    @Setup
+    public void setup() throws Exception {
+        code = Encoder.encode("https://www.example.com?apiKey=abc&id=42&isScanned=false", ErrorCorrectionLevel.M);
+        writer = new BilevelPngWriter(6);
+    }
+
+    @Benchmark
+    public byte[] png() throws Exception {
+        PackedBitRaster raster = QrRasterRenderer.pack(code.getMatrix(), size, size, 0);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writer.write(raster, out);
+        return out.toByteArray();
+    }
+
+    @Benchmark
+    public byte[] svg() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        SvgWriter.write(code.getMatrix(), 0, size, size, out);
+        return out.toByteArray();
+    }
+
+    public static void main(String[] args) throws Exception {
+        org.openjdk.jmh.Main.main(args);
+    }
+}
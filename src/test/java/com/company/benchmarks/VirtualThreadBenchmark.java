@@ -0,0 +1,99 @@
+package com.company.benchmarks;
+
+import com.company.render.BilevelPngWriter;
+import com.company.render.PackedBitRaster;
+import com.company.render.QrRasterRenderer;
+import com.company.render.RenderLimiter;
+import com.google.zxing.qrcode.decoder.ErrorCorrectionLevel;
+import com.google.zxing.qrcode.encoder.Encoder;
+import com.google.zxing.qrcode.encoder.QRCode;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayOutputStream;
+import java.util.concurrent.*;
+
+/**
+ * Load model of 1000 concurrent generate requests that each wait on a database round-trip and then
+ * render and encode a real 300px QR. {@code platformPool} runs them on a 200-thread pool, Tomcat's
+ * default maximum; {@code virtualThreads} gives each request a virtual thread and caps the CPU-bound
+ * render with a {@link RenderLimiter} sized to the available cores.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 3)
+@Fork(1)
+public class VirtualThreadBenchmark {
+
+    private static final int CONCURRENT_REQUESTS = 1000;
+    private static final int SERVLET_THREADS = 200;
+
+    @Param({"20"})
+    public int dbLatencyMillis;
+
+    private ExecutorService platformPool;
+    private ExecutorService virtualPool;
+    private RenderLimiter renderLimiter;
+    private BilevelPngWriter pngWriter;
+
+    @Setup
+    public void setup() {
+        platformPool = Executors.newFixedThreadPool(SERVLET_THREADS);
+        virtualPool = Executors.newVirtualThreadPerTaskExecutor();
+        renderLimiter = new RenderLimiter(Runtime.getRuntime().availableProcessors());
+        pngWriter = new BilevelPngWriter(6);
+    }
+
+    @TearDown
+    public void tearDown() {
+        platformPool.shutdownNow();
+        virtualPool.shutdownNow();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CONCURRENT_REQUESTS)
+    public void platformPool() throws Exception {
+        run(platformPool, false);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CONCURRENT_REQUESTS)
+    public void virtualThreads() throws Exception {
+        run(virtualPool, true);
+    }
+
+    private void run(ExecutorService executor, boolean limited) throws Exception {
+        CountDownLatch done = new CountDownLatch(CONCURRENT_REQUESTS);
+        for (int i = 0; i < CONCURRENT_REQUESTS; i++) {
+            String text = "https://www.example.com?apiKey=abc&id=" + i + "&isScanned=false";
+            executor.execute(() -> {
+                try {
+                    Thread.sleep(dbLatencyMillis);
+                    if (limited) {
+                        renderLimiter.call(() -> render(text));
+                    } else {
+                        render(text);
+                    }
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        done.await();
+    }
+
+    private byte[] render(String text) throws Exception {
+        QRCode code = Encoder.encode(text, ErrorCorrectionLevel.M);
+        PackedBitRaster raster = QrRasterRenderer.pack(code.getMatrix(), 300, 300, 0);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        pngWriter.write(raster, out);
+        return out.toByteArray();
+    }
+
+    public static void main(String[] args) throws Exception {
+        org.openjdk.jmh.Main.main(args);
+    }
+}
@@ -0,0 +1,86 @@
+package com.company.benchmarks;
+
+import com.company.service.WriteBehindQueue;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * A burst of 1000 inserts spread over 10 clients against a database with a fixed round-trip latency.
+ * {@code direct} sends one multi-path update per insert, as {@code InsertData} used to;
+ * {@code writeBehind} goes through a {@link WriteBehindQueue} with a 10 ms window. The
+ * {@code roundTrips} counter is the number of updates sent per insert.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 3)
+@Fork(1)
+public class WriteBehindBenchmark {
+
+    private static final int INSERTS = 1000;
+    private static final int CLIENTS = 10;
+
+    @Param({"20"})
+    public int dbLatencyMillis;
+
+    private ScheduledExecutorService database;
+    private ScheduledExecutorService scheduler;
+    private WriteBehindQueue queue;
+    private final AtomicLong sent = new AtomicLong();
+
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class RoundTrips {
+        public long roundTrips;
+    }
+
+    @Setup
+    public void setup() {
+        database = Executors.newScheduledThreadPool(4);
+        scheduler = Executors.newSingleThreadScheduledExecutor();
+        queue = new WriteBehindQueue(this::write, scheduler, 10_000, 500, 10, 3, 100);
+    }
+
+    @TearDown
+    public void tearDown() {
+        database.shutdownNow();
+        scheduler.shutdownNow();
+    }
+
+    private CompletableFuture<Void> write(Map<String, Object> updates) {
+        sent.incrementAndGet();
+        CompletableFuture<Void> ack = new CompletableFuture<>();
+        database.schedule(() -> ack.complete(null), dbLatencyMillis, TimeUnit.MILLISECONDS);
+        return ack;
+    }
+
+    @Benchmark
+    public void direct(RoundTrips counters) {
+        run(counters, (i) -> write(Map.of("QR/client" + i % CLIENTS + "/" + i, "record", "QRImages/client" + i % CLIENTS + "/" + i, "image")));
+    }
+
+    @Benchmark
+    public void writeBehind(RoundTrips counters) {
+        run(counters, (i) -> queue.submit("client" + i % CLIENTS,
+                Map.of("QR/client" + i % CLIENTS + "/" + i, "record", "QRImages/client" + i % CLIENTS + "/" + i, "image")));
+    }
+
+    private void run(RoundTrips counters, Function<Integer, CompletableFuture<Void>> insert) {
+        long before = sent.get();
+        CompletableFuture<?>[] acks = new CompletableFuture[INSERTS];
+        for (int i = 0; i < INSERTS; i++) {
+            acks[i] = insert.apply(i);
+        }
+        CompletableFuture.allOf(acks).join();
+        counters.roundTrips += sent.get() - before;
+    }
+
+    public static void main(String[] args) throws Exception {
+        org.openjdk.jmh.Main.main(args);
+    }
+}
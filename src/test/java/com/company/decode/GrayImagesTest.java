@@ -0,0 +1,165 @@
+package com.company.decode;
+
+import com.google.zxing.LuminanceSource;
+import com.google.zxing.client.j2se.BufferedImageLuminanceSource;
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GrayImagesTest {
+
+    @Test
+    void convertsLikeZxing() throws Exception {
+        BufferedImage gradient = gradient(BufferedImage.TYPE_INT_ARGB);
+        gradient.setRGB(3, 4, 0x00000000);
+        assertArrayEquals(new BufferedImageLuminanceSource(gradient).getMatrix(), GrayImages.toGray(gradient, null).getMatrix());
+
+        // Decoded PNGs come back as interleaved byte rasters
+        byte[] png = encode(gradient(BufferedImage.TYPE_INT_RGB), "png");
+        BufferedImage decoded = ImageIO.read(new ByteArrayInputStream(png));
+        assertArrayEquals(new BufferedImageLuminanceSource(decoded).getMatrix(),
+                GrayImages.read(png, png.length, new BufferPool(1 << 20), Long.MAX_VALUE).getMatrix());
+
+        BufferedImage bilevel = new BufferedImage(37, 11, BufferedImage.TYPE_BYTE_BINARY);
+        for (int x = 0; x < 37; x += 3) {
+            bilevel.setRGB(x, x % 11, 0xFFFFFFFF);
+        }
+        assertArrayEquals(new BufferedImageLuminanceSource(bilevel).getMatrix(), GrayImages.toGray(bilevel, null).getMatrix());
+    }
+
+    @Test
+    void readsPngsRowByRowLikeImageIo() throws Exception {
+        BufferedImage transparent = gradient(BufferedImage.TYPE_INT_ARGB);
+        transparent.setRGB(5, 6, 0x00123456);
+        BufferedImage gray = new BufferedImage(64, 48, BufferedImage.TYPE_BYTE_GRAY);
+        gray.getGraphics().drawImage(gradient(BufferedImage.TYPE_INT_RGB), 0, 0, null);
+        BufferedImage bilevel = new BufferedImage(37, 11, BufferedImage.TYPE_BYTE_BINARY);
+        bilevel.setRGB(4, 5, 0xFFFFFFFF);
+        BufferedImage indexed = new BufferedImage(64, 48, BufferedImage.TYPE_BYTE_INDEXED);
+        indexed.getGraphics().drawImage(gradient(BufferedImage.TYPE_INT_RGB), 0, 0, null);
+
+        for (BufferedImage image : new BufferedImage[]{gradient(BufferedImage.TYPE_INT_RGB), transparent, gray, bilevel, indexed}) {
+            byte[] png = encode(image, "png");
+            byte[] expected = new BufferedImageLuminanceSource(ImageIO.read(new ByteArrayInputStream(png))).getMatrix();
+            assertArrayEquals(expected, GrayPngReader.read(png, png.length, null, Long.MAX_VALUE).getMatrix());
+        }
+
+        byte[] truncated = Arrays.copyOf(encode(gray, "png"), 200);
+        assertThrows(IOException.class, () -> GrayPngReader.read(truncated, truncated.length, null, Long.MAX_VALUE));
+    }
+
+    @Test
+    void rejectsMalformedAndOversizedPngHeaders() throws Exception {
+        // A chunk length near Integer.MAX_VALUE must not wrap around the bounds check
+        byte[] hugeChunk = png(Integer.MAX_VALUE - 4, header(64, 48));
+        assertThrows(IOException.class, () -> GrayPngReader.read(hugeChunk, hugeChunk.length, null, Long.MAX_VALUE));
+
+        byte[] shortHeader = png(8, header(64, 48));
+        assertThrows(IOException.class, () -> GrayPngReader.read(shortHeader, shortHeader.length, null, Long.MAX_VALUE));
+
+        // A few bytes claiming a 65535 x 65535 image are refused before any plane is allocated
+        BufferPool pool = new BufferPool(1 << 20);
+        byte[] oversized = png(13, header(65535, 65535));
+        assertThrows(IOException.class, () -> GrayImages.read(oversized, oversized.length, pool, 40_000_000));
+        byte[] rowOverflow = png(13, header(Integer.MAX_VALUE, 1));
+        assertThrows(IOException.class, () -> GrayPngReader.read(rowOverflow, rowOverflow.length, null, Long.MAX_VALUE));
+
+        byte[] photo = encode(gradient(BufferedImage.TYPE_INT_RGB), "jpg");
+        assertThrows(IOException.class, () -> GrayImages.read(photo, photo.length, pool, 64 * 47));
+        assertEquals(64 * 48, GrayImages.read(photo, photo.length, pool, 64 * 48).getMatrix().length);
+    }
+
+    @Test
+    void readsTheLuminanceOfJpegsWithoutColorConversion() throws Exception {
+        BufferedImage image = gradient(BufferedImage.TYPE_INT_RGB);
+        byte[] jpeg = encode(image, "jpg");
+        GrayLuminanceSource source = GrayImages.read(jpeg, jpeg.length, new BufferPool(1 << 20), Long.MAX_VALUE);
+
+        byte[] expected = new BufferedImageLuminanceSource(ImageIO.read(new ByteArrayInputStream(jpeg))).getMatrix();
+        byte[] actual = source.getMatrix();
+        assertEquals(expected.length, actual.length);
+        for (int i = 0; i < expected.length; i++) {
+            // Y is the luminance before the lossy round trip through RGB
+            assertEquals(expected[i] & 0xFF, actual[i] & 0xFF, 3);
+        }
+        assertThrows(IOException.class, () -> GrayImages.read(new byte[64], 64, null, Long.MAX_VALUE));
+    }
+
+    @Test
+    void cropsRotatesAndDownscalesInPlace() {
+        byte[] plane = new byte[6 * 4];
+        for (int i = 0; i < plane.length; i++) {
+            plane[i] = (byte) (i * 10);
+        }
+        GrayLuminanceSource source = new GrayLuminanceSource(plane, 6, 4, false);
+        assertSame(plane, source.getMatrix());
+
+        LuminanceSource crop = source.crop(1, 2, 3, 2);
+        assertArrayEquals(new byte[]{(byte) 130, (byte) 140, (byte) 150, (byte) 190, (byte) 200, (byte) 210}, crop.getMatrix());
+
+        // Counter-clockwise: the last column becomes the first row
+        LuminanceSource rotated = source.rotateCounterClockwise();
+        assertEquals(4, rotated.getWidth());
+        assertArrayEquals(new byte[]{50, 110, (byte) 170, (byte) 230}, rotated.getRow(0, null));
+
+        GrayLuminanceSource scaled = source.downscale(3, null);
+        assertEquals(3, scaled.getWidth());
+        assertEquals(2, scaled.getHeight());
+        // Average of 0, 10, 60 and 70
+        assertEquals(35, scaled.getMatrix()[0]);
+        assertSame(source, source.downscale(6, null));
+    }
+
+    @Test
+    void poolReusesReleasedBuffers() {
+        BufferPool pool = new BufferPool(100);
+        byte[] buffer = pool.acquire(40);
+        pool.release(buffer);
+        assertSame(buffer, pool.acquireAtLeast(30));
+        assertNotSame(buffer, pool.acquire(40));
+
+        pool.release(new byte[60]);
+        pool.release(new byte[60]);
+        assertEquals(60, pool.getRetainedBytes());
+        pool.release(new byte[200]);
+        assertEquals(60, pool.getRetainedBytes());
+    }
+
+    private static BufferedImage gradient(int type) {
+        BufferedImage image = new BufferedImage(64, 48, type);
+        for (int y = 0; y < 48; y++) {
+            for (int x = 0; x < 64; x++) {
+                image.setRGB(x, y, 0xFF000000 | (x * 4) << 16 | (y * 5) << 8 | 90);
+            }
+        }
+        return image;
+    }
+
+    // An 8-bit RGBA header
+    private static byte[] header(int width, int height) {
+        return ByteBuffer.allocate(13).putInt(width).putInt(height).put((byte) 8).put((byte) 6).array();
+    }
+
+    // The signature and one chunk whose length field says chunkLength, with a zero CRC
+    private static byte[] png(int chunkLength, byte[] body) {
+        return ByteBuffer.allocate(8 + 8 + body.length + 4)
+                .put(new byte[]{(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'})
+                .putInt(chunkLength).put("IHDR".getBytes(StandardCharsets.US_ASCII)).put(body)
+                .array();
+    }
+
+    private static byte[] encode(BufferedImage image, String format) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ImageIO.write(image, format, bytes);
+        return bytes.toByteArray();
+    }
+}
@@ -0,0 +1,110 @@
+package com.company.decode;
+
+import com.company.model.ParsedUrl;
+import com.company.model.SelfManagedParams;
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UrlParserTest {
+
+    // Unreserved characters, sub-delimiters, escapes and multi-byte text
+    private static final String ALPHABET = "abcXYZ019-._~!$'()*,;:@/?+= %&#é中😀";
+
+    @Test
+    void parsesSelfManagedCodesLikeUrlAndTypesTheirParameters() {
+        ParsedUrl parsed = UrlParser.parse("https://www.example.com/menu?apiKey=abc&id=42&isScanned=true&startDate=null&endDate=20261231");
+
+        assertEquals("https", parsed.getProtocol());
+        assertEquals("www.example.com", parsed.getHost());
+        assertEquals("/menu", parsed.getPath());
+        assertEquals(Map.of("apiKey", "abc", "id", "42", "isScanned", "true", "startDate", "null", "endDate", "20261231"),
+                parsed.getQueryParams());
+        assertEquals(new SelfManagedParams("abc", 42, true, null, "20261231"), parsed.getSelfManaged());
+
+        // Codes of other types aren't typed
+        assertNull(UrlParser.parse("https://www.example.com/?id=42").getSelfManaged());
+    }
+
+    @Test
+    void decodesEscapesAndKeepsMalformedOnesLiterally() {
+        ParsedUrl parsed = UrlParser.parse(" HTTP://user:pw@[::1]:8080/a%20b?q=caf%C3%A9+au+lait&%61piKey=k&id=7&bad=100%&odd=%zz&flag&=x&&a=1=2#top ");
+
+        assertEquals("http", parsed.getProtocol());
+        assertEquals("[::1]", parsed.getHost());
+        assertEquals("/a%20b", parsed.getPath());
+        Map<String, String> expected = new LinkedHashMap<>();
+        expected.put("q", "café+au+lait");
+        expected.put("apiKey", "k");
+        expected.put("id", "7");
+        expected.put("bad", "100%");
+        expected.put("odd", "%zz");
+        expected.put("flag", "");
+        expected.put("", "x");
+        expected.put("a", "1=2");
+        assertEquals(expected, parsed.getQueryParams());
+        assertEquals("k", parsed.getSelfManaged().getApiKey());
+    }
+
+    @Test
+    void rejectsTextWithoutAScheme() {
+        assertThrows(IllegalArgumentException.class, () -> UrlParser.parse("SKU-2024-000042"));
+        assertThrows(IllegalArgumentException.class, () -> UrlParser.parse("1http://example.com"));
+        assertThrows(IllegalArgumentException.class, () -> UrlParser.parse(""));
+    }
+
+    @Test
+    void fuzzedUrlsRoundTripAndMatchUri() {
+        Random random = new Random(42);
+        for (int round = 0; round < 20_000; round++) {
+            Map<String, String> params = new LinkedHashMap<>();
+            StringBuilder query = new StringBuilder();
+            int count = random.nextInt(5);
+            for (int i = 0; i < count; i++) {
+                String key = "k" + i + randomText(random, 4);
+                String value = randomText(random, 12);
+                params.put(key, value);
+                query.append(i == 0 ? "" : "&").append(encode(key)).append('=').append(encode(value));
+            }
+            String host = "h" + random.nextInt(1000) + ".example.com";
+            String path = "/" + encode(randomText(random, 8)).replace("%2F", "/");
+            String url = "https://" + host + (random.nextBoolean() ? ":" + random.nextInt(65536) : "") + path
+                    + (count > 0 ? "?" + query : "") + (random.nextBoolean() ? "#" + encode(randomText(random, 4)) : "");
+
+            ParsedUrl parsed = UrlParser.parse(url);
+            URI uri = URI.create(url);
+            assertEquals(uri.getHost(), parsed.getHost(), url);
+            assertEquals(uri.getRawPath(), parsed.getPath(), url);
+            assertEquals(params, parsed.getQueryParams(), url);
+
+            // Arbitrary text must either parse or be rejected as not a URL
+            String garbage = randomText(random, 24);
+            try {
+                UrlParser.parse(garbage);
+            } catch (IllegalArgumentException expected) {
+                // no scheme
+            }
+        }
+    }
+
+    private static String randomText(Random random, int maxLength) {
+        StringBuilder text = new StringBuilder();
+        int length = random.nextInt(maxLength + 1);
+        for (int i = 0; i < length; i++) {
+            text.appendCodePoint(ALPHABET.codePointAt(ALPHABET.offsetByCodePoints(0, random.nextInt(ALPHABET.codePointCount(0, ALPHABET.length())))));
+        }
+        return text.toString();
+    }
+
+    // Percent-encode everything but unreserved characters
+    private static String encode(String text) {
+        return URLEncoder.encode(text, StandardCharsets.UTF_8).replace("+", "%20").replace("*", "%2A").replace("%7E", "~");
+    }
+}
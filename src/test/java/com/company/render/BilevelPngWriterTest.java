@@ -0,0 +1,49 @@
+package com.company.render;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.EncodeHintType;
+import com.google.zxing.MultiFormatWriter;
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.qrcode.decoder.ErrorCorrectionLevel;
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class BilevelPngWriterTest {
+
+    @Test
+    void writtenPngDecodesToSamePixels() throws Exception {
+        BilevelPngWriter writer = new BilevelPngWriter(6);
+        for (int size : new int[]{21, 150, 1000}) {
+            BitMatrix matrix = new MultiFormatWriter().encode("https://www.example.com", BarcodeFormat.QR_CODE, size, size,
+                    Map.of(EncodeHintType.ERROR_CORRECTION, ErrorCorrectionLevel.H, EncodeHintType.MARGIN, 0));
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            writer.write(QrRasterRenderer.pack(matrix), out);
+            // The pooled deflater must be reset correctly between images
+            ByteArrayOutputStream again = new ByteArrayOutputStream();
+            writer.write(QrRasterRenderer.pack(matrix), again);
+            assertEquals(out.size(), again.size());
+
+            BufferedImage image = ImageIO.read(new ByteArrayInputStream(out.toByteArray()));
+            assertEquals(matrix.getWidth(), image.getWidth());
+            assertEquals(matrix.getHeight(), image.getHeight());
+            for (int y = 0; y < image.getHeight(); y++) {
+                for (int x = 0; x < image.getWidth(); x++) {
+                    assertEquals(matrix.get(x, y) ? 0xFF000000 : 0xFFFFFFFF, image.getRGB(x, y));
+                }
+            }
+        }
+    }
+
+    @Test
+    void rejectsInvalidCompressionLevel() {
+        assertThrows(IllegalArgumentException.class, () -> new BilevelPngWriter(10));
+    }
+}
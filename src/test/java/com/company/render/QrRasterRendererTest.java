@@ -0,0 +1,70 @@
+package com.company.render;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.BinaryBitmap;
+import com.google.zxing.EncodeHintType;
+import com.google.zxing.MultiFormatReader;
+import com.google.zxing.MultiFormatWriter;
+import com.google.zxing.client.j2se.BufferedImageLuminanceSource;
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.common.HybridBinarizer;
+import com.google.zxing.qrcode.decoder.ErrorCorrectionLevel;
+import com.google.zxing.qrcode.encoder.Encoder;
+import com.google.zxing.qrcode.encoder.QRCode;
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class QrRasterRendererTest {
+
+    private static final String TEXT = "https://www.example.com?apiKey=abc&id=7&isScanned=false";
+
+    @Test
+    void packedRasterMatchesMatrix() throws Exception {
+        for (int size : new int[]{37, 150, 301, 1000}) {
+            BitMatrix matrix = encode(size);
+            PackedBitRaster raster = QrRasterRenderer.pack(matrix);
+            BufferedImage image = QrRasterRenderer.toBufferedImage(raster);
+
+            assertEquals(BufferedImage.TYPE_BYTE_BINARY, image.getType());
+            for (int y = 0; y < matrix.getHeight(); y++) {
+                for (int x = 0; x < matrix.getWidth(); x++) {
+                    assertEquals(matrix.get(x, y), raster.isBlack(x, y));
+                    assertEquals(matrix.get(x, y) ? 0xFF000000 : 0xFFFFFFFF, image.getRGB(x, y));
+                }
+            }
+        }
+    }
+
+    @Test
+    void modulePackMatchesQRCodeWriter() throws Exception {
+        QRCode code = Encoder.encode(TEXT, ErrorCorrectionLevel.M);
+        for (int size : new int[]{10, 37, 150, 301, 1000}) {
+            BitMatrix matrix = encode(size);
+            PackedBitRaster raster = QrRasterRenderer.pack(code.getMatrix(), size, size, 0);
+
+            assertEquals(matrix.getWidth(), raster.getWidth());
+            assertEquals(matrix.getHeight(), raster.getHeight());
+            for (int y = 0; y < matrix.getHeight(); y++) {
+                for (int x = 0; x < matrix.getWidth(); x++) {
+                    assertEquals(matrix.get(x, y), raster.isBlack(x, y));
+                }
+            }
+        }
+    }
+
+    @Test
+    void renderedImageDecodes() throws Exception {
+        BufferedImage image = QrRasterRenderer.toBufferedImage(encode(300));
+        BinaryBitmap bitmap = new BinaryBitmap(new HybridBinarizer(new BufferedImageLuminanceSource(image)));
+        assertEquals(TEXT, new MultiFormatReader().decode(bitmap).getText());
+    }
+
+    private static BitMatrix encode(int size) throws Exception {
+        return new MultiFormatWriter().encode(TEXT, BarcodeFormat.QR_CODE, size, size,
+                Map.of(EncodeHintType.ERROR_CORRECTION, ErrorCorrectionLevel.M, EncodeHintType.MARGIN, 0));
+    }
+}
@@ -0,0 +1,74 @@
+package com.company.render;
+
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.qrcode.decoder.ErrorCorrectionLevel;
+import com.google.zxing.qrcode.encoder.Encoder;
+import com.google.zxing.qrcode.encoder.QRCode;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SvgWriterTest {
+
+    private static final Pattern RECTANGLE = Pattern.compile("m(-?\\d+) ?(-?\\d+)h(\\d+)v(\\d+)h-(\\d+)z");
+
+    @Test
+    void pathCoversExactlyTheDarkModules() throws Exception {
+        QRCode code = Encoder.encode("https://www.example.com?apiKey=abc&id=7&isScanned=false", ErrorCorrectionLevel.M);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        SvgWriter.write(code.getMatrix(), 4, 300, 300, out);
+        String svg = out.toString(StandardCharsets.US_ASCII);
+
+        int side = code.getMatrix().getWidth();
+        assertTrue(svg.contains("viewBox=\"0 0 " + (side + 8) + " " + (side + 8) + "\""));
+        int[][] painted = new int[side + 8][side + 8];
+        int rectangles = 0;
+        int x = 0;
+        int y = 0;
+        Matcher matcher = RECTANGLE.matcher(svg);
+        while (matcher.find()) {
+            rectangles++;
+            // Moves are relative to the start of the previous rectangle
+            x += Integer.parseInt(matcher.group(1));
+            y += Integer.parseInt(matcher.group(2));
+            for (int dy = 0; dy < Integer.parseInt(matcher.group(4)); dy++) {
+                for (int dx = 0; dx < Integer.parseInt(matcher.group(3)); dx++) {
+                    painted[y + dy][x + dx]++;
+                }
+            }
+        }
+
+        int runs = 0;
+        for (int row = 0; row < side; row++) {
+            for (int column = 0; column < side; column++) {
+                boolean dark = code.getMatrix().get(column, row) == 1;
+                assertEquals(dark ? 1 : 0, painted[row + 4][column + 4]);
+                if (dark && (column == 0 || code.getMatrix().get(column - 1, row) != 1)) {
+                    runs++;
+                }
+            }
+        }
+        // Repeated runs, such as the finder pattern centers, are merged into taller rectangles
+        assertTrue(rectangles < runs);
+    }
+
+    @Test
+    void linearBarsSpanTheWholeHeight() throws Exception {
+        BitMatrix bars = Symbology.CODE_128.encode("ABC-123", ErrorCorrectionLevel.M);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        SvgWriter.write(bars, 10, true, 400, 200, out);
+        String svg = out.toString(StandardCharsets.US_ASCII);
+        assertTrue(svg.contains("viewBox=\"0 0 " + (bars.getWidth() + 20) + " 1\" preserveAspectRatio=\"none\""));
+        Matcher matcher = RECTANGLE.matcher(svg);
+        assertTrue(matcher.find());
+        do {
+            assertEquals("0", matcher.group(2));
+            assertEquals("1", matcher.group(4));
+        } while (matcher.find());
+    }
+}
@@ -0,0 +1,73 @@
+package com.company.render;
+
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.qrcode.decoder.ErrorCorrectionLevel;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SymbologyTest {
+
+    @Test
+    void parsesFormatNames() {
+        assertEquals(Symbology.QR_CODE, Symbology.parse(null));
+        assertEquals(Symbology.CODE_128, Symbology.parse("code128"));
+        assertEquals(Symbology.EAN_13, Symbology.parse("EAN-13"));
+        assertEquals(Symbology.DATA_MATRIX, Symbology.parse("DATA_MATRIX"));
+        assertThrows(IllegalArgumentException.class, () -> Symbology.parse("UPC_E"));
+    }
+
+    @Test
+    void validatesPayloadsPerFormat() {
+        // The check digit is appended, or checked when given
+        assertEquals("4006381333931", Symbology.EAN_13.validate("400638133393"));
+        assertEquals("4006381333931", Symbology.EAN_13.validate("4006381333931"));
+        assertThrows(IllegalArgumentException.class, () -> Symbology.EAN_13.validate("4006381333932"));
+        assertThrows(IllegalArgumentException.class, () -> Symbology.EAN_13.validate("40063813339a"));
+
+        assertThrows(IllegalArgumentException.class, () -> Symbology.CODE_128.validate("x".repeat(81)));
+        assertThrows(IllegalArgumentException.class, () -> Symbology.CODE_128.validate("café"));
+        assertThrows(IllegalArgumentException.class, () -> Symbology.AZTEC.validate("日本"));
+        assertThrows(IllegalArgumentException.class, () -> Symbology.PDF_417.validate(""));
+        // Too long for the largest symbol
+        assertThrows(IllegalArgumentException.class, () -> Symbology.DATA_MATRIX.encode("x".repeat(4000), ErrorCorrectionLevel.M));
+    }
+
+    @Test
+    void scalesModulesWithQuietZone() {
+        BitMatrix modules = Symbology.DATA_MATRIX.encode("ABC-123", ErrorCorrectionLevel.M);
+        int side = modules.getWidth();
+        int quietZone = Symbology.DATA_MATRIX.getQuietZone();
+        PackedBitRaster raster = QrRasterRenderer.pack(modules, 100, 100, quietZone, false);
+        int scale = QrRasterRenderer.moduleScale(modules, 100, 100, quietZone, false);
+        int padding = (100 - side * scale) / 2;
+
+        assertEquals(100, raster.getWidth());
+        assertEquals(100 / (side + 2 * quietZone), scale);
+        for (int y = 0; y < 100; y++) {
+            for (int x = 0; x < 100; x++) {
+                int moduleX = Math.floorDiv(x - padding, scale);
+                int moduleY = Math.floorDiv(y - padding, scale);
+                boolean inside = moduleX >= 0 && moduleX < side && moduleY >= 0 && moduleY < side;
+                assertEquals(inside && modules.get(moduleX, moduleY), raster.isBlack(x, y));
+            }
+        }
+
+        // The binarizer reads the raster's bits as they are
+        BitMatrix black = new PackedBitBinarizer(raster).getBlackMatrix();
+        for (int y = 0; y < 100; y++) {
+            for (int x = 0; x < 100; x++) {
+                assertEquals(raster.isBlack(x, y), black.get(x, y));
+            }
+        }
+        assertEquals(0xFF, new PackedBitLuminanceSource(raster).getRow(0, null)[0] & 0xFF);
+
+        // Linear symbols repeat their row over the whole height
+        BitMatrix bars = Symbology.CODE_128.encode("ABC-123", ErrorCorrectionLevel.M);
+        PackedBitRaster linear = QrRasterRenderer.pack(bars, 300, 40, Symbology.CODE_128.getQuietZone(), true);
+        assertEquals(40, linear.getHeight());
+        for (int x = 0; x < 300; x++) {
+            assertEquals(linear.isBlack(x, 0), linear.isBlack(x, 39));
+        }
+    }
+}
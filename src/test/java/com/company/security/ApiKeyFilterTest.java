@@ -0,0 +1,114 @@
+package com.company.security;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ApiKeyFilterTest {
+
+    @Test
+    void authenticatesClientAndAdminKeys() throws Exception {
+        ApiKeyFilter filter = filter("client-1,client-2," + ApiKeyIndex.digestOf("client-3"), "admin", "", 0);
+
+        assertEquals(200, status(filter, "client-2", "/api/barcodes/generateQRCode"));
+        // Configured by digest only
+        assertEquals(200, status(filter, "client-3", "/api/barcodes/generateQRCode"));
+        assertEquals(200, status(filter, "admin", "/api/barcodes/scanStats"));
+        assertEquals(401, status(filter, "client-1", "/api/barcodes/scanStats"));
+        assertEquals(401, status(filter, "client-4", "/api/barcodes/generateQRCode"));
+        assertEquals(401, status(filter, null, "/api/barcodes/generateQRCode"));
+        assertEquals(401, status(filter, "", "/api/barcodes/generateQRCode"));
+
+        MockHttpServletResponse response = response(filter, "wrong", "/api/barcodes/generateQRCode");
+        assertEquals("application/json", response.getContentType());
+        assertEquals("{\"returnCode\":\"401\",\"returnMessage\":\"Unauthorized: Invalid API Key\"}", response.getContentAsString());
+    }
+
+    @Test
+    void rejectsMalformedDigests() {
+        assertThrows(IllegalArgumentException.class, () -> ApiKeyIndex.of("sha256:abcd", ""));
+        assertThrows(IllegalArgumentException.class, () -> ApiKeyIndex.of("sha256:not-hex", ""));
+    }
+
+    @Test
+    void rateLimitsClientKeysButNotAdminKeys() throws Exception {
+        ApiKeyFilter filter = filter("client-1,client-2", "admin", "", 1);
+        ReflectionTestUtils.setField(filter, "rateLimitBurst", 3);
+        filter.afterPropertiesSet();
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals(200, status(filter, "client-1", "/api/barcodes/generateQRCode"));
+        }
+        MockHttpServletResponse limited = response(filter, "client-1", "/api/barcodes/generateQRCode");
+        assertEquals(429, limited.getStatus());
+        assertEquals("1", limited.getHeader("Retry-After"));
+        // Buckets are per key
+        assertEquals(200, status(filter, "client-2", "/api/barcodes/generateQRCode"));
+        for (int i = 0; i < 10; i++) {
+            assertEquals(200, status(filter, "admin", "/api/barcodes/generateQRCode"));
+        }
+    }
+
+    @Test
+    void reloadsKeysWhenTheFileChanges(@TempDir Path dir) throws Exception {
+        Path file = dir.resolve("api-keys.properties");
+        Files.writeString(file, "API_KEYS=from-file\n");
+        ApiKeyFilter filter = filter("from-env", "admin", file.toString(), 0);
+        try {
+            assertEquals(200, status(filter, "from-file", "/api/barcodes/generateQRCode"));
+            assertEquals(401, status(filter, "from-env", "/api/barcodes/generateQRCode"));
+            // Keys missing from the file fall back to the configured ones
+            assertEquals(200, status(filter, "admin", "/api/barcodes/scanStats"));
+
+            Files.writeString(file, "API_KEYS=rotated\nAPI_KEYS_ADMIN=new-admin\n");
+            Files.setLastModifiedTime(file, FileTime.fromMillis(Files.getLastModifiedTime(file).toMillis() + 1000));
+            filter.reloadKeys();
+            assertEquals(200, status(filter, "rotated", "/api/barcodes/generateQRCode"));
+            assertEquals(401, status(filter, "from-file", "/api/barcodes/generateQRCode"));
+            assertEquals(200, status(filter, "new-admin", "/api/barcodes/scanStats"));
+
+            // A broken file keeps the current keys
+            Files.writeString(file, "API_KEYS=sha256:00\n");
+            Files.setLastModifiedTime(file, FileTime.fromMillis(Files.getLastModifiedTime(file).toMillis() + 2000));
+            filter.reloadKeys();
+            assertEquals(200, status(filter, "rotated", "/api/barcodes/generateQRCode"));
+        } finally {
+            filter.destroy();
+        }
+    }
+
+    private static ApiKeyFilter filter(String apiKeys, String adminApiKeys, String apiKeysFile, double rateLimitPerSecond) throws Exception {
+        ApiKeyFilter filter = new ApiKeyFilter();
+        ReflectionTestUtils.setField(filter, "apiKeys", apiKeys);
+        ReflectionTestUtils.setField(filter, "adminApiKeys", adminApiKeys);
+        ReflectionTestUtils.setField(filter, "apiKeysFile", apiKeysFile);
+        ReflectionTestUtils.setField(filter, "reloadMillis", 60_000L);
+        ReflectionTestUtils.setField(filter, "rateLimitPerSecond", rateLimitPerSecond);
+        ReflectionTestUtils.setField(filter, "rateLimitBurst", 100);
+        filter.afterPropertiesSet();
+        return filter;
+    }
+
+    private static int status(ApiKeyFilter filter, String apiKey, String path) throws Exception {
+        return response(filter, apiKey, path).getStatus();
+    }
+
+    private static MockHttpServletResponse response(ApiKeyFilter filter, String apiKey, String path) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", path);
+        if (apiKey != null) {
+            request.addHeader("x-api-key", apiKey);
+        }
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, new MockFilterChain());
+        return response;
+    }
+}
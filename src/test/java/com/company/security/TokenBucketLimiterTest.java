@@ -0,0 +1,56 @@
+package com.company.security;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TokenBucketLimiterTest {
+
+    private static final long SECOND = 1_000_000_000L;
+
+    @Test
+    void allowsTheBurstThenRefillsAtTheRate() {
+        TokenBucketLimiter limiter = new TokenBucketLimiter(10, 5);
+        long now = 0;
+        for (int i = 0; i < 5; i++) {
+            assertEquals(0, limiter.tryAcquire("key", now));
+        }
+        assertEquals(SECOND / 10, limiter.tryAcquire("key", now));
+
+        // One token back after 100 ms
+        now += SECOND / 10;
+        assertEquals(0, limiter.tryAcquire("key", now));
+        assertTrue(limiter.tryAcquire("key", now) > 0);
+
+        // An idle bucket fills up to the burst and no further
+        now += 10 * SECOND;
+        for (int i = 0; i < 5; i++) {
+            assertEquals(0, limiter.tryAcquire("key", now));
+        }
+        assertTrue(limiter.tryAcquire("key", now) > 0);
+    }
+
+    @Test
+    void grantsExactlyTheBurstUnderContention() {
+        TokenBucketLimiter limiter = new TokenBucketLimiter(0.001, 1000);
+        AtomicInteger granted = new AtomicInteger();
+        IntStream.range(0, 5000).parallel().forEach(i -> {
+            if (limiter.tryAcquire("key", 0) == 0) {
+                granted.incrementAndGet();
+            }
+        });
+        assertEquals(1000, granted.get());
+    }
+
+    @Test
+    void dropsBucketsOfRemovedKeys() {
+        TokenBucketLimiter limiter = new TokenBucketLimiter(1, 1);
+        assertEquals(0, limiter.tryAcquire("old", 0));
+        assertTrue(limiter.tryAcquire("old", 0) > 0);
+        limiter.retainAll(ApiKeyIndex.of("new", ""));
+        assertEquals(0, limiter.tryAcquire("old", 0));
+    }
+}
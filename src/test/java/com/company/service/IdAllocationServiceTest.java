@@ -0,0 +1,56 @@
+package com.company.service;
+
+import com.company.model.QrData;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IdAllocationServiceTest {
+
+    private final LocalStoreService store = new LocalStoreService();
+
+    @BeforeEach
+    void openStore() {
+        ReflectionTestUtils.setField(store, "path", "");
+        ReflectionTestUtils.setField(store, "commitDelayMillis", 1000);
+        store.initStore();
+    }
+
+    @AfterEach
+    void closeStore() {
+        store.close();
+    }
+
+    @Test
+    void blocksLeasedBeforeAndAfterDeleteAllDontOverlap() throws Exception {
+        IdAllocationService first = allocator(10);
+        IdAllocationService second = allocator(10);
+
+        Set<Integer> ids = new HashSet<>();
+        for (int i = 0; i < 3; i++) {
+            int id = first.nextId("key").get();
+            store.InsertData("key", id, QrData.builder().url("https://example.com/" + id).build());
+            ids.add(id);
+        }
+        store.deleteAllData("key").get();
+
+        // The first instance keeps serving its old block while the second leases a new one
+        for (int i = 0; i < 10; i++) {
+            assertTrue(ids.add(second.nextId("key").get()));
+            assertTrue(ids.add(first.nextId("key").get()));
+        }
+    }
+
+    private IdAllocationService allocator(int blockSize) {
+        IdAllocationService allocator = new IdAllocationService();
+        ReflectionTestUtils.setField(allocator, "qrRepository", store);
+        ReflectionTestUtils.setField(allocator, "blockSize", blockSize);
+        return allocator;
+    }
+}
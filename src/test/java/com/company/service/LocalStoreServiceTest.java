@@ -0,0 +1,150 @@
+package com.company.service;
+
+import com.company.model.QrData;
+import com.company.model.QrPage;
+import com.company.model.ScanTally;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LocalStoreServiceTest {
+
+    private LocalStoreService store = open("");
+
+    @AfterEach
+    void closeStore() {
+        store.close();
+    }
+
+    @Test
+    void storesMetadataAndImagesSeparately() throws Exception {
+        store.InsertData("key", 0, qr("https://a.example", "AAAA"));
+
+        Map<String, Object> record = (Map<String, Object>) store.getDataByClient("key").get().get("0");
+        assertEquals("https://a.example", record.get("url"));
+        assertEquals(false, record.get("scanned"));
+        assertFalse(record.containsKey("base64Image"));
+
+        Map<String, Object> withImage = (Map<String, Object>) store.getDataByClient("key", Set.of("url", "base64Image")).get().get("0");
+        assertEquals(Map.of("url", "https://a.example", "base64Image", "AAAA"), withImage);
+    }
+
+    @Test
+    void pagesInIdOrder() throws Exception {
+        for (int id = 0; id < 12; id++) {
+            store.InsertData("key", id, qr("https://example.com/" + id, null));
+        }
+
+        QrPage first = store.getDataByClientPage("key", null, null, 5).get();
+        assertEquals(List.of("0", "1", "2", "3", "4"), List.copyOf(first.getRecords().keySet()));
+        assertEquals("5", first.getNextCursor());
+
+        QrPage last = store.getDataByClientPage("key", null, "10", 5).get();
+        assertEquals(List.of("10", "11"), List.copyOf(last.getRecords().keySet()));
+        assertNull(last.getNextCursor());
+    }
+
+    @Test
+    void reservesConsecutiveIdsSeededFromStoredRecords() throws Exception {
+        store.InsertData("key", 7, qr("https://a.example", null));
+        assertEquals(8, store.reserveIds("key", 3).get());
+        assertEquals(11, store.reserveIds("key", 1).get());
+        assertEquals(0, store.reserveIds("other", 1).get());
+    }
+
+    @Test
+    void updateAndDeleteFailForMissingRecords() throws Exception {
+        assertThrows(ExecutionException.class, () -> store.updateData("key", 1, qr("https://a.example", null)).get());
+        assertThrows(ExecutionException.class, () -> store.deleteData("key", 1).get());
+        assertThrows(ExecutionException.class, () -> store.getDataByClient("key").get());
+        // Streaming tells a client without data apart from a failed read by this type
+        ExecutionException noData = assertThrows(ExecutionException.class, () -> store.getDataByClientPage("key", null, null, 5).get());
+        assertInstanceOf(NoSuchElementException.class, noData.getCause());
+
+        store.InsertData("key", 1, qr("https://a.example", "AAAA"));
+        store.updateData("key", 1, qr("https://b.example", "BBBB")).get();
+        Map<String, Object> record = (Map<String, Object>) store.getDataByClient("key", Set.of("url", "base64Image")).get().get("1");
+        assertEquals(Map.of("url", "https://b.example", "base64Image", "BBBB"), record);
+
+        store.deleteData("key", 1).get();
+        assertThrows(ExecutionException.class, () -> store.getDataByClient("key").get());
+    }
+
+    @Test
+    void mergesScansIntoExistingRecordsAndKeepsThemOnUpdate() throws Exception {
+        store.InsertData("key", 1, qr("https://a.example", null));
+        store.recordScans("key", Map.of(1, new ScanTally(3, 100, 200), 2, new ScanTally(1, 150, 150))).get();
+        store.recordScans("key", Map.of(1, new ScanTally(2, 50, 180))).get();
+
+        Map<String, Object> scans = Map.of("scanned", true, "scanCount", 5L, "firstScanAt", 50L, "lastScanAt", 200L);
+        Map<String, Object> records = store.getDataByClient("key", Set.of("scanned", "scanCount", "firstScanAt", "lastScanAt")).get();
+        // Unknown ids are not created
+        assertEquals(Map.of("1", scans), records);
+
+        store.updateData("key", 1, qr("https://b.example", null)).get();
+        Map<String, Object> updated = (Map<String, Object>) store.getDataByClient("key").get().get("1");
+        assertEquals("https://b.example", updated.get("url"));
+        assertEquals(5L, updated.get("scanCount"));
+        assertEquals(200L, updated.get("lastScanAt"));
+    }
+
+    @Test
+    void patchesAndUpdatesKeepScansFlushedConcurrently() throws Exception {
+        store.InsertData("key", 1, qr("https://a.example", null));
+        Thread scans = new Thread(() -> {
+            for (int i = 0; i < 2000; i++) {
+                store.recordScans("key", Map.of(1, new ScanTally(1, i, i)));
+            }
+        });
+        scans.start();
+        for (int i = 0; i < 2000; i++) {
+            if (i % 2 == 0) {
+                store.patchData("key", 1, Map.of("endDate", "2027010" + i % 10)).get();
+            } else {
+                store.updateData("key", 1, qr("https://a.example/" + i, null)).get();
+            }
+        }
+        scans.join();
+
+        assertEquals(2000L, store.getRecord("key", 1).get().getScanCount());
+    }
+
+    @Test
+    void persistsAcrossReopen(@TempDir Path dir) throws Exception {
+        String file = dir.resolve("qr.mv.db").toString();
+        LocalStoreService fileStore = open(file);
+        fileStore.insertBatch("key", Map.of(0, qr("https://a.example", "AAAA"), 1, qr("https://b.example", "BBBB"))).get();
+        fileStore.reserveIds("key", 2).get();
+        fileStore.close();
+
+        LocalStoreService reopened = open(file);
+        try {
+            assertEquals(2, reopened.getDataByClient("key").get().size());
+            assertEquals(4, reopened.reserveIds("key", 1).get());
+        } finally {
+            reopened.close();
+        }
+    }
+
+    private static QrData qr(String url, String image) {
+        return QrData.builder().url(url).size(300).errorCorrection("M").base64Image(image).type(1).build();
+    }
+
+    private static LocalStoreService open(String path) {
+        LocalStoreService localStore = new LocalStoreService();
+        ReflectionTestUtils.setField(localStore, "path", path);
+        ReflectionTestUtils.setField(localStore, "commitDelayMillis", 1000);
+        localStore.initStore();
+        return localStore;
+    }
+}
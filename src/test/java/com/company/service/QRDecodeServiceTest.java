@@ -0,0 +1,194 @@
+package com.company.service;
+
+import com.company.model.DecodeStats;
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.EncodeHintType;
+import com.google.zxing.MultiFormatWriter;
+import com.google.zxing.NotFoundException;
+import com.google.zxing.Result;
+import com.google.zxing.client.j2se.MatrixToImageWriter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class QRDecodeServiceTest {
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(2);
+
+    @AfterEach
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void findsEveryCodeInOneImage() throws Exception {
+        BufferedImage sheet = sheet(1200, 900);
+        draw(sheet, "https://example.com/1", BarcodeFormat.QR_CODE, 100, 100, 250);
+        draw(sheet, "https://example.com/2", BarcodeFormat.QR_CODE, 700, 150, 250);
+        draw(sheet, "https://example.com/3", BarcodeFormat.QR_CODE, 400, 550, 250);
+
+        QRDecodeService service = service(Long.MAX_VALUE);
+        assertEquals(Set.of("https://example.com/1", "https://example.com/2", "https://example.com/3"),
+                texts(service.decode(sheet, QRDecodeService.QR_ONLY, true)));
+        assertEquals(1, service.decode(sheet, QRDecodeService.QR_ONLY, false).size());
+    }
+
+    @Test
+    void searchesLargeImagesInTiles() throws Exception {
+        BufferedImage sheet = sheet(2400, 1800);
+        draw(sheet, "https://example.com/corner", BarcodeFormat.QR_CODE, 40, 40, 180);
+        // Straddles the first tile boundary, so only an overlapping tile holds it whole
+        draw(sheet, "https://example.com/boundary", BarcodeFormat.QR_CODE, 420, 700, 180);
+        draw(sheet, "https://example.com/edge", BarcodeFormat.QR_CODE, 2200, 1600, 180);
+        // Larger than the overlap, found by the downscaled pass
+        draw(sheet, "https://example.com/large", BarcodeFormat.QR_CODE, 1100, 500, 900);
+
+        QRDecodeService service = service(1_000_000);
+        assertEquals(Set.of("https://example.com/corner", "https://example.com/boundary",
+                        "https://example.com/edge", "https://example.com/large"),
+                texts(service.decode(sheet, QRDecodeService.QR_ONLY, true)));
+        assertEquals(1, service.decode(sheet, QRDecodeService.QR_ONLY, false).size());
+    }
+
+    @Test
+    void onlyLooksForTheRequestedFormats() throws Exception {
+        BufferedImage sheet = sheet(800, 400);
+        draw(sheet, "LABEL-0042", BarcodeFormat.CODE_128, 100, 100, 500);
+
+        QRDecodeService service = service(Long.MAX_VALUE);
+        assertThrows(NotFoundException.class, () -> service.decode(sheet, QRDecodeService.QR_ONLY, true));
+        assertEquals(Set.of("LABEL-0042"),
+                texts(service.decode(sheet, QRDecodeService.parseFormats("qr_code, code_128"), true)));
+    }
+
+    @Test
+    void escalatesOnlyWhenTheFastPassMisses() throws Exception {
+        QRDecodeService service = service(Long.MAX_VALUE);
+
+        BufferedImage large = sheet(1800, 1200);
+        draw(large, "https://example.com/large", BarcodeFormat.QR_CODE, 600, 300, 600);
+        assertEquals("https://example.com/large", service.decode(large, QRDecodeService.QR_ONLY, false).get(0).getText());
+
+        // Three pixels per module at full size, too fine for the third-size plane
+        BufferedImage fine = sheet(1800, 1200);
+        draw(fine, "https://example.com/fine", BarcodeFormat.QR_CODE, 100, 100, 87);
+        assertEquals("https://example.com/fine", service.decode(fine, QRDecodeService.QR_ONLY, false).get(0).getText());
+
+        BufferedImage vertical = rotate(sheetWith("LABEL-0042", BarcodeFormat.CODE_128, 900, 400, 100, 100, 600));
+        assertEquals("LABEL-0042", service.decode(vertical, EnumSet.of(BarcodeFormat.CODE_128), false).get(0).getText());
+
+        assertThrows(NotFoundException.class, () -> service.decode(sheet(1800, 1200), QRDecodeService.QR_ONLY, false));
+
+        DecodeStats stats = service.getStats();
+        assertEquals(4, stats.getDecodes());
+        assertEquals(1, stats.getMisses());
+        assertEquals(4, stats.getStages().get("FAST").getAttempts());
+        assertEquals(1, stats.getStages().get("FAST").getHits());
+        assertEquals(1, stats.getStages().get("ROTATED").getHits());
+        assertEquals(2, stats.getStages().get("FULL").getAttempts());
+        assertEquals(1, stats.getStages().get("FULL").getHits());
+        assertEquals(1, stats.getStages().get("TRY_HARDER").getAttempts());
+        assertEquals(0, stats.getStages().get("TRY_HARDER").getHits());
+    }
+
+    @Test
+    void decodesUploadedJpegAndPngBytes() throws Exception {
+        BufferedImage photo = sheetWith("https://example.com/upload", BarcodeFormat.QR_CODE, 1600, 1200, 500, 300, 500);
+        QRDecodeService service = service(Long.MAX_VALUE);
+        for (String format : List.of("jpg", "png")) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            ImageIO.write(photo, format, bytes);
+            List<Result> results = service.decode(new ByteArrayInputStream(bytes.toByteArray()), QRDecodeService.QR_ONLY, false);
+            assertEquals("https://example.com/upload", results.get(0).getText());
+        }
+        assertThrows(IOException.class, () -> service.decode(new ByteArrayInputStream(new byte[100]), QRDecodeService.QR_ONLY, false));
+    }
+
+    @Test
+    void parsesFormatLists() {
+        assertEquals(QRDecodeService.QR_ONLY, QRDecodeService.parseFormats(null));
+        assertEquals(EnumSet.of(BarcodeFormat.QR_CODE, BarcodeFormat.DATA_MATRIX), QRDecodeService.parseFormats("QR_CODE,DATA_MATRIX"));
+        assertThrows(IllegalArgumentException.class, () -> QRDecodeService.parseFormats("QR"));
+    }
+
+    @Test
+    void tilesCoverTheImageWithOverlap() {
+        List<int[]> tiles = service(0).tiles(1500, 1000);
+        // Offsets 0, 312, 624, 936, 988 across and 0, 312, 488 down
+        assertEquals(15, tiles.size());
+        for (int[] tile : tiles) {
+            assertTrue(tile[0] + tile[2] <= 1500 && tile[1] + tile[3] <= 1000);
+        }
+        int[] last = tiles.get(tiles.size() - 1);
+        assertEquals(1500, last[0] + last[2]);
+        assertEquals(1000, last[1] + last[3]);
+    }
+
+    private QRDecodeService service(long tileThresholdPixels) {
+        QRDecodeService service = new QRDecodeService();
+        ReflectionTestUtils.setField(service, "tileThresholdPixels", tileThresholdPixels);
+        ReflectionTestUtils.setField(service, "tileSize", 512);
+        ReflectionTestUtils.setField(service, "tileOverlap", 200);
+        ReflectionTestUtils.setField(service, "overviewSize", 1200);
+        ReflectionTestUtils.setField(service, "fastSize", 600);
+        ReflectionTestUtils.setField(service, "bufferPoolBytes", 64L << 20);
+        ReflectionTestUtils.setField(service, "maxPixels", 40_000_000L);
+        ReflectionTestUtils.setField(service, "decodeExecutor", executor);
+        service.initBufferPool();
+        return service;
+    }
+
+    private static Set<String> texts(List<Result> results) {
+        return results.stream().map(Result::getText).collect(Collectors.toSet());
+    }
+
+    private static BufferedImage sheet(int width, int height) {
+        BufferedImage sheet = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = sheet.createGraphics();
+        graphics.setColor(Color.WHITE);
+        graphics.fillRect(0, 0, width, height);
+        graphics.dispose();
+        return sheet;
+    }
+
+    private static BufferedImage sheetWith(String text, BarcodeFormat format, int width, int height, int x, int y, int size) throws Exception {
+        BufferedImage sheet = sheet(width, height);
+        draw(sheet, text, format, x, y, size);
+        return sheet;
+    }
+
+    private static BufferedImage rotate(BufferedImage image) {
+        BufferedImage rotated = new BufferedImage(image.getHeight(), image.getWidth(), BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                rotated.setRGB(y, image.getWidth() - 1 - x, image.getRGB(x, y));
+            }
+        }
+        return rotated;
+    }
+
+    private static void draw(BufferedImage sheet, String text, BarcodeFormat format, int x, int y, int size) throws Exception {
+        int height = format == BarcodeFormat.QR_CODE ? size : size / 3;
+        BufferedImage code = MatrixToImageWriter.toBufferedImage(new MultiFormatWriter()
+                .encode(text, format, size, height, Map.of(EncodeHintType.MARGIN, 2)));
+        Graphics2D graphics = sheet.createGraphics();
+        graphics.drawImage(code, x, y, null);
+        graphics.dispose();
+    }
+}
@@ -0,0 +1,78 @@
+package com.company.service;
+
+import com.company.model.ImageCacheStats;
+import com.company.render.QrImage;
+import com.google.zxing.qrcode.decoder.ErrorCorrectionLevel;
+import com.google.zxing.qrcode.encoder.Encoder;
+import com.google.zxing.qrcode.encoder.QRCode;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class QRImageCacheServiceTest {
+
+    @Test
+    void keyDependsOnEveryRenderParameter() {
+        String key = QRImageCacheService.key("https://www.example.com", 300, ErrorCorrectionLevel.M, "png");
+        assertEquals(key, QRImageCacheService.key("https://www.example.com", 300, ErrorCorrectionLevel.M, "png"));
+        assertNotEquals(key, QRImageCacheService.key("https://www.example.org", 300, ErrorCorrectionLevel.M, "png"));
+        assertNotEquals(key, QRImageCacheService.key("https://www.example.com", 301, ErrorCorrectionLevel.M, "png"));
+        assertNotEquals(key, QRImageCacheService.key("https://www.example.com", 300, ErrorCorrectionLevel.H, "png"));
+        assertNotEquals(key, QRImageCacheService.key("https://www.example.com", 300, ErrorCorrectionLevel.M, "svg"));
+    }
+
+    @Test
+    void countsHitsAndMisses() {
+        QRImageCacheService cacheService = cache(1024 * 1024);
+        QrImage image = new QrImage(new byte[]{1, 2, 3}, "AQID");
+
+        assertNull(cacheService.get("a"));
+        cacheService.put("a", image);
+        assertSame(image, cacheService.get("a"));
+
+        ImageCacheStats stats = cacheService.getStats();
+        assertTrue(stats.isEnabled());
+        assertEquals(1, stats.getHitCount());
+        assertEquals(1, stats.getMissCount());
+        assertEquals(image.weight(), stats.getSizeBytes());
+    }
+
+    @Test
+    void disabledWhenMaxBytesIsZero() {
+        QRImageCacheService cacheService = cache(0);
+        cacheService.put("a", new QrImage(new byte[]{1}, "AQ=="));
+        assertNull(cacheService.get("a"));
+        assertFalse(cacheService.getStats().isEnabled());
+    }
+
+    @Test
+    void symbolsAreKeyedByTextAndErrorCorrectionOnly() throws Exception {
+        QRImageCacheService cacheService = cache(0, 1024 * 1024);
+        QRCode code = Encoder.encode("https://www.example.com", ErrorCorrectionLevel.M);
+
+        assertNull(cacheService.getSymbol("https://www.example.com", ErrorCorrectionLevel.M));
+        cacheService.putSymbol("https://www.example.com", ErrorCorrectionLevel.M, code);
+        assertSame(code, cacheService.getSymbol("https://www.example.com", ErrorCorrectionLevel.M));
+        assertNull(cacheService.getSymbol("https://www.example.com", ErrorCorrectionLevel.H));
+
+        // The symbol tier works with the image tier disabled
+        ImageCacheStats stats = cacheService.getStats();
+        assertFalse(stats.isEnabled());
+        assertEquals(1, stats.getSymbolEntries());
+        assertEquals(1, stats.getSymbolHitCount());
+        assertEquals(2, stats.getSymbolMissCount());
+    }
+
+    private static QRImageCacheService cache(long maxBytes) {
+        return cache(maxBytes, 0);
+    }
+
+    private static QRImageCacheService cache(long maxBytes, long maxSymbolBytes) {
+        QRImageCacheService cacheService = new QRImageCacheService();
+        ReflectionTestUtils.setField(cacheService, "maxBytes", maxBytes);
+        ReflectionTestUtils.setField(cacheService, "maxSymbolBytes", maxSymbolBytes);
+        cacheService.initCache();
+        return cacheService;
+    }
+}
@@ -0,0 +1,116 @@
+package com.company.service;
+
+import com.company.metrics.PipelineMetrics;
+import com.company.model.QrData;
+import com.company.model.VerificationMode;
+import com.company.render.BilevelPngWriter;
+import com.company.render.RenderLimiter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class QRServiceTest {
+
+    private static final Set<String> FIELDS = Set.of("url", "endDate", "scanned", "base64Image");
+
+    private final LocalStoreService store = new LocalStoreService();
+    private final ExecutorService renderExecutor = Executors.newSingleThreadExecutor();
+    private final QRService qrService = new QRService();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @BeforeEach
+    void wire() {
+        ReflectionTestUtils.setField(store, "path", "");
+        ReflectionTestUtils.setField(store, "commitDelayMillis", 1000);
+        store.initStore();
+        QRVerificationService verificationService = new QRVerificationService();
+        ReflectionTestUtils.setField(verificationService, "mode", VerificationMode.STRUCTURAL);
+        ReflectionTestUtils.setField(verificationService, "minModulePixels", 2);
+        QRImageCacheService cacheService = new QRImageCacheService();
+        ReflectionTestUtils.setField(cacheService, "maxBytes", 1L << 20);
+        cacheService.initCache();
+
+        ReflectionTestUtils.setField(qrService, "qrRepository", store);
+        ReflectionTestUtils.setField(qrService, "bilevelPngWriter", new BilevelPngWriter(6));
+        ReflectionTestUtils.setField(qrService, "qrVerificationService", verificationService);
+        ReflectionTestUtils.setField(qrService, "qrImageCacheService", cacheService);
+        ReflectionTestUtils.setField(qrService, "renderExecutor", renderExecutor);
+        ReflectionTestUtils.setField(qrService, "renderLimiter", new RenderLimiter(1));
+        ReflectionTestUtils.setField(qrService, "metrics", new PipelineMetrics(meterRegistry));
+    }
+
+    @AfterEach
+    void close() {
+        renderExecutor.shutdown();
+        store.close();
+    }
+
+    @Test
+    void updatesThatDontChangeThePayloadKeepTheImage() throws Exception {
+        store.InsertData("key", 1, QrData.builder().url("https://a.example").size(300).errorCorrection("M")
+                .type(1).endDate("20260101").base64Image("STORED").build());
+
+        qrService.generateQRCodeAndUpdateDatabase("key", "https://a.example", 300, "M", 1,
+                true, null, "20270101", 1, null, null).get();
+        Map<String, Object> record = (Map<String, Object>) store.getDataByClient("key", FIELDS).get().get("1");
+        assertEquals(Map.of("url", "https://a.example", "endDate", "20270101", "scanned", true, "base64Image", "STORED"), record);
+
+        qrService.generateQRCodeAndUpdateDatabase("key", "https://b.example", 300, "M", 1,
+                true, null, "20270101", 1, null, null).get();
+        record = (Map<String, Object>) store.getDataByClient("key", FIELDS).get().get("1");
+        assertEquals("https://b.example", record.get("url"));
+        assertNotEquals("STORED", record.get("base64Image"));
+    }
+
+    @Test
+    void selfManagedCodesAreRegeneratedWhenEncodedFieldsChange() throws Exception {
+        store.InsertData("key", 2, QrData.builder().url("https://a.example").size(300).errorCorrection("M")
+                .type(2).base64Image("STORED").build());
+
+        qrService.generateQRCodeAndUpdateDatabase("key", "https://a.example", 300, "M", 2,
+                true, null, "20270101", 2, null, null).get();
+        Map<String, Object> record = (Map<String, Object>) store.getDataByClient("key", FIELDS).get().get("2");
+        assertTrue(((String) record.get("url")).contains("isScanned=true&startDate=null&endDate=20270101"));
+        assertNotEquals("STORED", record.get("base64Image"));
+    }
+
+    @Test
+    void missingRecordsFailWithNoSuchElement() {
+        ExecutionException e = assertThrows(ExecutionException.class, () -> qrService.generateQRCodeAndUpdateDatabase(
+                "key", "https://a.example", 300, "M", 9, false, null, null, 1, null, null).get());
+        assertInstanceOf(NoSuchElementException.class, e.getCause());
+    }
+
+    @Test
+    void timesTheStagesOfFreshRendersOnly() throws Exception {
+        store.InsertData("key", 4, QrData.builder().url("https://a.example").size(300).errorCorrection("M")
+                .type(1).base64Image("STORED").build());
+
+        qrService.generateQRCodeAndUpdateDatabase("key", "https://b.example", 300, "M", 4,
+                false, null, null, 1, null, null).get();
+        qrService.generateQRCodeAndUpdateDatabase("key", "https://c.example", 300, "M", 4,
+                false, null, null, 1, null, null).get();
+        // Served from the image cache
+        qrService.generateQRCodeAndUpdateDatabase("key", "https://b.example", 300, "M", 4,
+                false, null, null, 1, null, null).get();
+
+        for (String stage : new String[]{"encode", "render", "png", "verify", "base64"}) {
+            assertEquals(2, meterRegistry.get("qr.stage").tag("stage", stage).timer().count(), stage);
+            assertEquals(0, meterRegistry.get("qr.stage.failures").tag("stage", stage).counter().count(), stage);
+        }
+        assertEquals(0, meterRegistry.get("qr.stage").tag("stage", "svg").timer().count());
+        assertEquals(2, meterRegistry.get("qr.payload.text").summary().count());
+        assertEquals(2, meterRegistry.get("qr.payload.image").tag("imageFormat", "png").summary().count());
+    }
+}
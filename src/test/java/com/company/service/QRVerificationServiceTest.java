@@ -0,0 +1,104 @@
+package com.company.service;
+
+import com.company.model.VerificationMode;
+import com.company.render.BilevelPngWriter;
+import com.company.render.PackedBitRaster;
+import com.company.render.QrRasterRenderer;
+import com.company.render.RenderedBarcode;
+import com.company.render.RenderedQr;
+import com.company.render.Symbology;
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.qrcode.decoder.ErrorCorrectionLevel;
+import com.google.zxing.qrcode.encoder.Encoder;
+import com.google.zxing.qrcode.encoder.QRCode;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class QRVerificationServiceTest {
+
+    private static final String TEXT = "https://www.example.com?apiKey=abc&id=7&isScanned=false";
+
+    private QRVerificationService verificationService;
+
+    @BeforeEach
+    void setUp() {
+        verificationService = new QRVerificationService();
+        ReflectionTestUtils.setField(verificationService, "sampleRate", 2);
+        ReflectionTestUtils.setField(verificationService, "minModulePixels", 2);
+        ReflectionTestUtils.setField(verificationService, "minQuietZoneModules", 0);
+    }
+
+    @Test
+    void everyModeAcceptsValidCode() throws Exception {
+        RenderedQr renderedQr = render(TEXT, 300);
+        for (VerificationMode mode : VerificationMode.values()) {
+            ReflectionTestUtils.setField(verificationService, "mode", mode);
+            assertTrue(verificationService.verify(renderedQr), mode.name());
+            assertTrue(verificationService.verify(renderedQr), mode.name());
+        }
+    }
+
+    @Test
+    void structuralRejectsTooFewPixelsPerModule() throws Exception {
+        assertFalse(verificationService.isStructurallyValid(render(TEXT, 40)));
+    }
+
+    @Test
+    void structuralRejectsDamagedFinderPattern() throws Exception {
+        RenderedQr renderedQr = render(TEXT, 300);
+        renderedQr.getCode().getMatrix().set(3, 3, 0);
+        assertFalse(verificationService.isStructurallyValid(renderedQr));
+    }
+
+    @Test
+    void everyFormatDecodesInMemoryAndFromPng() throws Exception {
+        for (Symbology symbology : Symbology.values()) {
+            String text = symbology == Symbology.EAN_13 ? "4006381333931" : "ABC-123-" + symbology;
+            RenderedBarcode barcode = render(symbology, text, 600);
+            assertTrue(verificationService.decodesRaster(barcode), symbology.name());
+            ReflectionTestUtils.setField(verificationService, "mode", VerificationMode.FULL);
+            assertTrue(verificationService.verify(barcode), symbology.name());
+        }
+        // Below the minimum module size
+        assertFalse(verificationService.decodesRaster(render(Symbology.CODE_128, "ABC-123", 60)));
+    }
+
+    @Test
+    void vectorSymbolsAreVerifiedWithoutTheirImage() throws Exception {
+        ReflectionTestUtils.setField(verificationService, "mode", VerificationMode.FULL);
+        QRCode code = Encoder.encode(TEXT, ErrorCorrectionLevel.M);
+        assertTrue(verificationService.verifySymbol(TEXT, code));
+        code.getMatrix().set(3, 3, 0);
+        assertFalse(verificationService.verifySymbol(TEXT, code));
+
+        for (Symbology symbology : Symbology.values()) {
+            String text = symbology == Symbology.EAN_13 ? "4006381333931" : "ABC-123";
+            assertTrue(verificationService.verifySymbol(symbology, text, symbology.encode(text, ErrorCorrectionLevel.M)), symbology.name());
+        }
+    }
+
+    private static RenderedBarcode render(Symbology symbology, String text, int size) throws Exception {
+        BitMatrix modules = symbology.encode(text, ErrorCorrectionLevel.M);
+        int height = symbology.isLinear() ? size / 2 : size;
+        PackedBitRaster raster = QrRasterRenderer.pack(modules, size, height, symbology.getQuietZone(), symbology.isLinear());
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        new BilevelPngWriter(6).write(raster, png);
+        return new RenderedBarcode(symbology, text, modules,
+                QrRasterRenderer.moduleScale(modules, size, height, symbology.getQuietZone(), symbology.isLinear()),
+                raster, png.toByteArray());
+    }
+
+    private static RenderedQr render(String text, int size) throws Exception {
+        QRCode code = Encoder.encode(text, ErrorCorrectionLevel.M);
+        PackedBitRaster raster = QrRasterRenderer.pack(code.getMatrix(), size, size, 0);
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        new BilevelPngWriter(6).write(raster, png);
+        return new RenderedQr(text, code, 0, raster, png.toByteArray());
+    }
+}
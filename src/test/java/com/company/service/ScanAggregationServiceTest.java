@@ -0,0 +1,76 @@
+package com.company.service;
+
+import com.company.model.QrData;
+import com.company.model.ScanStats;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ScanAggregationServiceTest {
+
+    private final LocalStoreService store = new LocalStoreService();
+
+    @AfterEach
+    void closeStore() {
+        store.close();
+    }
+
+    @Test
+    void coalescesScansOfACodeIntoOneWritePerFlush() throws Exception {
+        ScanAggregationService scans = aggregator(100);
+        store.InsertData("key", 7, QrData.builder().url("https://a.example").type(2).build());
+
+        for (int i = 0; i < 1000; i++) {
+            scans.recordScan("key", 7, 1_000 + i);
+        }
+        scans.flush();
+
+        Map<String, Object> record = (Map<String, Object>) store.getDataByClient("key").get().get("7");
+        assertEquals(true, record.get("scanned"));
+        assertEquals(1000L, record.get("scanCount"));
+        assertEquals(1_000L, record.get("firstScanAt"));
+        assertEquals(1_999L, record.get("lastScanAt"));
+
+        ScanStats stats = scans.getStats();
+        assertEquals(1000, stats.getReceived());
+        assertEquals(1, stats.getCodesWritten());
+        assertEquals(0, stats.getPendingCodes());
+
+        // The next flush starts from an empty tally
+        scans.recordScan("key", 7, 5_000);
+        scans.flush();
+        record = (Map<String, Object>) store.getDataByClient("key", Set.of("scanCount", "lastScanAt")).get().get("7");
+        assertEquals(Map.of("scanCount", 1001L, "lastScanAt", 5_000L), record);
+    }
+
+    @Test
+    void rejectsNewCodesOnceThePendingBoundIsReached() {
+        ScanAggregationService scans = aggregator(1);
+        scans.recordScan("key", 1, 1_000);
+        // More scans of a pending code are still counted
+        scans.recordScan("key", 1, 1_001);
+        assertThrows(RejectedExecutionException.class, () -> scans.recordScan("key", 2, 1_002));
+        assertThrows(IllegalArgumentException.class, () -> scans.recordScan("key", -1, 1_003));
+        assertEquals(1, scans.getStats().getRejected());
+
+        scans.flush();
+        scans.recordScan("key", 2, 1_004);
+        assertEquals(1, scans.getStats().getPendingCodes());
+    }
+
+    private ScanAggregationService aggregator(int maxPendingCodes) {
+        ReflectionTestUtils.setField(store, "path", "");
+        ReflectionTestUtils.setField(store, "commitDelayMillis", 1000);
+        store.initStore();
+        ScanAggregationService scans = new ScanAggregationService();
+        ReflectionTestUtils.setField(scans, "qrRepository", store);
+        ReflectionTestUtils.setField(scans, "maxPendingCodes", maxPendingCodes);
+        return scans;
+    }
+}
@@ -0,0 +1,128 @@
+package com.company.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WriteBehindQueueTest {
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+    private final List<Map<String, Object>> writes = Collections.synchronizedList(new ArrayList<>());
+
+    @AfterEach
+    void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    @Test
+    void coalescesWritesOfOneClientIntoOneUpdate() throws Exception {
+        WriteBehindQueue queue = queue(recording(), 100, 1000);
+
+        List<CompletableFuture<Void>> callers = new ArrayList<>();
+        for (int id = 0; id < 50; id++) {
+            callers.add(queue.submit("key", Map.of("QR/key/" + id, "record" + id)));
+        }
+        queue.submit("key", Map.of("QR/key/3", "replaced"));
+        queue.flush();
+        CompletableFuture.allOf(callers.toArray(new CompletableFuture[0])).get(5, TimeUnit.SECONDS);
+
+        assertEquals(1, writes.size());
+        assertEquals(50, writes.get(0).size());
+        assertEquals("replaced", writes.get(0).get("QR/key/3"));
+        assertEquals(1, queue.getBatchesSent());
+    }
+
+    @Test
+    void clearingANodeDropsPendingChildrenAndOrdersLaterChildren() throws Exception {
+        WriteBehindQueue queue = queue(recording(), 100, 1000);
+
+        queue.submit("key", Map.of("QR/key/1", "a", "QRImages/key/1", "img"));
+        Map<String, Object> removal = new HashMap<>();
+        removal.put("QR/key", null);
+        queue.submit("key", removal);
+        CompletableFuture<Void> last = queue.submit("key", Map.of("QR/key/2", "b"));
+        queue.flush();
+        last.get(5, TimeUnit.SECONDS);
+
+        assertEquals(2, writes.size());
+        assertFalse(writes.get(0).containsKey("QR/key/1"));
+        assertTrue(writes.get(0).containsKey("QR/key"));
+        assertEquals(Map.of("QR/key/2", "b"), writes.get(1));
+    }
+
+    @Test
+    void retriesFailedBatches() throws Exception {
+        AtomicInteger attempts = new AtomicInteger();
+        WriteBehindQueue queue = queue(updates -> attempts.incrementAndGet() < 3
+                ? CompletableFuture.failedFuture(new RuntimeException("unavailable"))
+                : CompletableFuture.completedFuture(null), 100, 1000);
+
+        queue.submit("key", Map.of("QR/key/1", "a")).get(5, TimeUnit.SECONDS);
+        assertEquals(3, attempts.get());
+        assertEquals(2, queue.getRetries());
+    }
+
+    @Test
+    void failsCallersAfterTheLastRetry() {
+        WriteBehindQueue queue = queue(updates -> CompletableFuture.failedFuture(new RuntimeException("unavailable")), 100, 1000);
+
+        CompletableFuture<Void> caller = queue.submit("key", Map.of("QR/key/1", "a"));
+        ExecutionException e = assertThrows(ExecutionException.class, () -> caller.get(5, TimeUnit.SECONDS));
+        assertEquals("unavailable", e.getCause().getMessage());
+        assertEquals(1, queue.getFailed());
+        assertEquals(0, queue.getPending());
+    }
+
+    @Test
+    void failsCallersWhenRetryingAfterShutdown() {
+        WriteBehindQueue queue = queue(updates -> CompletableFuture.failedFuture(new RuntimeException("unavailable")), 100, 1000);
+
+        CompletableFuture<Void> caller = queue.submit("key", Map.of("QR/key/1", "a"));
+        scheduler.shutdown();
+        queue.flush();
+
+        ExecutionException e = assertThrows(ExecutionException.class, () -> caller.get(5, TimeUnit.SECONDS));
+        assertEquals("unavailable", e.getCause().getMessage());
+        assertEquals(0, queue.getPending());
+    }
+
+    @Test
+    void rejectsWritesWhenFull() throws Exception {
+        CompletableFuture<Void> blocked = new CompletableFuture<>();
+        WriteBehindQueue queue = queue(updates -> blocked, 2, 1);
+
+        queue.submit("key", Map.of("QR/key/1", "a"));
+        queue.submit("key", Map.of("QR/key/2", "b"));
+        CompletableFuture<Void> rejected = queue.submit("key", Map.of("QR/key/3", "c"));
+
+        ExecutionException e = assertThrows(ExecutionException.class, rejected::get);
+        assertInstanceOf(RejectedExecutionException.class, e.getCause());
+        assertEquals(1, queue.getRejected());
+    }
+
+    private Function<Map<String, Object>, CompletableFuture<Void>> recording() {
+        return updates -> {
+            writes.add(new HashMap<>(updates));
+            return CompletableFuture.completedFuture(null);
+        };
+    }
+
+    private WriteBehindQueue queue(Function<Map<String, Object>, CompletableFuture<Void>> sink, int capacity, long flushMillis) {
+        return new WriteBehindQueue(sink, scheduler, capacity, 500, flushMillis, 2, 1);
+    }
+}